@@ -1,7 +1,9 @@
 package com.cachekit;
 
 import java.util.Properties;
+import java.util.concurrent.Executor;
 
+import com.cachekit.access.AsyncCacheKitAccess;
 import com.cachekit.access.CacheKitAccess;
 import com.cachekit.access.GroupCacheKitAccess;
 import com.cachekit.access.exception.CacheException;
@@ -88,6 +90,19 @@ public abstract class CacheKit
 		return new CacheKitAccess<K, V>(cache);
 	}
 
+	public static <K, V> AsyncCacheKitAccess<K, V> getAsyncInstance(String cacheName) throws CacheException
+	{
+		ContextCache<K, V> cache = getCacheManager().getCache(cacheName);
+		return new AsyncCacheKitAccess<K, V>(cache);
+	}
+
+	public static <K, V> AsyncCacheKitAccess<K, V> getAsyncInstance(String cacheName, Executor executor)
+			throws CacheException
+	{
+		ContextCache<K, V> cache = getCacheManager().getCache(cacheName);
+		return new AsyncCacheKitAccess<K, V>(cache, executor);
+	}
+
 	public static <K, V> GroupCacheKitAccess<K, V> getGroupCacheInstance(String cacheName) throws CacheException
 	{
 		ContextCache<GroupAttrName<K>, V> cache = getCacheManager().getCache(cacheName);
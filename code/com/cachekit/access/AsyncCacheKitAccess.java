@@ -0,0 +1,279 @@
+package com.cachekit.access;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import com.cachekit.access.exception.InvalidArgumentException;
+import com.cachekit.core.CacheElement;
+import com.cachekit.core.control.ContextCache;
+import com.cachekit.core.model.ICacheElement;
+import com.cachekit.core.model.IElementAttributes;
+import com.cachekit.utils.threadpool.CacheKitThreadFactory;
+import com.cachekit.utils.threadpool.ThreadPoolManager;
+
+/**
+ * 异步访问接口：内存命中时在调用线程上直接完成，未命中时在 executor 上查找磁盘和横向组件。
+ * 默认使用 ThreadPoolManager 中名为 cache_async 的线程池（thread_pool.cache_async.* 配置），
+ * 也可以传入任意 Executor（例如虚拟线程）。
+ * 返回的 future 被取消或超时后，还没开始的查找不再执行，正在执行的查找不再访问剩余的组件
+ */
+public class AsyncCacheKitAccess<K, V> extends AbstractCacheKitAccess<K, V> implements IAsyncCacheKitAccess<K, V>
+{
+    public static final String DEFAULT_THREAD_POOL_NAME = "cache_async";
+
+    //没有通过 ContextCacheManager 创建的区域使用这个调度器处理超时
+    private static ScheduledExecutorService timeoutScheduler;
+
+    private final Executor executor;
+
+    public AsyncCacheKitAccess(ContextCache<K, V> cacheControl)
+    {
+        this(cacheControl, ThreadPoolManager.getInstance().getPool(DEFAULT_THREAD_POOL_NAME));
+    }
+
+    public AsyncCacheKitAccess(ContextCache<K, V> cacheControl, Executor executor)
+    {
+        super(cacheControl);
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<V> getAsync(K name)
+    {
+        return getAsync(name, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 不能用 thenApply 从 getCacheElementAsync 转换，取消转换后的 future 不会传递给查找
+     */
+    @Override
+    public CompletableFuture<V> getAsync(final K name, long timeout, TimeUnit unit)
+    {
+        ICacheElement<K, V> element = this.getCacheControl().getFromMemory(name);
+        if (element != null)
+        {
+            return CompletableFuture.completedFuture(element.getVal());
+        }
+
+        return submit(new Probe<V>()
+        {
+            @Override
+            V call(Future<?> request)
+            {
+                ICacheElement<K, V> element = getCacheControl().get(name, request);
+                return (element != null) ? element.getVal() : null;
+            }
+        }, timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<ICacheElement<K, V>> getCacheElementAsync(final K name, long timeout, TimeUnit unit)
+    {
+        ICacheElement<K, V> element = this.getCacheControl().getFromMemory(name);
+        if (element != null)
+        {
+            return CompletableFuture.completedFuture(element);
+        }
+
+        return submit(new Probe<ICacheElement<K, V>>()
+        {
+            @Override
+            ICacheElement<K, V> call(Future<?> request)
+            {
+                return getCacheControl().get(name, request);
+            }
+        }, timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<Map<K, V>> getAllAsync(Set<K> names)
+    {
+        return getAllAsync(names, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 内存中找到的元素直接放入结果，剩余的键作为一次批量查找提交给 executor
+     */
+    @Override
+    public CompletableFuture<Map<K, V>> getAllAsync(Set<K> names, long timeout, TimeUnit unit)
+    {
+        final Map<K, V> found = new HashMap<K, V>();
+        final Set<K> remaining = new HashSet<K>();
+        for (K name : names)
+        {
+            ICacheElement<K, V> element = this.getCacheControl().getFromMemory(name);
+            if (element != null)
+            {
+                found.put(name, element.getVal());
+            }
+            else
+            {
+                remaining.add(name);
+            }
+        }
+
+        if (remaining.isEmpty())
+        {
+            return CompletableFuture.completedFuture(found);
+        }
+
+        return submit(new Probe<Map<K, V>>()
+        {
+            @Override
+            Map<K, V> call(Future<?> request)
+            {
+                Map<K, ICacheElement<K, V>> elements = getCacheControl().getMultiple(remaining, request);
+                for (Map.Entry<K, ICacheElement<K, V>> entry : elements.entrySet())
+                {
+                    if (entry.getValue() != null)
+                    {
+                        found.put(entry.getKey(), entry.getValue().getVal());
+                    }
+                }
+                return found;
+            }
+        }, timeout, unit);
+    }
+
+    @Override
+    public CompletableFuture<Void> putAsync(K name, V obj)
+    {
+        return putAsync(name, obj, this.getCacheControl().getElementAttributes());
+    }
+
+    @Override
+    public CompletableFuture<Void> putAsync(K name, V obj, IElementAttributes attr)
+    {
+        if (name == null)
+        {
+            throw new InvalidArgumentException("Key must not be null");
+        }
+        if (obj == null)
+        {
+            throw new InvalidArgumentException("Value must not be null");
+        }
+
+        final CacheElement<K, V> ce = new CacheElement<K, V>(this.getCacheControl().getCacheName(), name, obj);
+        ce.setElementAttributes(attr);
+        return submit(new Probe<Void>()
+        {
+            @Override
+            Void call(Future<?> request) throws Exception
+            {
+                getCacheControl().update(ce);
+                return null;
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<Void> removeAsync(final K name)
+    {
+        return submit(new Probe<Void>()
+        {
+            @Override
+            Void call(Future<?> request)
+            {
+                getCacheControl().remove(name);
+                return null;
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在 executor 上执行，timeout 大于0时到期以 TimeoutException 完成
+     */
+    private <T> CompletableFuture<T> submit(final Probe<T> probe, long timeout, TimeUnit unit)
+    {
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+
+        if (timeout > 0)
+        {
+            final ScheduledFuture<?> timer = getTimeoutScheduler().schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    result.completeExceptionally(new TimeoutException("Cache request timed out"));
+                }
+            }, timeout, unit);
+
+            result.whenComplete(new BiConsumer<T, Throwable>()
+            {
+                @Override
+                public void accept(T value, Throwable t)
+                {
+                    timer.cancel(false);
+                }
+            });
+        }
+
+        try
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    //已经被取消或超时
+                    if (result.isDone())
+                    {
+                        return;
+                    }
+                    try
+                    {
+                        result.complete(probe.call(result));
+                    }
+                    catch (Throwable t)
+                    {
+                        result.completeExceptionally(t);
+                    }
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
+
+    private ScheduledExecutorService getTimeoutScheduler()
+    {
+        ScheduledExecutorService scheduler = this.getCacheControl().getScheduledExecutorService();
+        if (scheduler != null)
+        {
+            return scheduler;
+        }
+
+        synchronized (AsyncCacheKitAccess.class)
+        {
+            if (timeoutScheduler == null)
+            {
+                timeoutScheduler = Executors.newSingleThreadScheduledExecutor(new CacheKitThreadFactory("CacheKit-AsyncTimeout-"));
+            }
+            return timeoutScheduler;
+        }
+    }
+
+    /**
+     * 在 executor 上执行的一次操作，request 是返回给调用者的 future
+     */
+    private abstract static class Probe<T>
+    {
+        abstract T call(Future<?> request) throws Exception;
+    }
+}
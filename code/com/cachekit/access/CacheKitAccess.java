@@ -1,9 +1,14 @@
 package com.cachekit.access;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -76,11 +81,111 @@ public class CacheKitAccess<K, V> extends AbstractCacheKitAccess<K, V> implement
     @Override
     public void putSafe(K key, V value)
     {
-        if (this.getCacheControl().get(key) != null)
+        if (putIfAbsent(key, value) != null)
         {
             throw new ObjectExistsException("putSafe failed.  Object exists in the cache for key [" + key + "]");
         }
-        put(key, value);
+    }
+
+    /**
+     * 键不存在时才写入，返回已经存在的值，检查和写入在同一个键锁内完成
+     */
+    @Override
+    public V putIfAbsent(K key, V value)
+    {
+        try
+        {
+            ICacheElement<K, V> existing = this.getCacheControl().putIfAbsent(createElement(key, value));
+            return (existing != null) ? existing.getVal() : null;
+        }
+        catch (IOException e)
+        {
+            throw new CacheException(e);
+        }
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction)
+    {
+        if (key == null)
+        {
+            throw new InvalidArgumentException("Key must not be null");
+        }
+        try
+        {
+            ICacheElement<K, V> element = this.getCacheControl().computeIfAbsent(key, mappingFunction,
+                    this.getCacheControl().getElementAttributes());
+            return (element != null) ? element.getVal() : null;
+        }
+        catch (IOException e)
+        {
+            throw new CacheException(e);
+        }
+    }
+
+    @Override
+    public V replace(K key, V value)
+    {
+        try
+        {
+            ICacheElement<K, V> existing = this.getCacheControl().replace(createElement(key, value));
+            return (existing != null) ? existing.getVal() : null;
+        }
+        catch (IOException e)
+        {
+            throw new CacheException(e);
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue)
+    {
+        try
+        {
+            return this.getCacheControl().replace(oldValue, createElement(key, newValue));
+        }
+        catch (IOException e)
+        {
+            throw new CacheException(e);
+        }
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction)
+    {
+        if (key == null)
+        {
+            throw new InvalidArgumentException("Key must not be null");
+        }
+        if (value == null)
+        {
+            throw new InvalidArgumentException("Value must not be null");
+        }
+        try
+        {
+            ICacheElement<K, V> element = this.getCacheControl().merge(key, value, remappingFunction,
+                    this.getCacheControl().getElementAttributes());
+            return (element != null) ? element.getVal() : null;
+        }
+        catch (IOException e)
+        {
+            throw new CacheException(e);
+        }
+    }
+
+    private CacheElement<K, V> createElement(K key, V val)
+    {
+        if (key == null)
+        {
+            throw new InvalidArgumentException("Key must not be null");
+        }
+        if (val == null)
+        {
+            throw new InvalidArgumentException("Value must not be null");
+        }
+        CacheElement<K, V> ce = new CacheElement<K, V>(this.getCacheControl().getCacheName(), key, val);
+        ce.setElementAttributes(this.getCacheControl().getElementAttributes());
+        return ce;
     }
 
     @Override
@@ -110,6 +215,33 @@ public class CacheKitAccess<K, V> extends AbstractCacheKitAccess<K, V> implement
         }
     }
 
+    /**
+     * 所有元素作为一批写入内存组件和各个插件组件
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> objs)
+    {
+        List<ICacheElement<K, V>> elements = new ArrayList<ICacheElement<K, V>>(objs.size());
+        for (Map.Entry<? extends K, ? extends V> entry : objs.entrySet())
+        {
+            elements.add(createElement(entry.getKey(), entry.getValue()));
+        }
+        putAll(elements);
+    }
+
+    @Override
+    public void putAll(Collection<ICacheElement<K, V>> elements)
+    {
+        try
+        {
+            this.getCacheControl().updateAll(elements);
+        }
+        catch (IOException e)
+        {
+            throw new CacheException(e);
+        }
+    }
+
     @Override
     public void remove(K name) {
         this.getCacheControl().remove(name);
@@ -118,12 +250,19 @@ public class CacheKitAccess<K, V> extends AbstractCacheKitAccess<K, V> implement
     @Override
     public void resetElementAttributes(K name, IElementAttributes attr)
     {
-        ICacheElement<K, V> element = this.getCacheControl().get(name);
-        if (element == null)
+        boolean reset;
+        try
+        {
+            reset = this.getCacheControl().resetElementAttributes(name, attr);
+        }
+        catch (IOException e)
+        {
+            throw new CacheException(e);
+        }
+        if (!reset)
         {
             throw new InvalidHandleException("Object for name [" + name + "] is not in the cache");
         }
-        put(element.getKey(), element.getVal(), attr);
     }
 
     @Override
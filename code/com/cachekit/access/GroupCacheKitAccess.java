@@ -3,6 +3,8 @@ package com.cachekit.access;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import com.cachekit.access.exception.CacheException;
 import com.cachekit.access.exception.InvalidArgumentException;
@@ -64,6 +66,114 @@ public class GroupCacheKitAccess<K, V> extends AbstractCacheKitAccess<GroupAttrN
 
     }
 
+    @Override
+    public V putIfAbsentInGroup(K name, String groupName, V value) throws CacheException
+    {
+        try
+        {
+            ICacheElement<GroupAttrName<K>, V> existing = this.getCacheControl().putIfAbsent(createElement(name, groupName, value));
+            return (existing != null) ? existing.getVal() : null;
+        }
+        catch (IOException e)
+        {
+            throw new CacheException(e);
+        }
+    }
+
+    @Override
+    public V computeIfAbsentInGroup(K name, String groupName, final Function<? super K, ? extends V> mappingFunction) throws CacheException
+    {
+        if (name == null)
+        {
+            throw new InvalidArgumentException("Key must not be null");
+        }
+        //计算函数只看到组内的键
+        Function<GroupAttrName<K>, V> groupFunction = new Function<GroupAttrName<K>, V>()
+        {
+            @Override
+            public V apply(GroupAttrName<K> key)
+            {
+                return mappingFunction.apply(key.attrName);
+            }
+        };
+        try
+        {
+            ICacheElement<GroupAttrName<K>, V> element = this.getCacheControl().computeIfAbsent(getGroupAttrName(groupName, name),
+                    groupFunction, this.getCacheControl().getElementAttributes());
+            return (element != null) ? element.getVal() : null;
+        }
+        catch (IOException e)
+        {
+            throw new CacheException(e);
+        }
+    }
+
+    @Override
+    public V replaceInGroup(K name, String groupName, V value) throws CacheException
+    {
+        try
+        {
+            ICacheElement<GroupAttrName<K>, V> existing = this.getCacheControl().replace(createElement(name, groupName, value));
+            return (existing != null) ? existing.getVal() : null;
+        }
+        catch (IOException e)
+        {
+            throw new CacheException(e);
+        }
+    }
+
+    @Override
+    public boolean replaceInGroup(K name, String groupName, V oldValue, V newValue) throws CacheException
+    {
+        try
+        {
+            return this.getCacheControl().replace(oldValue, createElement(name, groupName, newValue));
+        }
+        catch (IOException e)
+        {
+            throw new CacheException(e);
+        }
+    }
+
+    @Override
+    public V mergeInGroup(K name, String groupName, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) throws CacheException
+    {
+        if (name == null)
+        {
+            throw new InvalidArgumentException("Key must not be null");
+        }
+        if (value == null)
+        {
+            throw new InvalidArgumentException("Value must not be null");
+        }
+        try
+        {
+            ICacheElement<GroupAttrName<K>, V> element = this.getCacheControl().merge(getGroupAttrName(groupName, name), value,
+                    remappingFunction, this.getCacheControl().getElementAttributes());
+            return (element != null) ? element.getVal() : null;
+        }
+        catch (IOException e)
+        {
+            throw new CacheException(e);
+        }
+    }
+
+    private CacheElement<GroupAttrName<K>, V> createElement(K name, String groupName, V value)
+    {
+        if (name == null)
+        {
+            throw new InvalidArgumentException("Key must not be null");
+        }
+        if (value == null)
+        {
+            throw new InvalidArgumentException("Value must not be null");
+        }
+        CacheElement<GroupAttrName<K>, V> ce = new CacheElement<GroupAttrName<K>, V>(this.getCacheControl().getCacheName(),
+                getGroupAttrName(groupName, name), value);
+        ce.setElementAttributes(this.getCacheControl().getElementAttributes());
+        return ce;
+    }
+
     @Override
     public void removeFromGroup(K name, String group) {
         GroupAttrName<K> key = getGroupAttrName(group, name);
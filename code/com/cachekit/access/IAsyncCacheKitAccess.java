@@ -0,0 +1,28 @@
+package com.cachekit.access;
+
+import com.cachekit.core.model.ICacheElement;
+import com.cachekit.core.model.IElementAttributes;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public interface IAsyncCacheKitAccess<K, V> extends ICacheKitAccessManagement
+{
+	CompletableFuture<V> getAsync(K name);
+
+	CompletableFuture<V> getAsync(K name, long timeout, TimeUnit unit);
+
+	CompletableFuture<ICacheElement<K, V>> getCacheElementAsync(K name, long timeout, TimeUnit unit);
+
+	CompletableFuture<Map<K, V>> getAllAsync(Set<K> names);
+
+	CompletableFuture<Map<K, V>> getAllAsync(Set<K> names, long timeout, TimeUnit unit);
+
+	CompletableFuture<Void> putAsync(K name, V obj);
+
+	CompletableFuture<Void> putAsync(K name, V obj, IElementAttributes attr);
+
+	CompletableFuture<Void> removeAsync(K name);
+}
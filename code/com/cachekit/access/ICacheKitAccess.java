@@ -4,8 +4,11 @@ import com.cachekit.access.exception.CacheException;
 import com.cachekit.core.model.ICacheElement;
 import com.cachekit.core.model.IElementAttributes;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public interface ICacheKitAccess<K, V> extends ICacheKitAccessManagement
 {
@@ -19,6 +22,20 @@ public interface ICacheKitAccess<K, V> extends ICacheKitAccessManagement
 
 	void put(K name, V obj, IElementAttributes attr) throws CacheException;
 
+	void putAll(Map<? extends K, ? extends V> objs) throws CacheException;
+
+	void putAll(Collection<ICacheElement<K, V>> elements) throws CacheException;
+
+	V putIfAbsent(K name, V obj) throws CacheException;
+
+	V computeIfAbsent(K name, Function<? super K, ? extends V> mappingFunction) throws CacheException;
+
+	V replace(K name, V obj) throws CacheException;
+
+	boolean replace(K name, V oldObj, V newObj) throws CacheException;
+
+	V merge(K name, V obj, BiFunction<? super V, ? super V, ? extends V> remappingFunction) throws CacheException;
+
 	ICacheElement<K, V> getCacheElement(K name);
 
 	Map<K, ICacheElement<K, V>> getCacheElements(Set<K> names);
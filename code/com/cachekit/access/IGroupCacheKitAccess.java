@@ -4,6 +4,8 @@ import com.cachekit.access.exception.CacheException;
 import com.cachekit.core.model.IElementAttributes;
 
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 public interface IGroupCacheKitAccess<K, V> extends ICacheKitAccessManagement
 {
@@ -13,6 +15,16 @@ public interface IGroupCacheKitAccess<K, V> extends ICacheKitAccessManagement
 
 	void putInGroup(K key, String group, V obj, IElementAttributes attr) throws CacheException;
 
+	V putIfAbsentInGroup(K key, String group, V obj) throws CacheException;
+
+	V computeIfAbsentInGroup(K key, String group, Function<? super K, ? extends V> mappingFunction) throws CacheException;
+
+	V replaceInGroup(K key, String group, V obj) throws CacheException;
+
+	boolean replaceInGroup(K key, String group, V oldObj, V newObj) throws CacheException;
+
+	V mergeInGroup(K key, String group, V obj, BiFunction<? super V, ? super V, ? extends V> remappingFunction) throws CacheException;
+
 	void removeFromGroup(K name, String group);
 
 	Set<K> getGroupKeys(String group);
@@ -1,6 +1,7 @@
 package com.cachekit.core;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
@@ -26,6 +27,10 @@ public abstract class AbstractCacheEventQueue<K, V> implements ICacheEventQueue<
     private int maxFailure;
 
     private int waitBeforeRetry;
+
+    //默认不合并，各组件按需开启
+    private volatile int maxPutBatchSize = 1;
+
     // 表示线程的状态
     private final AtomicBoolean alive = new AtomicBoolean(false);
     // 表示事件队列的状态
@@ -39,6 +44,15 @@ public abstract class AbstractCacheEventQueue<K, V> implements ICacheEventQueue<
         waitToDieMillis = wtdm;
     }
 
+    public int getMaxPutBatchSize() {
+        return maxPutBatchSize;
+    }
+
+    @Override
+    public void setMaxPutBatchSize(int maxPutBatchSize) {
+        this.maxPutBatchSize = maxPutBatchSize;
+    }
+
     @Override
     public String toString() {
         return "CacheEventQueue [listenerId=" + listenerId + ", cacheName=" + cacheName + "]";
@@ -99,6 +113,22 @@ public abstract class AbstractCacheEventQueue<K, V> implements ICacheEventQueue<
         }
     }
 
+    /**
+     * 一批元素作为一个事件，由监听器一次处理
+     */
+    @Override
+    public synchronized void addPutAllEvent(List<ICacheElement<K, V>> ces) throws IOException
+    {
+        if (isWorking())
+        {
+            put(new PutAllEvent(ces));
+        }
+        else if (log.isWarnEnabled())
+        {
+            log.warn("Fail to put all event for [" + this + "] because it not work.");
+        }
+    }
+
     @Override
     public synchronized void addRemoveEvent(K key) throws IOException
     {
@@ -197,6 +227,14 @@ public abstract class AbstractCacheEventQueue<K, V> implements ICacheEventQueue<
         }
 
         protected abstract void doRun() throws IOException;
+
+        /**
+         * put 事件返回要写入的元素，其他事件返回 null
+         */
+        ICacheElement<K, V> getPutElement()
+        {
+            return null;
+        }
     }
 
     protected class PutEvent extends AbstractCacheEvent
@@ -214,6 +252,12 @@ public abstract class AbstractCacheEventQueue<K, V> implements ICacheEventQueue<
             listener.handlePut(ice);
         }
 
+        @Override
+        ICacheElement<K, V> getPutElement()
+        {
+            return ice;
+        }
+
         @Override
         public String toString()
         {
@@ -222,6 +266,28 @@ public abstract class AbstractCacheEventQueue<K, V> implements ICacheEventQueue<
         }
     }
 
+    protected class PutAllEvent extends AbstractCacheEvent
+    {
+        private final List<ICacheElement<K, V>> ices;
+
+        PutAllEvent(List<ICacheElement<K, V>> ices) throws IOException
+        {
+            this.ices = ices;
+        }
+
+        @Override
+        protected void doRun() throws IOException
+        {
+            listener.handlePutAll(ices);
+        }
+
+        @Override
+        public String toString()
+        {
+            return new StringBuilder("PutAllEvent for ").append(ices.size()).append(" elements").toString();
+        }
+    }
+
     protected class RemoveEvent extends AbstractCacheEvent
     {
         private final K key;
@@ -1,12 +1,15 @@
 package com.cachekit.core;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.cachekit.core.model.ICacheElement;
 import com.cachekit.core.model.ICacheListener;
 import com.cachekit.core.stats.IStatElement;
 import com.cachekit.core.stats.IStats;
@@ -149,12 +152,54 @@ public class CacheEventQueue<K, V> extends AbstractCacheEventQueue<K, V> {
                 }
                 if (event != null && isWorking() && CacheEventQueue.this.isAlive())
                 {
-                    event.run();
+                    coalescePuts(event).run();
                 }
             }
         }
     }
 
+    /**
+     * 只有处理线程从队列取事件，队首连续的 put 事件合并为一个 PutAllEvent，遇到其他事件停止合并，事件的先后顺序不变
+     */
+    private AbstractCacheEvent coalescePuts(AbstractCacheEvent event)
+    {
+        int max = getMaxPutBatchSize();
+        ICacheElement<K, V> first = event.getPutElement();
+        if (max <= 1 || first == null)
+        {
+            return event;
+        }
+
+        AbstractCacheEvent next = queue.peek();
+        if (next == null || next.getPutElement() == null)
+        {
+            return event;
+        }
+
+        List<ICacheElement<K, V>> ces = new ArrayList<ICacheElement<K, V>>();
+        ces.add(first);
+        while (ces.size() < max && next != null && next.getPutElement() != null)
+        {
+            ces.add(queue.poll().getPutElement());
+            next = queue.peek();
+        }
+
+        if (log.isDebugEnabled())
+        {
+            log.debug("Coalesce " + ces.size() + " put events for " + getCacheName());
+        }
+
+        try
+        {
+            return new PutAllEvent(ces);
+        }
+        catch (IOException e)
+        {
+            //PutAllEvent 的构造方法不会抛出异常
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Override
     public IStats getStatistics()
     {
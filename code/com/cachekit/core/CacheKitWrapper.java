@@ -1,6 +1,7 @@
 package com.cachekit.core;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -8,6 +9,7 @@ import org.apache.commons.logging.LogFactory;
 import com.cachekit.core.model.ICache;
 import com.cachekit.core.model.ICacheElement;
 import com.cachekit.core.model.ICacheListener;
+import com.cachekit.kits.KitCache;
 
 /**
  * 将 LaterCache 注入 CacheKitWrapper 中
@@ -51,6 +53,32 @@ public class CacheKitWrapper<K, V> implements ICacheListener<K, V>
 		}
 	}
 
+	/**
+	 * 插件缓存整批更新，其他缓存逐个更新
+	 */
+	@Override
+	public void handlePutAll(List<ICacheElement<K, V>> items) throws IOException
+	{
+		try
+		{
+			if (cache instanceof KitCache)
+			{
+				((KitCache<K, V>) cache).updateAll(items);
+			}
+			else
+			{
+				for (ICacheElement<K, V> item : items)
+				{
+					cache.update(item);
+				}
+			}
+		}
+		catch (Exception e)
+		{
+
+		}
+	}
+
 	@Override
 	public void handleRemove(String cacheName, K key) throws IOException
 	{
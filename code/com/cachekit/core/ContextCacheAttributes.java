@@ -25,6 +25,28 @@ public class ContextCacheAttributes implements IContextCacheAttributes {
 
     private static final int DEFAULT_CHUNK_SIZE = 2;
 
+    private static final boolean DEFAULT_USE_READ_BUFFER = false;
+
+    private static final long DEFAULT_MAX_MEMORY_BYTES = -1;
+
+    private static final String DEFAULT_ELEMENT_WEIGHER_NAME = "com.cachekit.core.memory.util.DefaultElementWeigher";
+
+    private static final int DEFAULT_MEMORY_CACHE_SEGMENTS = 16;
+
+    private static final long DEFAULT_MAX_OFF_HEAP_BYTES = 64L * 1024 * 1024;
+
+    private static final String DEFAULT_ELEMENT_SERIALIZER_NAME = "com.cachekit.utils.serialization.StandardSerializer";
+
+    private static final boolean DEFAULT_USE_COMPACT_ENTRIES = false;
+
+    private static final double DEFAULT_REFRESH_AHEAD_FACTOR = 0;
+
+    private static final double DEFAULT_EARLY_REFRESH_BETA = 0;
+
+    private static final int DEFAULT_NEGATIVE_CACHE_MAX_SIZE = 0;
+
+    private static final long DEFAULT_NEGATIVE_CACHE_TTL_MILLIS = 1000;
+
     private boolean useLateral = DEFAULT_USE_LATERAL;
 
     private boolean useRemote = DEFAULT_USE_REMOTE;
@@ -49,6 +71,32 @@ public class ContextCacheAttributes implements IContextCacheAttributes {
 
     private int spoolChunkSize = DEFAULT_CHUNK_SIZE;
 
+    private boolean useReadBuffer = DEFAULT_USE_READ_BUFFER;
+
+    private long maxMemoryBytes = DEFAULT_MAX_MEMORY_BYTES;
+
+    private String elementWeigherName = DEFAULT_ELEMENT_WEIGHER_NAME;
+
+    private int memoryCacheSegments = DEFAULT_MEMORY_CACHE_SEGMENTS;
+
+    private String segmentMemoryCacheName = DEFAULT_MEMORY_CACHE_NAME;
+
+    private long maxOffHeapBytes = DEFAULT_MAX_OFF_HEAP_BYTES;
+
+    private String elementSerializerName = DEFAULT_ELEMENT_SERIALIZER_NAME;
+
+    private boolean useCompactEntries = DEFAULT_USE_COMPACT_ENTRIES;
+
+    private String cacheLoaderName;
+
+    private double refreshAheadFactor = DEFAULT_REFRESH_AHEAD_FACTOR;
+
+    private double earlyRefreshBeta = DEFAULT_EARLY_REFRESH_BETA;
+
+    private int negativeCacheMaxSize = DEFAULT_NEGATIVE_CACHE_MAX_SIZE;
+
+    private long negativeCacheTtlMillis = DEFAULT_NEGATIVE_CACHE_TTL_MILLIS;
+
     public ContextCacheAttributes()
     {
         super();
@@ -182,6 +230,136 @@ public class ContextCacheAttributes implements IContextCacheAttributes {
         this.spoolChunkSize = spoolChunkSize;
     }
 
+    @Override
+    public void setUseReadBuffer(boolean useReadBuffer) {
+        this.useReadBuffer = useReadBuffer;
+    }
+
+    @Override
+    public boolean isUseReadBuffer() {
+        return this.useReadBuffer;
+    }
+
+    @Override
+    public void setMaxMemoryBytes(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    @Override
+    public long getMaxMemoryBytes() {
+        return this.maxMemoryBytes;
+    }
+
+    @Override
+    public void setElementWeigherName(String name) {
+        this.elementWeigherName = name;
+    }
+
+    @Override
+    public String getElementWeigherName() {
+        return this.elementWeigherName;
+    }
+
+    @Override
+    public void setMemoryCacheSegments(int segments) {
+        this.memoryCacheSegments = segments;
+    }
+
+    @Override
+    public int getMemoryCacheSegments() {
+        return this.memoryCacheSegments;
+    }
+
+    @Override
+    public void setSegmentMemoryCacheName(String name) {
+        this.segmentMemoryCacheName = name;
+    }
+
+    @Override
+    public String getSegmentMemoryCacheName() {
+        return this.segmentMemoryCacheName;
+    }
+
+    @Override
+    public void setMaxOffHeapBytes(long maxOffHeapBytes) {
+        this.maxOffHeapBytes = maxOffHeapBytes;
+    }
+
+    @Override
+    public long getMaxOffHeapBytes() {
+        return this.maxOffHeapBytes;
+    }
+
+    @Override
+    public void setElementSerializerName(String name) {
+        this.elementSerializerName = name;
+    }
+
+    @Override
+    public String getElementSerializerName() {
+        return this.elementSerializerName;
+    }
+
+    @Override
+    public void setUseCompactEntries(boolean useCompactEntries) {
+        this.useCompactEntries = useCompactEntries;
+    }
+
+    @Override
+    public boolean isUseCompactEntries() {
+        return this.useCompactEntries;
+    }
+
+    @Override
+    public void setCacheLoaderName(String name) {
+        this.cacheLoaderName = name;
+    }
+
+    @Override
+    public String getCacheLoaderName() {
+        return this.cacheLoaderName;
+    }
+
+    @Override
+    public void setRefreshAheadFactor(double factor) {
+        this.refreshAheadFactor = factor;
+    }
+
+    @Override
+    public double getRefreshAheadFactor() {
+        return this.refreshAheadFactor;
+    }
+
+    @Override
+    public void setEarlyRefreshBeta(double beta) {
+        this.earlyRefreshBeta = beta;
+    }
+
+    @Override
+    public double getEarlyRefreshBeta() {
+        return this.earlyRefreshBeta;
+    }
+
+    @Override
+    public void setNegativeCacheMaxSize(int size) {
+        this.negativeCacheMaxSize = size;
+    }
+
+    @Override
+    public int getNegativeCacheMaxSize() {
+        return this.negativeCacheMaxSize;
+    }
+
+    @Override
+    public void setNegativeCacheTtlMillis(long ttl) {
+        this.negativeCacheTtlMillis = ttl;
+    }
+
+    @Override
+    public long getNegativeCacheTtlMillis() {
+        return this.negativeCacheTtlMillis;
+    }
+
     @Override
     public DiskUsagePattern getDiskUsagePattern() {
         return diskUsagePattern;
@@ -198,6 +376,14 @@ public class ContextCacheAttributes implements IContextCacheAttributes {
         sb.append(", maxSpoolPerRun = ").append(maxSpoolPerRun);
         sb.append(", diskUsagePattern = ").append(diskUsagePattern);
         sb.append(", spoolChunkSize = ").append(spoolChunkSize);
+        sb.append(", useReadBuffer = ").append(useReadBuffer);
+        sb.append(", maxMemoryBytes = ").append(maxMemoryBytes);
+        sb.append(", useCompactEntries = ").append(useCompactEntries);
+        sb.append(", cacheLoaderName = ").append(cacheLoaderName);
+        sb.append(", refreshAheadFactor = ").append(refreshAheadFactor);
+        sb.append(", earlyRefreshBeta = ").append(earlyRefreshBeta);
+        sb.append(", negativeCacheMaxSize = ").append(negativeCacheMaxSize);
+        sb.append(", negativeCacheTtlMillis = ").append(negativeCacheTtlMillis);
         sb.append(" ]");
         return sb.toString();
     }
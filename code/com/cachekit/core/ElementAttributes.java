@@ -23,6 +23,8 @@ public class ElementAttributes implements IElementAttributes {
     private long maxIdleTime = -1;
     //元素个数
     private int size = 0;
+    //重新生成元素的代价，如耗时毫秒数
+    private long cost = 1;
 
     private long createTime = 0;
 
@@ -46,6 +48,7 @@ public class ElementAttributes implements IElementAttributes {
         maxLife = attr.maxLife;
         maxIdleTime = attr.maxIdleTime;
         size = attr.size;
+        cost = attr.cost;
     }
 
     @Override
@@ -73,6 +76,16 @@ public class ElementAttributes implements IElementAttributes {
         return size;
     }
 
+    @Override
+    public void setCost(long cost) {
+        this.cost = cost;
+    }
+
+    @Override
+    public long getCost() {
+        return cost;
+    }
+
     @Override
     public long getCreateTime() {
         return createTime;
@@ -82,6 +95,10 @@ public class ElementAttributes implements IElementAttributes {
         createTime = System.currentTimeMillis();
     }
 
+    public void setCreateTime(long time) {
+        this.createTime = time;
+    }
+
     @Override
     public long getIdleTime() {
         return this.maxIdleTime;
@@ -193,6 +210,7 @@ public class ElementAttributes implements IElementAttributes {
         sb.append(", IS_ETERNAL = ").append(IS_ETERNAL);
         sb.append(", MaxLifeSeconds = ").append(this.getMaxLife());
         sb.append(", IdleTime = ").append(this.getIdleTime());
+        sb.append(", Cost = ").append(this.getCost());
         sb.append(", CreateTime = ").append(this.getCreateTime());
         sb.append(", LastAccessTime = ").append(this.getLastAccessTime());
         sb.append(", getTimeToLiveSeconds() = ").append(String.valueOf(getTimeToLiveSeconds()));
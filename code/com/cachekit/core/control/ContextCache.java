@@ -1,29 +1,43 @@
 package com.cachekit.core.control;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.cachekit.access.exception.CacheException;
 import com.cachekit.access.exception.ObjectNotFoundException;
+import com.cachekit.core.CacheConstants;
+import com.cachekit.core.CacheElement;
 import com.cachekit.core.CacheStatus;
 import com.cachekit.core.control.event.ElementEvent;
 import com.cachekit.core.control.event.ElementEventType;
 import com.cachekit.core.control.event.IElementEvent;
 import com.cachekit.core.control.event.IElementEventHandler;
 import com.cachekit.core.control.event.IElementEventQueue;
+import com.cachekit.core.control.group.GroupAttrName;
 import com.cachekit.core.match.IKeyMatcher;
 import com.cachekit.core.match.KeyMatcher;
 import com.cachekit.core.memory.IMemoryCache;
@@ -31,6 +45,7 @@ import com.cachekit.core.memory.lru.LRUMemoryCache;
 import com.cachekit.core.memory.shrinking.ShrinkerThread;
 import com.cachekit.core.model.ICache;
 import com.cachekit.core.model.ICacheElement;
+import com.cachekit.core.model.ICacheLoader;
 import com.cachekit.core.model.IContextCacheAttributes;
 import com.cachekit.core.model.IContextCacheAttributes.DiskUsagePattern;
 import com.cachekit.core.model.IElementAttributes;
@@ -41,10 +56,20 @@ import com.cachekit.core.stats.IStatElement;
 import com.cachekit.core.stats.IStats;
 import com.cachekit.core.stats.StatElement;
 import com.cachekit.kits.KitCache;
+import com.cachekit.utils.config.OptionConverter;
+import com.cachekit.utils.struct.StripedLock;
+import com.cachekit.utils.timing.Deadline;
 
 public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
     private static final Log log = LogFactory.getLog(ContextCache.class);
 
+    private static final int KEY_LOCK_STRIPES = 64;
+
+    //DeadlineResult 中内存组件和加载器的名称，磁盘和横向组件使用组件的名称
+    private static final String MEMORY_TIER = "memory";
+
+    private static final String LOADER_TIER = "loader";
+
     private IElementEventQueue elementEventQueue;
 
     @SuppressWarnings("unchecked")
@@ -76,6 +101,24 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
 
     private ScheduledFuture<?> future;
 
+    private ScheduledExecutorService scheduledExecutor;
+
+    //同一个键的更新、删除和从组件加载按顺序执行，内存命中不加锁。
+    //每次写入和删除结束前在锁内增加条带的修改次数，不持锁的读取据此发现并发的写入
+    private final StripedLock keyLocks = new StripedLock(KEY_LOCK_STRIPES);
+
+    //computeIfAbsent 正在计算的键，同一个键的其他调用者等待计算结果
+    private final ConcurrentHashMap<K, Computation<ICacheElement<K, V>>> computing = new ConcurrentHashMap<K, Computation<ICacheElement<K, V>>>();
+
+    //当前线程正在计算的键，嵌套的 computeIfAbsent 不等待其他线程，避免互相等待
+    private static final ThreadLocal<Object> computingKey = new ThreadLocal<Object>();
+
+    //所有组件都未命中时的数据加载器，没有配置时为 null
+    private ContextCacheLoader<K, V> cacheLoader;
+
+    //确认不存在的键，没有配置 NegativeCacheMaxSize 时为 null
+    private NegativeCache<K> negativeCache;
+
     public ContextCache(IContextCacheAttributes cattr, IElementAttributes attr) {
         this.attr = attr;
         this.cacheAttr = cattr;
@@ -88,6 +131,11 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
         this.missCountExpired = new AtomicInteger(0);
 
         createMemoryCache(cattr);
+        createCacheLoader(cattr);
+        if (cattr.getNegativeCacheMaxSize() > 0)
+        {
+            negativeCache = new NegativeCache<K>(cattr.getNegativeCacheMaxSize(), cattr.getNegativeCacheTtlMillis());
+        }
 
         if (log.isInfoEnabled())
         {
@@ -106,6 +154,7 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
     @Override
     public void setScheduledExecutorService(ScheduledExecutorService scheduledExecutor)
     {
+        this.scheduledExecutor = scheduledExecutor;
         if (cacheAttr.isUseMemoryShrinker())
         {
             future = scheduledExecutor.scheduleAtFixedRate(new ShrinkerThread<K, V>(this), 0,
@@ -113,6 +162,11 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
         }
     }
 
+    public ScheduledExecutorService getScheduledExecutorService()
+    {
+        return scheduledExecutor;
+    }
+
     public void setKitCaches(KitCache<K, V>[] kitCaches) {
         this.kitCaches = kitCaches;
     }
@@ -136,6 +190,14 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
      * 更新内存和其他组件
      */
     protected void update(ICacheElement<K, V> cacheElement, boolean localOnly) throws IOException
+    {
+        update(cacheElement, localOnly, false);
+    }
+
+    /**
+     * skipWriter 为 true 时不写入 CacheWriter 组件，用于从数据源加载的值
+     */
+    private void update(ICacheElement<K, V> cacheElement, boolean localOnly, boolean skipWriter) throws IOException
     {
 
         //		if (cacheElement.getKey() instanceof String
@@ -156,16 +218,244 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
 
         updateCount.incrementAndGet();
 
-        synchronized (this)
+        Lock lock = keyLocks.getLock(cacheElement.getKey());
+        lock.lock();
+        try
         {
+            invalidateNegative(cacheElement.getKey());
             memCache.update(cacheElement);
-            updateKits(cacheElement, localOnly);
+            updateKits(cacheElement, localOnly, skipWriter);
+        }
+        finally
+        {
+            keyLocks.modified(cacheElement.getKey());
+            lock.unlock();
         }
 
         cacheElement.getElementAttributes().setLastAccessTimeNow();
     }
 
+    public void updateAll(Collection<ICacheElement<K, V>> ces) throws IOException
+    {
+        updateAll(ces, false);
+    }
+
+    public void localUpdateAll(Collection<ICacheElement<K, V>> ces) throws IOException
+    {
+        updateAll(ces, true);
+    }
+
+    /**
+     * 批量更新：按下标顺序锁住涉及的键锁，内存组件一次加锁写入，每个组件收到一次批量更新
+     */
+    protected void updateAll(Collection<ICacheElement<K, V>> ces, boolean localOnly) throws IOException
+    {
+        updateAll(ces, localOnly, false);
+    }
+
+    /**
+     * 只写入内存中不存在（或已过期）的键，返回每个键写入后在缓存中的元素，加载器写回时使用
+     */
+    Map<K, ICacheElement<K, V>> updateAllIfAbsent(Collection<ICacheElement<K, V>> ces) throws IOException
+    {
+        return updateAll(ces, false, true);
+    }
+
+    /**
+     * 后台重新加载的结果：缓存中仍是 current（或已经不存在）时写入 ce，ce 为 null 表示数据源中已经删除；
+     * 加载期间有更新的写入时保留更新的值。返回写入后缓存中的元素
+     */
+    ICacheElement<K, V> replaceRefreshed(ICacheElement<K, V> current, ICacheElement<K, V> ce) throws IOException
+    {
+        K key = current.getKey();
+        Lock lock = keyLocks.getLock(key);
+        lock.lock();
+        try
+        {
+            ICacheElement<K, V> existing = memCache.getQuiet(key);
+            if (existing != null && existing.getElementAttributes().getCreateTime() != current.getElementAttributes().getCreateTime())
+            {
+                return existing;
+            }
+            if (ce == null)
+            {
+                remove(key, false, true);
+                return null;
+            }
+            update(ce, false, true);
+            return ce;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private Map<K, ICacheElement<K, V>> updateAll(Collection<ICacheElement<K, V>> ces, boolean localOnly, boolean onlyIfAbsent) throws IOException
+    {
+        Map<K, ICacheElement<K, V>> written = new HashMap<K, ICacheElement<K, V>>();
+        if (ces.isEmpty())
+        {
+            return written;
+        }
+
+        if (log.isDebugEnabled())
+        {
+            log.debug("Update memory cache with " + ces.size() + " elements");
+        }
+
+        List<K> keys = new ArrayList<K>(ces.size());
+        for (ICacheElement<K, V> ce : ces)
+        {
+            keys.add(ce.getKey());
+        }
+
+        List<Lock> locks = keyLocks.getLocks(keys);
+        for (Lock lock : locks)
+        {
+            lock.lock();
+        }
+        try
+        {
+            if (onlyIfAbsent)
+            {
+                List<ICacheElement<K, V>> absent = new ArrayList<ICacheElement<K, V>>(ces.size());
+                for (ICacheElement<K, V> ce : ces)
+                {
+                    ICacheElement<K, V> existing = memCache.getQuiet(ce.getKey());
+                    if (existing != null && !isExpired(existing))
+                    {
+                        written.put(existing.getKey(), existing);
+                    }
+                    else
+                    {
+                        absent.add(ce);
+                    }
+                }
+                ces = absent;
+            }
+
+            updateCount.addAndGet(ces.size());
+            if (!ces.isEmpty())
+            {
+                for (ICacheElement<K, V> ce : ces)
+                {
+                    invalidateNegative(ce.getKey());
+                }
+                memCache.updateAll(ces);
+                //加载器写回的值来自数据源，不再写入 CacheWriter 组件
+                updateKitsAll(ces, localOnly, onlyIfAbsent);
+            }
+        }
+        finally
+        {
+            for (K key : keys)
+            {
+                keyLocks.modified(key);
+            }
+            for (int i = locks.size() - 1; i >= 0; i--)
+            {
+                locks.get(i).unlock();
+            }
+        }
+
+        for (ICacheElement<K, V> ce : ces)
+        {
+            ce.getElementAttributes().setLastAccessTimeNow();
+            written.put(ce.getKey(), ce);
+        }
+        return written;
+    }
+
+    /**
+     * 与 updateKits 的规则相同，每个组件只收到它接受的元素
+     */
+    private void updateKitsAll(Collection<ICacheElement<K, V>> ces, boolean localOnly, boolean skipWriter) throws IOException
+    {
+        for (KitCache<K, V> kit : kitCaches)
+        {
+            if (kit == null)
+            {
+                continue;
+            }
+
+            List<ICacheElement<K, V>> accepted = new ArrayList<ICacheElement<K, V>>(ces.size());
+            switch (kit.getCacheType())
+            {
+                case PAXOS_CACHE:
+                    if (!localOnly)
+                    {
+                        accepted.addAll(ces);
+                    }
+                    break;
+
+                case WRITER_CACHE:
+                    if (!localOnly && !skipWriter)
+                    {
+                        accepted.addAll(ces);
+                    }
+                    break;
+
+                case LATERAL_CACHE:
+                    if (cacheAttr.isUseLateral() && !localOnly)
+                    {
+                        for (ICacheElement<K, V> ce : ces)
+                        {
+                            if (ce.getElementAttributes().getIsLateral())
+                            {
+                                accepted.add(ce);
+                            }
+                        }
+                    }
+                    break;
+
+                case DISK_CACHE:
+                    if (cacheAttr.isUseDisk() && cacheAttr.getDiskUsagePattern() == DiskUsagePattern.UPDATE)
+                    {
+                        for (ICacheElement<K, V> ce : ces)
+                        {
+                            if (ce.getElementAttributes().getIsSpool())
+                            {
+                                accepted.add(ce);
+                            }
+                        }
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+
+            if (accepted.isEmpty())
+            {
+                continue;
+            }
+
+            try
+            {
+                kit.updateAll(accepted);
+                if (log.isDebugEnabled())
+                {
+                    log.debug("Updated " + accepted.size() + " elements in kit cache [" + kit.getCacheName() + "]");
+                }
+            }
+            catch (IOException ex)
+            {
+                if (kit.getCacheType() != CacheType.PAXOS_CACHE)
+                {
+                    throw ex;
+                }
+                log.error("Fail to update in paxos cache", ex);
+            }
+        }
+    }
+
     protected void updateKits(ICacheElement<K, V> cacheElement, boolean localOnly) throws IOException
+    {
+        updateKits(cacheElement, localOnly, false);
+    }
+
+    private void updateKits(ICacheElement<K, V> cacheElement, boolean localOnly, boolean skipWriter) throws IOException
     {
         if (log.isDebugEnabled())
         {
@@ -253,6 +543,14 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
                     }
                     break;
 
+                case WRITER_CACHE:
+                    //其他节点同步过来的更新已经由源节点写入数据源
+                    if (!localOnly && !skipWriter)
+                    {
+                        kit.update(cacheElement);
+                    }
+                    break;
+
                 default:
                     break;
             }
@@ -288,174 +586,692 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
                         throw new IllegalStateException(ex.getMessage());
                     }
 
-                    if (log.isDebugEnabled())
-                    {
-                        log.debug("Spool to disk  for: " + ce.getKey() + " on disk cache[" + kitCache.getCacheName() + "]");
-                    }
+                    if (log.isDebugEnabled())
+                    {
+                        log.debug("Spool to disk  for: " + ce.getKey() + " on disk cache[" + kitCache.getCacheName() + "]");
+                    }
+                }
+                else
+                {
+                    if (log.isDebugEnabled())
+                    {
+                        log.debug("CacheKit is not configured to use the DiskCache as a swap.");
+                    }
+                }
+            }
+        }
+
+        if (!diskAvailable)
+        {
+            try
+            {
+                handleElementEvent(ce, ElementEventType.SPOOLED_DISK_NOT_AVAILABLE);
+            }
+            catch (Exception e)
+            {
+            }
+        }
+    }
+
+    @Override
+    public ICacheElement<K, V> get(K key)
+    {
+        return get(key, false);
+    }
+
+    public ICacheElement<K, V> localGet(K key)
+    {
+        return get(key, true);
+    }
+
+    /**
+     * request 已经完成（被取消或超时）时不再查找剩余的组件
+     */
+    public ICacheElement<K, V> get(K key, Future<?> request)
+    {
+        return get(key, false, request);
+    }
+
+    /**
+     * 最多使用 budget 的时间查找：超过截止时间后剩余的组件和加载器不再查找，磁盘和横向组件内部
+     * 等待锁和网络响应也不超过剩余的时间。结果中记录查找过和跳过的组件
+     */
+    public DeadlineResult<ICacheElement<K, V>> get(K key, Duration budget)
+    {
+        Deadline deadline = Deadline.begin(budget.toNanos(), TimeUnit.NANOSECONDS);
+        try
+        {
+            return new DeadlineResult<ICacheElement<K, V>>(get(key, false, null), deadline);
+        }
+        finally
+        {
+            deadline.end();
+        }
+    }
+
+    /**
+     * 只查找内存组件，未命中时返回 null，不计入未命中次数
+     */
+    public ICacheElement<K, V> getFromMemory(K key)
+    {
+        ICacheElement<K, V> element = null;
+        try
+        {
+            element = memCache.get(key);
+            if (element != null)
+            {
+                element = checkMemoryElement(element);
+            }
+        }
+        catch (IOException e)
+        {
+            log.error("Get element from memory error.", e);
+        }
+
+        if (element != null)
+        {
+            element.getElementAttributes().setLastAccessTimeNow();
+            if (cacheLoader != null)
+            {
+                cacheLoader.refreshIfDue(element);
+            }
+        }
+        return element;
+    }
+
+    protected ICacheElement<K, V> get(K key, boolean localOnly)
+    {
+        return get(key, localOnly, null);
+    }
+
+    /**
+     * 所有组件都未命中时调用加载器，加载在键锁之外进行，localOnly 时不加载。
+     * 命中的元素快要过期时在后台重新加载。完整查找（包括加载器）仍未找到的键记入负缓存
+     */
+    protected ICacheElement<K, V> get(K key, boolean localOnly, Future<?> request)
+    {
+        //在查找之前记下修改次数，查找期间有写入时不记入负缓存
+        long version = keyLocks.version(key);
+        ICacheElement<K, V> element = getFromTiers(key, localOnly, request, true);
+
+        if (element != null)
+        {
+            if (!localOnly && cacheLoader != null)
+            {
+                cacheLoader.refreshIfDue(element);
+            }
+            return element;
+        }
+
+        //localOnly 和被放弃的查找没有查完所有组件，不能确认不存在
+        if (localOnly || (negativeCache != null && negativeCache.containsQuiet(key)))
+        {
+            return null;
+        }
+        if (isAbandoned(request))
+        {
+            if (cacheLoader != null)
+            {
+                recordSkipped(LOADER_TIER);
+            }
+            return null;
+        }
+
+        if (cacheLoader != null)
+        {
+            recordConsulted(LOADER_TIER);
+            element = cacheLoader.load(key);
+        }
+        //等待其他线程加载时超过截止时间同样不能确认不存在
+        if (element == null && !isAbandoned(request))
+        {
+            recordNegative(key, version);
+        }
+        return element;
+    }
+
+    /**
+     * 先从内存组件中查找，找不到再从磁盘组件中查找（还要考虑查找到的元素是否过期），不调用加载器。
+     * useNegativeCache 为 true 时负缓存中的键不再查找组件
+     */
+    private ICacheElement<K, V> getFromTiers(K key, boolean localOnly, Future<?> request, boolean useNegativeCache)
+    {
+        ICacheElement<K, V> element = null;
+
+        boolean found = false;
+
+        Deadline deadline = Deadline.current();
+
+        if (log.isDebugEnabled())
+        {
+            log.debug("Get: key = " + key + ", localOnly = " + localOnly);
+        }
+
+        try
+        {
+            //内存命中不加锁，不会等待磁盘或网络读取
+            element = memCache.get(key);
+            if (deadline != null)
+            {
+                deadline.consulted(MEMORY_TIER);
+            }
+
+            if (element != null)
+            {
+                found = true;
+                element = checkMemoryElement(element);
+            }
+            else if (useNegativeCache && negativeCache != null && negativeCache.contains(key))
+            {
+                if (log.isDebugEnabled())
+                {
+                    log.debug(cacheAttr.getCacheName() + " - negative cache hit: " + key);
+                }
+            }
+            else
+            {
+                //内存未命中时按键加锁，与同一个键的更新、删除按顺序执行
+                Lock lock = keyLocks.getLock(key);
+                if (!Deadline.tryLock(lock))
+                {
+                    //截止时间之前没有拿到键锁，剩余的组件都不再查找
+                    skipKits(deadline, 0, localOnly);
+                    missCountNotFound.incrementAndGet();
+                    return null;
+                }
+                try
+                {
+                    //等待锁期间其他线程可能已经把元素加载到内存中
+                    element = memCache.getQuiet(key);
+                    if (element != null)
+                    {
+                        found = true;
+                        element = checkMemoryElement(element);
+                    }
+                    else
+                    {
+                        for (int i = 0; i < kitCaches.length; i++) {
+                            KitCache<K, V> kitCache = kitCaches[i];
+                            if (isAbandoned(request))
+                            {
+                                skipKits(deadline, i, localOnly);
+                                break;
+                            }
+
+                            if (kitCache != null)
+                            {
+                                CacheType cacheType = kitCache.getCacheType();
+
+                                if (!localOnly || cacheType == CacheType.DISK_CACHE)
+                                {
+                                    if (log.isDebugEnabled())
+                                    {
+                                        log.debug("Get value from kit  [" + kitCache.getCacheName() + "] kit cache type is:  " + cacheType);
+                                    }
+
+                                    if (deadline != null)
+                                    {
+                                        deadline.consulted(kitCache.getKitCacheAttributes().getName());
+                                    }
+
+                                    try
+                                    {
+                                        element = kitCache.get(key);
+                                    }
+                                    catch (IOException e)
+                                    {
+                                    }
+                                }
+
+                                if (log.isDebugEnabled())
+                                {
+                                    log.debug("Get cache element: " + element);
+                                }
+
+                                if (element != null)
+                                {
+                                    //判断元素是否过期
+                                    if (isExpired(element))
+                                    {
+                                        if (log.isDebugEnabled())
+                                        {
+                                            log.debug(cacheAttr.getCacheName() + " -  kit cache[" + kitCache.getCacheName() + "] hit, but element expired.");
+                                        }
+
+                                        doExpires(element);
+                                        element = null;
+                                    }
+                                    else
+                                    {
+                                        if (log.isDebugEnabled())
+                                        {
+                                            log.debug(cacheAttr.getCacheName() + " - kit cache[" + kitCache.getCacheName() + "] hit");
+                                        }
+                                        hitCountKitCache.incrementAndGet();
+                                        copyKitCacheRetrievedItemToMemory(element);
+                                    }
+                                    found = true;
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            log.error("Get element error.", e);
+        }
+
+        if (!found)
+        {
+            missCountNotFound.incrementAndGet();
+
+            if (log.isDebugEnabled())
+            {
+                log.debug(cacheAttr.getCacheName() + " - not find");
+            }
+        }
+
+        if (element != null)
+        {
+            element.getElementAttributes().setLastAccessTimeNow();
+        }
+
+        return element;
+    }
+
+
+    /**
+     * version 是开始查找之前键所在条带的修改次数。在键锁内确认修改次数没有变化再记入负缓存，
+     * 查找期间完成的写入即使已经不在内存中（MaxObjects 为 0，或者已经被换出到磁盘组件），也不会被负缓存遮住
+     */
+    private void recordNegative(K key, long version)
+    {
+        if (negativeCache == null || isMultiKey(key))
+        {
+            return;
+        }
+
+        Lock lock = keyLocks.getLock(key);
+        lock.lock();
+        try
+        {
+            if (keyLocks.version(key) == version)
+            {
+                negativeCache.put(key);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 更新时调用，调用者持有键锁
+     */
+    private void invalidateNegative(K key)
+    {
+        if (negativeCache != null)
+        {
+            negativeCache.invalidate(key);
+        }
+    }
+
+    /**
+     * 调用者已经取消或超时，或者超过了当前线程的截止时间，剩余的组件不再查找
+     */
+    private boolean isAbandoned(Future<?> request)
+    {
+        if ((request != null && request.isDone()) || Deadline.expired())
+        {
+            if (log.isDebugEnabled())
+            {
+                log.debug(cacheAttr.getCacheName() + " - request done, skip remaining kit caches");
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 记录因截止时间没有查找的组件
+     */
+    private void skipKits(Deadline deadline, int from, boolean localOnly)
+    {
+        if (deadline == null)
+        {
+            return;
+        }
+        for (int i = from; i < kitCaches.length; i++)
+        {
+            KitCache<K, V> kitCache = kitCaches[i];
+            if (kitCache != null && (!localOnly || kitCache.getCacheType() == CacheType.DISK_CACHE))
+            {
+                deadline.skipped(kitCache.getKitCacheAttributes().getName());
+            }
+        }
+    }
+
+    private void recordConsulted(String tier)
+    {
+        Deadline deadline = Deadline.current();
+        if (deadline != null)
+        {
+            deadline.consulted(tier);
+        }
+    }
+
+    private void recordSkipped(String tier)
+    {
+        Deadline deadline = Deadline.current();
+        if (deadline != null)
+        {
+            deadline.skipped(tier);
+        }
+    }
+
+    /**
+     * 内存命中的元素过期时删除并返回 null
+     */
+    private ICacheElement<K, V> checkMemoryElement(ICacheElement<K, V> element) throws IOException
+    {
+        //判断元素是否过期
+        if (isExpired(element))
+        {
+            if (log.isDebugEnabled())
+            {
+                log.debug(cacheAttr.getCacheName() + " Memory cache hit, but element expired");
+            }
+            //删除过期元素
+            return expireMemoryElement(element);
+        }
+
+        if (log.isDebugEnabled())
+        {
+            log.debug(cacheAttr.getCacheName() + "  Memory cache hit");
+        }
+        hitCountMemCache.incrementAndGet();
+        return element;
+    }
+
+    /**
+     * 内存命中不持有键锁，发现过期到删除之间可能有新的值写入。在键锁内重新读取内存中的元素：
+     * 仍是同一个过期元素时才删除，已经被新的值替换时返回新的值。截止时间之前拿不到键锁时按未命中返回，不删除
+     */
+    private ICacheElement<K, V> expireMemoryElement(ICacheElement<K, V> element) throws IOException
+    {
+        K key = element.getKey();
+        Lock lock = keyLocks.getLock(key);
+        if (!Deadline.tryLock(lock))
+        {
+            return null;
+        }
+        try
+        {
+            ICacheElement<K, V> current = memCache.getQuiet(key);
+            if (current == null)
+            {
+                //已经被删除或换出，换出的副本由组件查找时判断是否过期
+                missCountExpired.incrementAndGet();
+                return null;
+            }
+            if (current == element
+                    || current.getElementAttributes().getCreateTime() == element.getElementAttributes().getCreateTime()
+                    || isExpired(current))
+            {
+                doExpires(current);
+                return null;
+            }
+            hitCountMemCache.incrementAndGet();
+            return current;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 过期只删除缓存中的副本，不删除数据源中的数据
+     */
+    protected void doExpires(ICacheElement<K, V> element)
+    {
+        missCountExpired.incrementAndGet();
+        remove(element.getKey(), false, true);
+    }
+
+    /**
+     * 键不存在时才写入，返回已经存在的元素，写入成功时返回 null
+     */
+    public ICacheElement<K, V> putIfAbsent(ICacheElement<K, V> ce) throws IOException
+    {
+        Lock lock = keyLocks.getLock(ce.getKey());
+        lock.lock();
+        try
+        {
+            ICacheElement<K, V> existing = getFromTiers(ce.getKey(), false, null, false);
+            if (existing == null)
+            {
+                update(ce);
+            }
+            return existing;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 键不存在时调用 mappingFunction 计算值并写入，计算结果为 null 时不写入。
+     * mappingFunction 在键锁之外执行，可以读写缓存中的其他键；同一个键同时只有一个线程在计算，其他线程等待它的结果，
+     * 计算失败或结果为 null 时由等待的线程各自重新计算。已经在计算其他键的线程不等待，自己计算，避免两个计算互相等待。
+     * mappingFunction 中对同一个键再次调用 computeIfAbsent 会抛出 IllegalStateException。
+     * 计算期间这个键被直接写入时保留已写入的值，计算结果被丢弃
+     */
+    public ICacheElement<K, V> computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction, IElementAttributes attr) throws IOException
+    {
+        while (true)
+        {
+            ICacheElement<K, V> existing = getFromTiers(key, false, null, false);
+            if (existing != null)
+            {
+                return existing;
+            }
+
+            Computation<ICacheElement<K, V>> mine = new Computation<ICacheElement<K, V>>();
+            Computation<ICacheElement<K, V>> running = computing.putIfAbsent(key, mine);
+            if (running != null)
+            {
+                if (running.owner == Thread.currentThread())
+                {
+                    throw new IllegalStateException("Recursive computeIfAbsent for key [" + key + "]");
                 }
-                else
+                if (computingKey.get() != null)
                 {
-                    if (log.isDebugEnabled())
+                    return compute(key, mappingFunction, attr);
+                }
+                try
+                {
+                    ICacheElement<K, V> ce = running.join();
+                    if (ce != null)
                     {
-                        log.debug("CacheKit is not configured to use the DiskCache as a swap.");
+                        return ce;
                     }
                 }
+                catch (CompletionException e)
+                {
+                    //计算失败的异常已经抛给了计算的线程
+                }
+                continue;
             }
-        }
 
-        if (!diskAvailable)
-        {
+            Object outer = computingKey.get();
+            computingKey.set(key);
             try
             {
-                handleElementEvent(ce, ElementEventType.SPOOLED_DISK_NOT_AVAILABLE);
+                ICacheElement<K, V> ce = compute(key, mappingFunction, attr);
+                mine.complete(ce);
+                return ce;
             }
-            catch (Exception e)
+            catch (Throwable t)
+            {
+                mine.completeExceptionally(t);
+                throw t;
+            }
+            finally
             {
+                computingKey.set(outer);
+                computing.remove(key, mine);
             }
         }
     }
 
-    @Override
-    public ICacheElement<K, V> get(K key)
+    /**
+     * 在键锁之外计算，在键锁内再次确认键不存在后写入，返回写入后缓存中的元素
+     */
+    private ICacheElement<K, V> compute(K key, Function<? super K, ? extends V> mappingFunction, IElementAttributes attr) throws IOException
     {
-        return get(key, false);
+        V val = mappingFunction.apply(key);
+        if (val == null)
+        {
+            return null;
+        }
+
+        Lock lock = keyLocks.getLock(key);
+        lock.lock();
+        try
+        {
+            ICacheElement<K, V> existing = getFromTiers(key, false, null, false);
+            if (existing != null)
+            {
+                return existing;
+            }
+            ICacheElement<K, V> ce = new CacheElement<K, V>(getCacheName(), key, val, attr);
+            update(ce);
+            return ce;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
-    public ICacheElement<K, V> localGet(K key)
+    /**
+     * 键存在时才写入，返回被替换的元素，键不存在时返回 null
+     */
+    public ICacheElement<K, V> replace(ICacheElement<K, V> ce) throws IOException
     {
-        return get(key, true);
+        Lock lock = keyLocks.getLock(ce.getKey());
+        lock.lock();
+        try
+        {
+            ICacheElement<K, V> existing = getFromTiers(ce.getKey(), false, null, false);
+            if (existing != null)
+            {
+                update(ce);
+            }
+            return existing;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     /**
-     * 先从内存组件中查找，找不到再从磁盘组件中查找（还要考虑查找到的元素是否过期）
+     * 当前值与 oldVal 相等时才写入
      */
-    protected ICacheElement<K, V> get(K key, boolean localOnly)
+    public boolean replace(V oldVal, ICacheElement<K, V> ce) throws IOException
     {
-        ICacheElement<K, V> element = null;
-
-        boolean found = false;
-
-        if (log.isDebugEnabled())
+        Lock lock = keyLocks.getLock(ce.getKey());
+        lock.lock();
+        try
         {
-            log.debug("Get: key = " + key + ", localOnly = " + localOnly);
+            ICacheElement<K, V> existing = getFromTiers(ce.getKey(), false, null, false);
+            if (existing == null || !existing.getVal().equals(oldVal))
+            {
+                return false;
+            }
+            update(ce);
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
         }
+    }
 
-        synchronized (this)
+    /**
+     * 键不存在时写入 val，存在时写入 remappingFunction(旧值, val)，结果为 null 时删除该键。
+     * remappingFunction 在键锁之外执行，可以读写缓存；执行期间键所在的条带有写入时在锁内重新读取，
+     * 旧值已经改变就用新的旧值再执行一次，因此 remappingFunction 可能被调用多次，不应有副作用。组件只收到一次最终值的更新
+     */
+    public ICacheElement<K, V> merge(K key, V val, BiFunction<? super V, ? super V, ? extends V> remappingFunction, IElementAttributes attr) throws IOException
+    {
+        Lock lock = keyLocks.getLock(key);
+        while (true)
         {
+            long version = keyLocks.version(key);
+            ICacheElement<K, V> existing = getFromTiers(key, false, null, false);
+            V newVal = (existing == null) ? val : remappingFunction.apply(existing.getVal(), val);
+
+            lock.lock();
             try
             {
-                element = memCache.get(key);
-
-                if (element != null)
+                if (keyLocks.version(key) != version)
                 {
-                    //判断元素是否过期
-                    if (isExpired(element))
-                    {
-                        if (log.isDebugEnabled())
-                        {
-                            log.debug(cacheAttr.getCacheName() + " Memory cache hit, but element expired");
-                        }
-                        //删除过期元素
-                        doExpires(element);
-                        element = null;
-                    }
-                    else
+                    //同一条带上其他键的写入同样会改变修改次数，旧值没有变化时计算结果仍然有效
+                    ICacheElement<K, V> current = getFromTiers(key, false, null, false);
+                    if (current == null ? existing != null : (existing == null || !current.getVal().equals(existing.getVal())))
                     {
-                        if (log.isDebugEnabled())
-                        {
-                            log.debug(cacheAttr.getCacheName() + "  Memory cache hit");
-                        }
-                        hitCountMemCache.incrementAndGet();
+                        continue;
                     }
-                    found = true;
                 }
-                //内存组件没找到，就从磁盘组件查找
-                else
+                if (newVal == null)
                 {
-                    for (KitCache<K, V> kitCache : kitCaches) {
-                        if (kitCache != null)
-                        {
-                            CacheType cacheType = kitCache.getCacheType();
-
-                            if (!localOnly || cacheType == CacheType.DISK_CACHE)
-                            {
-                                if (log.isDebugEnabled())
-                                {
-                                    log.debug("Get value from kit  [" + kitCache.getCacheName() + "] kit cache type is:  " + cacheType);
-                                }
-
-                                try
-                                {
-                                    element = kitCache.get(key);
-                                }
-                                catch (IOException e)
-                                {
-                                }
-                            }
-
-                            if (log.isDebugEnabled())
-                            {
-                                log.debug("Get cache element: " + element);
-                            }
-
-                            if (element != null)
-                            {
-                                //判断元素是否过期
-                                if (isExpired(element))
-                                {
-                                    if (log.isDebugEnabled())
-                                    {
-                                        log.debug(cacheAttr.getCacheName() + " -  kit cache[" + kitCache.getCacheName() + "] hit, but element expired.");
-                                    }
-
-                                    doExpires(element);
-                                    element = null;
-                                }
-                                else
-                                {
-                                    if (log.isDebugEnabled())
-                                    {
-                                        log.debug(cacheAttr.getCacheName() + " - kit cache[" + kitCache.getCacheName() + "] hit");
-                                    }
-                                    hitCountKitCache.incrementAndGet();
-                                    copyKitCacheRetrievedItemToMemory(element);
-                                }
-                                found = true;
-                                break;
-                            }
-                        }
-                    }
+                    remove(key);
+                    return null;
                 }
+                ICacheElement<K, V> ce = new CacheElement<K, V>(getCacheName(), key, newVal, attr);
+                update(ce);
+                return ce;
             }
-            catch (IOException e)
+            finally
             {
-                log.error("Get element error.", e);
+                lock.unlock();
             }
         }
+    }
 
-        if (!found)
+    /**
+     * 用新的属性重新写入元素，读取和写入在同一个键锁内完成，键不存在时返回 false
+     */
+    public boolean resetElementAttributes(K key, IElementAttributes attr) throws IOException
+    {
+        Lock lock = keyLocks.getLock(key);
+        lock.lock();
+        try
         {
-            missCountNotFound.incrementAndGet();
-
-            if (log.isDebugEnabled())
+            ICacheElement<K, V> existing = getFromTiers(key, false, null, false);
+            if (existing == null)
             {
-                log.debug(cacheAttr.getCacheName() + " - not find");
+                return false;
             }
+            update(new CacheElement<K, V>(getCacheName(), existing.getKey(), existing.getVal(), attr));
+            return true;
         }
-
-        if (element != null)
+        finally
         {
-            element.getElementAttributes().setLastAccessTimeNow();
+            lock.unlock();
         }
-
-        return element;
-    }
-
-
-    protected void doExpires(ICacheElement<K, V> element)
-    {
-        missCountExpired.incrementAndGet();
-        remove(element.getKey());
     }
 
     @Override
@@ -468,7 +1284,36 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
         return getMultiple(keys, true);
     }
 
+    /**
+     * request 已经完成（被取消或超时）时不再查找剩余的组件
+     */
+    public Map<K, ICacheElement<K, V>> getMultiple(Set<K> keys, Future<?> request)
+    {
+        return getMultiple(keys, false, request);
+    }
+
+    /**
+     * 与 get(key, budget) 相同，所有键共用一个截止时间
+     */
+    public DeadlineResult<Map<K, ICacheElement<K, V>>> getMultiple(Set<K> keys, Duration budget)
+    {
+        Deadline deadline = Deadline.begin(budget.toNanos(), TimeUnit.NANOSECONDS);
+        try
+        {
+            return new DeadlineResult<Map<K, ICacheElement<K, V>>>(getMultiple(keys, false, null), deadline);
+        }
+        finally
+        {
+            deadline.end();
+        }
+    }
+
     protected Map<K, ICacheElement<K, V>> getMultiple(Set<K> keys, boolean localOnly)
+    {
+        return getMultiple(keys, localOnly, null);
+    }
+
+    protected Map<K, ICacheElement<K, V>> getMultiple(Set<K> keys, boolean localOnly, Future<?> request)
     {
         Map<K, ICacheElement<K, V>> elements = new HashMap<K, ICacheElement<K, V>>();
 
@@ -477,17 +1322,43 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
             log.debug("Get: key = " + keys + ", localOnly = " + localOnly);
         }
 
+        //在查找之前记下每个键的修改次数，查找期间有写入的键不记入负缓存
+        Map<K, Long> versions = null;
+        if (negativeCache != null && !localOnly)
+        {
+            versions = new HashMap<K, Long>(keys.size() * 2);
+            for (K key : keys)
+            {
+                versions.put(key, Long.valueOf(keyLocks.version(key)));
+            }
+        }
+
         try
         {
             Map<K, ICacheElement<K, V>> elementsFromMemory = getMultipleFromMemory(keys);
+            recordConsulted(MEMORY_TIER);
 
             elements.putAll(elementsFromMemory);
 
             if (elements.size() != keys.size())
             {
                 Set<K> remainingKeys = pruneKeysFound(keys, elements);
+                if (negativeCache != null)
+                {
+                    Iterator<K> it = remainingKeys.iterator();
+                    while (it.hasNext())
+                    {
+                        if (negativeCache.contains(it.next()))
+                        {
+                            it.remove();
+                        }
+                    }
+                }
 
-                elements.putAll(getMultipleFromKitCaches(remainingKeys, localOnly));
+                if (!remainingKeys.isEmpty())
+                {
+                    elements.putAll(getMultipleFromKitCaches(remainingKeys, localOnly, request));
+                }
             }
         }
         catch (IOException e)
@@ -495,6 +1366,15 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
             log.error("Get elements error.", e);
         }
 
+        if (!localOnly && cacheLoader != null)
+        {
+            //命中的元素快要过期时在后台重新加载
+            for (ICacheElement<K, V> element : elements.values())
+            {
+                cacheLoader.refreshIfDue(element);
+            }
+        }
+
         if (elements.size() != keys.size())
         {
             missCountNotFound.addAndGet(keys.size() - elements.size());
@@ -503,6 +1383,43 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
             {
                 log.debug(cacheAttr.getCacheName() + " - " + (keys.size() - elements.size()) + " not found.");
             }
+
+            if (!localOnly && isAbandoned(request))
+            {
+                if (cacheLoader != null)
+                {
+                    recordSkipped(LOADER_TIER);
+                }
+            }
+            else if (!localOnly)
+            {
+                Set<K> missingKeys = pruneKeysFound(keys, elements);
+                if (negativeCache != null)
+                {
+                    Iterator<K> it = missingKeys.iterator();
+                    while (it.hasNext())
+                    {
+                        if (negativeCache.containsQuiet(it.next()))
+                        {
+                            it.remove();
+                        }
+                    }
+                }
+
+                //剩余的键一次批量加载
+                if (cacheLoader != null && !missingKeys.isEmpty())
+                {
+                    recordConsulted(LOADER_TIER);
+                    elements.putAll(cacheLoader.loadAll(missingKeys));
+                }
+                for (K key : missingKeys)
+                {
+                    if (versions != null && !elements.containsKey(key) && !isAbandoned(request))
+                    {
+                        recordNegative(key, versions.get(key).longValue());
+                    }
+                }
+            }
         }
 
         return elements;
@@ -523,8 +1440,12 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
                         log.debug(cacheAttr.getCacheName() + " - Memory cache hit, but element expired");
                     }
 
-                    doExpires(element);
-                    elementsFromMemory.remove(element.getKey());
+                    ICacheElement<K, V> current = expireMemoryElement(element);
+                    if (current == null) {
+                        elementsFromMemory.remove(element.getKey());
+                    } else {
+                        elementsFromMemory.put(current.getKey(), current);
+                    }
                 } else {
                     if (log.isDebugEnabled()) {
                         log.debug(cacheAttr.getCacheName() + " - Memory cache hit");
@@ -537,12 +1458,19 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
         return elementsFromMemory;
     }
 
-    private Map<K, ICacheElement<K, V>> getMultipleFromKitCaches(Set<K> keys, boolean localOnly) throws IOException {
+    private Map<K, ICacheElement<K, V>> getMultipleFromKitCaches(Set<K> keys, boolean localOnly, Future<?> request) throws IOException {
         Map<K, ICacheElement<K, V>> elements = new HashMap<K, ICacheElement<K, V>>();
 
         Set<K> remainingKeys = new HashSet<K>(keys);
 
-        for (KitCache<K, V> kitCache : kitCaches) {
+        Deadline deadline = Deadline.current();
+
+        for (int i = 0; i < kitCaches.length; i++) {
+            KitCache<K, V> kitCache = kitCaches[i];
+            if (isAbandoned(request)) {
+                skipKits(deadline, i, localOnly);
+                break;
+            }
             if (kitCache != null) {
                 Map<K, ICacheElement<K, V>> elementsFromKitCache = new HashMap<K, ICacheElement<K, V>>();
 
@@ -554,6 +1482,10 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
                                 + cacheType);
                     }
 
+                    if (deadline != null) {
+                        deadline.consulted(kitCache.getKitCacheAttributes().getName());
+                    }
+
                     try {
                         elementsFromKitCache.putAll(kitCache.getMultiple(remainingKeys));
                     } catch (IOException e) {
@@ -739,12 +1671,28 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
     }
 
     protected boolean remove(K key, boolean localOnly)
+    {
+        return remove(key, localOnly, false);
+    }
+
+    private boolean remove(K key, boolean localOnly, boolean skipWriter)
     {
         removeCount.incrementAndGet();
 
         boolean removed = false;
 
-        synchronized (this)
+        //前缀删除和分组删除会匹配多个键，需要获取所有条带
+        boolean multiKey = isMultiKey(key);
+        Lock lock = multiKey ? null : keyLocks.getLock(key);
+        if (multiKey)
+        {
+            keyLocks.lockAll();
+        }
+        else
+        {
+            lock.lock();
+        }
+        try
         {
             try
             {
@@ -768,6 +1716,10 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
                 {
                     continue;
                 }
+                if (cacheType == CacheType.WRITER_CACHE && (localOnly || skipWriter))
+                {
+                    continue;
+                }
                 try
                 {
                     if (log.isDebugEnabled())
@@ -788,10 +1740,29 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
                 }
             }
         }
+        finally
+        {
+            if (multiKey)
+            {
+                keyLocks.modifiedAll();
+                keyLocks.unlockAll();
+            }
+            else
+            {
+                keyLocks.modified(key);
+                lock.unlock();
+            }
+        }
 
         return removed;
     }
 
+    private boolean isMultiKey(K key)
+    {
+        return (key instanceof String && ((String) key).endsWith(CacheConstants.NAME_COMPONENT_DELIMITER))
+                || (key instanceof GroupAttrName && ((GroupAttrName<?>) key).attrName == null);
+    }
+
     @Override
     public void removeAll() throws IOException
     {
@@ -804,7 +1775,8 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
     }
 
     protected void removeAll(boolean localOnly) throws IOException {
-        synchronized (this) {
+        keyLocks.lockAll();
+        try {
             try {
                 memCache.removeAll();
 
@@ -828,6 +1800,9 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
                     }
                 }
             }
+        } finally {
+            keyLocks.modifiedAll();
+            keyLocks.unlockAll();
         }
     }
 
@@ -848,7 +1823,8 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
             log.info("In dispose, [" + this.cacheAttr.getCacheName() + "] fromRemote [" + fromRemote + "]");
         }
 
-        synchronized (this)
+        keyLocks.lockAll();
+        try
         {
             if (cacheManager != null)
             {
@@ -900,6 +1876,10 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
                 log.error("Dispose memCache error.", ex);
             }
         }
+        finally
+        {
+            keyLocks.unlockAll();
+        }
     }
 
     public void save()
@@ -909,7 +1889,8 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
             return;
         }
 
-        synchronized (this)
+        keyLocks.lockAll();
+        try
         {
             for (ICache<K, V> kit : kitCaches)
             {
@@ -934,6 +1915,10 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
                 }
             }
         }
+        finally
+        {
+            keyLocks.unlockAll();
+        }
         if (log.isDebugEnabled())
         {
             log.debug("Save for [" + cacheAttr.getCacheName() + "]");
@@ -969,6 +1954,17 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
 
         elems.add(new StatElement<Integer>("HitCountMemCache", Integer.valueOf(getHitCountMemCache())));
         elems.add(new StatElement<Integer>("HitCountKitCache", Integer.valueOf(getHitCountKitCache())));
+        if (negativeCache != null)
+        {
+            elems.add(new StatElement<Integer>("HitCountNegativeCache", Integer.valueOf(negativeCache.getHitCount())));
+            elems.add(new StatElement<Integer>("NegativeCacheSize", Integer.valueOf(negativeCache.getSize())));
+        }
+        if (cacheLoader != null)
+        {
+            elems.add(new StatElement<Integer>("LoadCount", Integer.valueOf(cacheLoader.getLoadCount())));
+            elems.add(new StatElement<Integer>("LoadFailureCount", Integer.valueOf(cacheLoader.getLoadFailureCount())));
+            elems.add(new StatElement<Integer>("RefreshCount", Integer.valueOf(cacheLoader.getRefreshCount())));
+        }
 
         stats.setStatElements(elems);
 
@@ -1126,6 +2122,39 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
         }
     }
 
+    private void createCacheLoader(IContextCacheAttributes cattr) {
+        String className = cattr.getCacheLoaderName();
+        if (className == null || className.trim().length() == 0) {
+            return;
+        }
+        ICacheLoader<K, V> loader = OptionConverter.instantiateByClassName(className.trim(), null);
+        if (loader == null) {
+            log.warn("Fail to init cache loader [" + className + "] for " + cattr.getCacheName());
+        } else {
+            setCacheLoader(loader);
+        }
+    }
+
+    /**
+     * 设置为 null 时关闭加载
+     */
+    public void setCacheLoader(ICacheLoader<K, V> loader) {
+        this.cacheLoader = (loader == null) ? null : new ContextCacheLoader<K, V>(this, loader);
+    }
+
+    public ICacheLoader<K, V> getCacheLoader() {
+        return cacheLoader == null ? null : cacheLoader.getLoader();
+    }
+
+    /**
+     * 后台重新加载使用的线程池，默认为 ThreadPoolManager 中名为 cache_refresh 的线程池
+     */
+    public void setRefreshExecutor(Executor executor) {
+        if (cacheLoader != null) {
+            cacheLoader.setRefreshExecutor(executor);
+        }
+    }
+
     public IMemoryCache<K, V> getMemoryCache() {
         return memCache;
     }
@@ -1138,6 +2167,10 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
         return hitCountKitCache.get();
     }
 
+    public int getHitCountNegativeCache() {
+        return negativeCache == null ? 0 : negativeCache.getHitCount();
+    }
+
     public int getMissCountNotFound() {
         return missCountNotFound.get();
     }
@@ -1165,4 +2198,12 @@ public class ContextCache<K, V> implements ICache<K, V>, IRequireScheduler {
     public String toString() {
         return getStats();
     }
+
+    /**
+     * computeIfAbsent 的一次计算，记录计算的线程以发现对同一个键的递归调用
+     */
+    private static final class Computation<T> extends CompletableFuture<T>
+    {
+        final Thread owner = Thread.currentThread();
+    }
 }
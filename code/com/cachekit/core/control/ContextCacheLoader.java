@@ -0,0 +1,406 @@
+package com.cachekit.core.control;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.cachekit.access.exception.CacheException;
+import com.cachekit.core.CacheElement;
+import com.cachekit.core.ElementAttributes;
+import com.cachekit.core.model.ICacheElement;
+import com.cachekit.core.model.ICacheLoader;
+import com.cachekit.core.model.IContextCacheAttributes;
+import com.cachekit.core.model.IElementAttributes;
+import com.cachekit.utils.threadpool.ThreadPoolManager;
+import com.cachekit.utils.timing.Deadline;
+
+/**
+ * 区域未命中时调用 ICacheLoader 加载数据。同一个键同时只有一次加载，其他线程等待这次加载的结果；
+ * 批量未命中时只对本线程认领的键调用一次 loadAll，加载结果一次批量写回缓存。
+ * 设置了 RefreshAheadFactor 或 EarlyRefreshBeta 时，快要过期的元素在命中时由后台线程重新加载，
+ * 调用者继续拿到当前的值，热点键不会在过期的一刻同时未命中
+ */
+public class ContextCacheLoader<K, V>
+{
+    private static final Log log = LogFactory.getLog(ContextCacheLoader.class);
+
+    public static final String DEFAULT_THREAD_POOL_NAME = "cache_refresh";
+
+    //加载耗时的平滑系数
+    private static final double LOAD_TIME_WEIGHT = 0.2;
+
+    //XFetch 最多提前 delta * beta * XFETCH_MAX_GAP 毫秒，请求很密集时每次命中都是一次抽样，不加上限会在加载后立刻再次加载
+    private static final double XFETCH_MAX_GAP = 3;
+
+    private final ContextCache<K, V> cache;
+
+    private final ICacheLoader<K, V> loader;
+
+    //正在加载的键，结果为 null 表示数据源中不存在
+    private final ConcurrentHashMap<K, CompletableFuture<ICacheElement<K, V>>> loading = new ConcurrentHashMap<K, CompletableFuture<ICacheElement<K, V>>>();
+
+    private final AtomicInteger loadCount = new AtomicInteger(0);
+
+    private final AtomicInteger loadFailureCount = new AtomicInteger(0);
+
+    private final AtomicInteger refreshCount = new AtomicInteger(0);
+
+    //每个键的平均加载耗时（毫秒），作为 XFetch 的 delta
+    private volatile double averageLoadMillis;
+
+    private volatile Executor refreshExecutor;
+
+    public ContextCacheLoader(ContextCache<K, V> cache, ICacheLoader<K, V> loader)
+    {
+        this.cache = cache;
+        this.loader = loader;
+    }
+
+    public ICacheLoader<K, V> getLoader()
+    {
+        return loader;
+    }
+
+    public ICacheElement<K, V> load(K key)
+    {
+        Map<K, ICacheElement<K, V>> elements = loadAll(Collections.singleton(key));
+        return elements.get(key);
+    }
+
+    /**
+     * 加载 keys 并写回缓存，返回数据源中存在的元素。已经在其他线程中加载的键只等待结果，不重复加载
+     */
+    public Map<K, ICacheElement<K, V>> loadAll(Set<K> keys)
+    {
+        Map<K, CompletableFuture<ICacheElement<K, V>>> owned = new HashMap<K, CompletableFuture<ICacheElement<K, V>>>();
+        Map<K, CompletableFuture<ICacheElement<K, V>>> waiting = new HashMap<K, CompletableFuture<ICacheElement<K, V>>>();
+
+        for (K key : keys)
+        {
+            CompletableFuture<ICacheElement<K, V>> f = new CompletableFuture<ICacheElement<K, V>>();
+            CompletableFuture<ICacheElement<K, V>> previous = loading.putIfAbsent(key, f);
+            if (previous == null)
+            {
+                owned.put(key, f);
+            }
+            else
+            {
+                waiting.put(key, previous);
+            }
+        }
+
+        Map<K, ICacheElement<K, V>> elements = new HashMap<K, ICacheElement<K, V>>();
+
+        if (!owned.isEmpty())
+        {
+            elements.putAll(loadOwned(owned));
+        }
+
+        for (Map.Entry<K, CompletableFuture<ICacheElement<K, V>>> entry : waiting.entrySet())
+        {
+            ICacheElement<K, V> ce = await(entry.getKey(), entry.getValue());
+            if (ce != null)
+            {
+                elements.put(entry.getKey(), ce);
+            }
+        }
+
+        return elements;
+    }
+
+    /**
+     * 等待其他线程的加载结果，当前线程有截止时间时最多等待剩余的时间，超过时按未加载返回 null
+     */
+    private ICacheElement<K, V> await(K key, CompletableFuture<ICacheElement<K, V>> f)
+    {
+        Deadline deadline = Deadline.current();
+        if (deadline == null)
+        {
+            try
+            {
+                return f.join();
+            }
+            catch (CompletionException e)
+            {
+                throw new CacheException("Load key [" + key + "] error.", e.getCause());
+            }
+        }
+
+        try
+        {
+            return f.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+        }
+        catch (ExecutionException e)
+        {
+            throw new CacheException("Load key [" + key + "] error.", e.getCause());
+        }
+        catch (TimeoutException e)
+        {
+            deadline.markExceeded();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            deadline.markExceeded();
+        }
+        return null;
+    }
+
+    private Map<K, ICacheElement<K, V>> loadOwned(Map<K, CompletableFuture<ICacheElement<K, V>>> owned)
+    {
+        try
+        {
+            Map<K, V> values = invokeLoader(owned.keySet());
+            loadCount.addAndGet(owned.size());
+
+            List<ICacheElement<K, V>> ces = new ArrayList<ICacheElement<K, V>>(values.size());
+            for (Map.Entry<K, V> entry : values.entrySet())
+            {
+                //只写回本线程认领的键，忽略加载器多返回的键
+                if (entry.getValue() != null && owned.containsKey(entry.getKey()))
+                {
+                    ces.add(new CacheElement<K, V>(cache.getCacheName(), entry.getKey(), entry.getValue(),
+                            cache.getElementAttributes()));
+                }
+            }
+
+            //加载期间其他线程写入的值优先
+            Map<K, ICacheElement<K, V>> elements = cache.updateAllIfAbsent(ces);
+
+            for (Map.Entry<K, CompletableFuture<ICacheElement<K, V>>> entry : owned.entrySet())
+            {
+                entry.getValue().complete(elements.get(entry.getKey()));
+            }
+            return elements;
+        }
+        catch (Exception e)
+        {
+            loadFailureCount.addAndGet(owned.size());
+            log.error(cache.getCacheName() + " - load " + owned.size() + " keys error.", e);
+
+            for (CompletableFuture<ICacheElement<K, V>> f : owned.values())
+            {
+                f.completeExceptionally(e);
+            }
+            throw new CacheException("Load " + owned.keySet() + " error.", e);
+        }
+        finally
+        {
+            for (Map.Entry<K, CompletableFuture<ICacheElement<K, V>>> entry : owned.entrySet())
+            {
+                CompletableFuture<ICacheElement<K, V>> f = entry.getValue();
+                if (!f.isDone())
+                {
+                    f.completeExceptionally(new CacheException("Load key [" + entry.getKey() + "] aborted."));
+                }
+                loading.remove(entry.getKey(), f);
+            }
+        }
+    }
+
+    /**
+     * 单个键调用 load，多个键调用一次 loadAll
+     */
+    private Map<K, V> invokeLoader(Set<K> keys) throws Exception
+    {
+        long start = System.nanoTime();
+        Map<K, V> values;
+        if (keys.size() == 1)
+        {
+            K key = keys.iterator().next();
+            values = new HashMap<K, V>();
+            V val = loader.load(key);
+            if (val != null)
+            {
+                values.put(key, val);
+            }
+        }
+        else
+        {
+            if (log.isDebugEnabled())
+            {
+                log.debug(cache.getCacheName() + " - load " + keys.size() + " keys in one batch");
+            }
+            values = loader.loadAll(keys);
+            if (values == null)
+            {
+                values = new HashMap<K, V>();
+            }
+        }
+        recordLoadTime(System.nanoTime() - start, keys.size());
+        return values;
+    }
+
+    private void recordLoadTime(long nanos, int keys)
+    {
+        double millis = nanos / 1000000.0 / Math.max(1, keys);
+        double average = averageLoadMillis;
+        averageLoadMillis = (average == 0) ? millis : average + LOAD_TIME_WEIGHT * (millis - average);
+    }
+
+    /**
+     * 命中的元素是否应该提前重新加载：存活时间超过 MaxLife * RefreshAheadFactor，
+     * 或者按 XFetch 的规则 age - delta * beta * ln(random) >= MaxLife，delta 为平均加载耗时，
+     * 越接近过期、加载越慢，提前重新加载的概率越大
+     */
+    private boolean isRefreshDue(ICacheElement<K, V> element, long now)
+    {
+        IElementAttributes attributes = element.getElementAttributes();
+        if (attributes.getIsEternal() || attributes.getMaxLife() == -1)
+        {
+            return false;
+        }
+
+        IContextCacheAttributes cattr = cache.getCacheAttributes();
+        double ttl = attributes.getMaxLife() * attributes.getTimeFactorForMilliseconds();
+        long age = now - attributes.getCreateTime();
+
+        double factor = cattr.getRefreshAheadFactor();
+        if (factor > 0 && age >= ttl * factor)
+        {
+            return true;
+        }
+
+        double beta = cattr.getEarlyRefreshBeta();
+        if (beta > 0)
+        {
+            double delta = averageLoadMillis;
+            double gap = Math.min(-Math.log(ThreadLocalRandom.current().nextDouble()), XFETCH_MAX_GAP);
+            return delta > 0 && age + delta * beta * gap >= ttl;
+        }
+        return false;
+    }
+
+    /**
+     * 命中时调用，需要时在后台重新加载，同一个键同时只有一次加载
+     */
+    public void refreshIfDue(ICacheElement<K, V> element)
+    {
+        if (element == null || !isRefreshDue(element, System.currentTimeMillis()))
+        {
+            return;
+        }
+
+        final ICacheElement<K, V> current = element;
+        final K key = element.getKey();
+        final CompletableFuture<ICacheElement<K, V>> f = new CompletableFuture<ICacheElement<K, V>>();
+        if (loading.putIfAbsent(key, f) != null)
+        {
+            return;
+        }
+
+        try
+        {
+            getRefreshExecutor().execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    refresh(current, f);
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            log.warn(cache.getCacheName() + " - refresh of key [" + key + "] rejected.");
+            f.completeExceptionally(e);
+            loading.remove(key, f);
+        }
+    }
+
+    private void refresh(ICacheElement<K, V> current, CompletableFuture<ICacheElement<K, V>> f)
+    {
+        K key = current.getKey();
+        try
+        {
+            Map<K, V> values = invokeLoader(Collections.singleton(key));
+            loadCount.incrementAndGet();
+            refreshCount.incrementAndGet();
+
+            V val = values.get(key);
+            ICacheElement<K, V> ce = null;
+            if (val != null)
+            {
+                ce = new CacheElement<K, V>(cache.getCacheName(), key, val, refreshedAttributes(current));
+            }
+            f.complete(cache.replaceRefreshed(current, ce));
+        }
+        catch (Exception e)
+        {
+            loadFailureCount.incrementAndGet();
+            log.warn(cache.getCacheName() + " - refresh of key [" + key + "] error, keep current value.", e);
+            f.completeExceptionally(e);
+        }
+        finally
+        {
+            if (!f.isDone())
+            {
+                f.completeExceptionally(new CacheException("Refresh key [" + key + "] aborted."));
+            }
+            loading.remove(key, f);
+        }
+    }
+
+    /**
+     * 沿用原来的元素属性，创建时间和访问时间取当前时间。
+     * CompactElementDescriptor 的 clone 会带回原来的时间戳，不能依赖 clone 重置创建时间
+     */
+    private IElementAttributes refreshedAttributes(ICacheElement<K, V> current)
+    {
+        IElementAttributes attr = current.getElementAttributes().clone();
+        if (!(attr instanceof ElementAttributes))
+        {
+            return cache.getElementAttributes();
+        }
+        ((ElementAttributes) attr).setCreateTime();
+        attr.setLastAccessTimeNow();
+        return attr;
+    }
+
+    private Executor getRefreshExecutor()
+    {
+        Executor executor = refreshExecutor;
+        if (executor == null)
+        {
+            executor = ThreadPoolManager.getInstance().getPool(DEFAULT_THREAD_POOL_NAME);
+            refreshExecutor = executor;
+        }
+        return executor;
+    }
+
+    public void setRefreshExecutor(Executor executor)
+    {
+        this.refreshExecutor = executor;
+    }
+
+    public int getRefreshCount()
+    {
+        return refreshCount.get();
+    }
+
+    public int getLoadCount()
+    {
+        return loadCount.get();
+    }
+
+    public int getLoadFailureCount()
+    {
+        return loadFailureCount.get();
+    }
+}
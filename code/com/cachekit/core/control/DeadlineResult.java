@@ -0,0 +1,54 @@
+package com.cachekit.core.control;
+
+import java.util.List;
+
+import com.cachekit.utils.timing.Deadline;
+
+/**
+ * 带截止时间的读取结果：读到的值，查找过的组件，因截止时间跳过的组件，以及查找是否因截止时间中止过。
+ * 中止过时未命中不代表元素不存在
+ */
+public class DeadlineResult<T>
+{
+    private final T value;
+
+    private final List<String> consulted;
+
+    private final List<String> skipped;
+
+    private final boolean deadlineExceeded;
+
+    public DeadlineResult(T value, Deadline deadline)
+    {
+        this.value = value;
+        this.consulted = deadline.getConsulted();
+        this.skipped = deadline.getSkipped();
+        this.deadlineExceeded = deadline.isExceeded();
+    }
+
+    public T getValue()
+    {
+        return value;
+    }
+
+    public List<String> getConsulted()
+    {
+        return consulted;
+    }
+
+    public List<String> getSkipped()
+    {
+        return skipped;
+    }
+
+    public boolean isDeadlineExceeded()
+    {
+        return deadlineExceeded;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DeadlineResult [consulted=" + consulted + ", skipped=" + skipped + ", deadlineExceeded=" + deadlineExceeded + "]";
+    }
+}
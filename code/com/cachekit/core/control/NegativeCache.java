@@ -0,0 +1,105 @@
+package com.cachekit.core.control;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 记录确认不存在的键：在 ttlMillis 内再次查找这些键时直接返回未命中，不再查找磁盘、横向组件和加载器。
+ * 超过 maxSize 时先清理过期的键，仍然超过时按迭代顺序删除到 maxSize 的 90%，避免每次写入都清理，读取不加锁
+ */
+public class NegativeCache<K>
+{
+    private final ConcurrentHashMap<K, Long> expireTimes = new ConcurrentHashMap<K, Long>();
+
+    private final int maxSize;
+
+    private final long ttlMillis;
+
+    private final AtomicInteger hitCount = new AtomicInteger(0);
+
+    public NegativeCache(int maxSize, long ttlMillis)
+    {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 键在负缓存中并且没有过期时返回 true，并计入命中次数
+     */
+    public boolean contains(K key)
+    {
+        Long expireTime = expireTimes.get(key);
+        if (expireTime == null)
+        {
+            return false;
+        }
+        if (expireTime.longValue() < System.currentTimeMillis())
+        {
+            expireTimes.remove(key, expireTime);
+            return false;
+        }
+        hitCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 与 contains 相同，但不计入命中次数
+     */
+    public boolean containsQuiet(K key)
+    {
+        Long expireTime = expireTimes.get(key);
+        return expireTime != null && expireTime.longValue() >= System.currentTimeMillis();
+    }
+
+    public void put(K key)
+    {
+        expireTimes.put(key, Long.valueOf(System.currentTimeMillis() + ttlMillis));
+        if (expireTimes.size() > maxSize)
+        {
+            trim();
+        }
+    }
+
+    public void invalidate(K key)
+    {
+        expireTimes.remove(key);
+    }
+
+    public void clear()
+    {
+        expireTimes.clear();
+    }
+
+    private void trim()
+    {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<K, Long>> it = expireTimes.entrySet().iterator();
+        while (it.hasNext())
+        {
+            if (it.next().getValue().longValue() < now)
+            {
+                it.remove();
+            }
+        }
+
+        int target = maxSize - maxSize / 10;
+        it = expireTimes.entrySet().iterator();
+        while (expireTimes.size() > target && it.hasNext())
+        {
+            it.next();
+            it.remove();
+        }
+    }
+
+    public int getSize()
+    {
+        return expireTimes.size();
+    }
+
+    public int getHitCount()
+    {
+        return hitCount.get();
+    }
+}
@@ -1,6 +1,9 @@
 package com.cachekit.core.memory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -16,6 +19,7 @@ import com.cachekit.core.CacheConstants;
 import com.cachekit.core.control.ContextCache;
 import com.cachekit.core.control.group.GroupAttrName;
 import com.cachekit.core.memory.util.MemoryElementDescriptor;
+import com.cachekit.core.memory.util.ReadBuffer;
 import com.cachekit.core.model.ICacheElement;
 import com.cachekit.core.stats.IStatElement;
 import com.cachekit.core.stats.IStats;
@@ -27,11 +31,32 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
 
     protected DoubleLinkedList<MemoryElementDescriptor<K, V>> list;
 
+    //开启后命中只记录到读缓冲，由持有锁的线程批量调整链表
+    private ReadBuffer<MemoryElementDescriptor<K, V>> readBuffer;
+
+    private final ReadBuffer.Processor<MemoryElementDescriptor<K, V>> readProcessor = new ReadBuffer.Processor<MemoryElementDescriptor<K, V>>()
+    {
+        @Override
+        public void process(MemoryElementDescriptor<K, V> me)
+        {
+            //记录之后节点可能已被删除、替换或随 removeAll 清空，这些节点不再属于链表，直接跳过
+            if (map.get(me.getCacheElement().getKey()) != me)
+            {
+                return;
+            }
+            adjustListForGet(me);
+        }
+    };
+
     @Override
     public void initialize(ContextCache<K, V> hub)
     {
         super.initialize(hub);
         list = new DoubleLinkedList<MemoryElementDescriptor<K, V>>();
+        if (getCacheAttributes().isUseReadBuffer())
+        {
+            readBuffer = new ReadBuffer<MemoryElementDescriptor<K, V>>();
+        }
         log.info("Initialize memory cache for " + getCacheName());
     }
 
@@ -41,6 +66,12 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
         return new ConcurrentHashMap<K, MemoryElementDescriptor<K, V>>();
     }
 
+    @Override
+    protected boolean supportsTimerWheel()
+    {
+        return true;
+    }
+
     /**
      * 每更新一次，都要判断内存是否超过最大容量，超过就执行 spool 操作
      */
@@ -49,19 +80,45 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
     {
         putCnt.incrementAndGet();
 
+        long weight = weigh(ce);
+
         lock.lock();
         try
         {
-            //adjustListForUpdate方法已经将ce封装成me，并装入list中，不同的memory装入list的策略不同
-            MemoryElementDescriptor<K, V> newNode = adjustListForUpdate(ce);
+            drainReadBuffer();
+            put(ce, weight);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        spoolIfNeeded(chunkSize);
+    }
 
-            final K key = newNode.getCacheElement().getKey();
-            MemoryElementDescriptor<K, V> oldNode = map.put(key, newNode);
+    /**
+     * 在一次加锁内插入所有元素，超出容量的部分一次刷新到磁盘组件
+     */
+    @Override
+    public final void updateAll(Collection<ICacheElement<K, V>> ces) throws IOException
+    {
+        putCnt.addAndGet(ces.size());
+
+        long[] weights = new long[ces.size()];
+        int i = 0;
+        for (ICacheElement<K, V> ce : ces)
+        {
+            weights[i++] = weigh(ce);
+        }
 
-            //在list中删除被更新掉的节点
-            if (oldNode != null && key.equals(oldNode.getCacheElement().getKey()))
+        lock.lock();
+        try
+        {
+            drainReadBuffer();
+            i = 0;
+            for (ICacheElement<K, V> ce : ces)
             {
-                list.remove(oldNode);
+                put(ce, weights[i++]);
             }
         }
         finally
@@ -69,7 +126,27 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
             lock.unlock();
         }
 
-        spoolIfNeeded();
+        spoolIfNeeded(Math.max(chunkSize, map.size() - getCacheAttributes().getMaxObjects()));
+    }
+
+    /**
+     * 插入新节点并删除被替换的节点，调用者必须持有 lock
+     */
+    private void put(ICacheElement<K, V> ce, long weight) throws IOException
+    {
+        //adjustListForUpdate方法已经将ce封装成me，并装入list中，不同的memory装入list的策略不同
+        MemoryElementDescriptor<K, V> newNode = adjustListForUpdate(ce);
+        entryAdded(newNode, weight);
+
+        final K key = newNode.getCacheElement().getKey();
+        MemoryElementDescriptor<K, V> oldNode = map.put(key, newNode);
+
+        //在list中删除被更新掉的节点
+        if (oldNode != null && key.equals(oldNode.getCacheElement().getKey()))
+        {
+            unlink(oldNode);
+            entryRemoved(oldNode);
+        }
     }
 
     /**
@@ -78,13 +155,13 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
     protected abstract MemoryElementDescriptor<K, V> adjustListForUpdate(ICacheElement<K, V> ce) throws IOException;
 
     /**
-     * map中元素超过最大容量（默认为1000），刷新到磁盘
+     * map中元素超过最大容量（默认为1000）或总字节数超过 MaxMemoryBytes，刷新到磁盘
      */
-    private void spoolIfNeeded() throws Error
+    private void spoolIfNeeded(int maxToSpool) throws Error
     {
         int size = map.size();
         //默认最大容量为100
-        if (size <= this.getCacheAttributes().getMaxObjects())
+        if (size <= this.getCacheAttributes().getMaxObjects() && !isOverWeight())
         {
             return;
         }
@@ -94,7 +171,7 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
             log.debug("Memory limit reached, begin to spool");
         }
         //chunkSize默认是2
-        int chunkSizeCorrected = Math.min(size, chunkSize);
+        int chunkSizeCorrected = Math.min(size, maxToSpool);
 
         if (log.isDebugEnabled())
         {
@@ -106,6 +183,7 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
 
         try
         {
+            drainReadBuffer();
             for (int i = 0; i < chunkSizeCorrected; i++)
             {
                 ICacheElement<K, V> lastElement = spoolLastElement();
@@ -115,9 +193,17 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
                     break;
                 }
             }
-            if (log.isDebugEnabled() && map.size() != list.size())
+            //按字节数限制时，一直刷新到低于上限为止
+            while (isOverWeight())
+            {
+                if (spoolLastElement() == null)
+                {
+                    break;
+                }
+            }
+            if (log.isDebugEnabled() && map.size() != getListSize())
             {
-                log.debug("Update: after spool, size mismatch: map.size() = " + map.size() + ", linked list size = " + list.size());
+                log.debug("Update: after spool, size mismatch: map.size() = " + map.size() + ", linked list size = " + getListSize());
             }
         }
         finally
@@ -127,7 +213,7 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
 
         if (log.isDebugEnabled())
         {
-            log.debug("Update: after spool map size: " + map.size() + " linked list size = " + list.size());
+            log.debug("Update: after spool map size: " + map.size() + " linked list size = " + getListSize());
         }
     }
 
@@ -149,16 +235,35 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
         if (me != null)
         {
             hitCnt.incrementAndGet();
-            lock.lock();
-            try
+            ce = me.getCacheElement();
+
+            if (readBuffer != null)
             {
-                ce = me.getCacheElement();
-                //调整被访问的元素顺序，如LRU
-                adjustListForGet(me);
+                //只记录访问，积压较多时由抢到锁的线程回放
+                if (readBuffer.record(me) && lock.tryLock())
+                {
+                    try
+                    {
+                        drainReadBuffer();
+                    }
+                    finally
+                    {
+                        lock.unlock();
+                    }
+                }
             }
-            finally
+            else
             {
-                lock.unlock();
+                lock.lock();
+                try
+                {
+                    //调整被访问的元素顺序，如LRU
+                    adjustListForGet(me);
+                }
+                finally
+                {
+                    lock.unlock();
+                }
             }
 
             if (log.isDebugEnabled())
@@ -188,6 +293,17 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
      */
     protected abstract void adjustListForGet(MemoryElementDescriptor<K, V> me);
 
+    /**
+     * 将读缓冲中记录的访问回放到链表，调用者必须持有 lock
+     */
+    protected void drainReadBuffer()
+    {
+        if (readBuffer != null)
+        {
+            readBuffer.drain(readProcessor);
+        }
+    }
+
     /**
      * 从list末尾刷新 numberToFree 个元素到磁盘组件
      */
@@ -200,6 +316,7 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
 
         try
         {
+            drainReadBuffer();
             for (; freed < numberToFree; freed++)
             {
                 ICacheElement<K, V> element = spoolLastElement();
@@ -218,13 +335,80 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
     }
 
     /**
-     * 将list的最后一个元素刷新到disk Cache，并从map、list中删除
+     * 选择被淘汰的节点，默认为 list 的最后一个元素，调用者必须持有 lock
+     */
+    protected MemoryElementDescriptor<K, V> getVictim()
+    {
+        return list.getLast();
+    }
+
+    /**
+     * 被淘汰的节点刷新到磁盘组件后从链表中删除，调用者必须持有 lock
+     */
+    protected void evict(MemoryElementDescriptor<K, V> me)
+    {
+        unlink(me);
+    }
+
+    /**
+     * 节点被删除或被新值替换时从链表中删除，调用者必须持有 lock
+     */
+    protected void unlink(MemoryElementDescriptor<K, V> me)
+    {
+        list.remove(me);
+    }
+
+    /**
+     * 清空所有链表，调用者必须持有 lock
+     */
+    protected void unlinkAll()
+    {
+        list.removeAll();
+    }
+
+    /**
+     * 保存元素的链表，使用多个链表的策略需要返回全部链表
+     */
+    protected List<DoubleLinkedList<MemoryElementDescriptor<K, V>>> getLists()
+    {
+        return Collections.singletonList(list);
+    }
+
+    private int getListSize()
+    {
+        int size = 0;
+        for (DoubleLinkedList<MemoryElementDescriptor<K, V>> l : getLists())
+        {
+            size += l.size();
+        }
+        return size;
+    }
+
+    /**
+     * 所有链表中的节点，只用于调试
+     */
+    @SuppressWarnings("unchecked")
+    private List<MemoryElementDescriptor<K, V>> listNodes()
+    {
+        List<MemoryElementDescriptor<K, V>> nodes = new ArrayList<MemoryElementDescriptor<K, V>>();
+        for (DoubleLinkedList<MemoryElementDescriptor<K, V>> l : getLists())
+        {
+            for (MemoryElementDescriptor<K, V> ed = l.getFirst(); ed != null; ed = (MemoryElementDescriptor<K, V>) ed.next)
+            {
+                nodes.add(ed);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * 将 getVictim 选出的元素刷新到disk Cache，并从map、list中删除
      */
     private ICacheElement<K, V> spoolLastElement() throws Error
     {
         ICacheElement<K, V> toSpool = null;
 
-        final MemoryElementDescriptor<K, V> last = list.getLast();
+        final MemoryElementDescriptor<K, V> last = getVictim();
         if (last != null)
         {
             toSpool = last.getCacheElement();
@@ -233,6 +417,7 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
             {
                 getContextCache().spoolToDisk(toSpool);
 
+                entryRemoved(last);
                 if (map.remove(toSpool.getKey()) == null)
                 {
                     log.warn("Update: remove failed for key: " + toSpool.getKey());
@@ -248,7 +433,7 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
                 throw new Error("Update: last cache element is null!");
             }
 
-            list.remove(last);
+            evict(last);
         }
         return toSpool;
     }
@@ -269,7 +454,8 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
                 if (k instanceof String && ((String) k).startsWith(key.toString())) {
                     lock.lock();
                     try {
-                        list.remove(entry.getValue());
+                        unlink(entry.getValue());
+                        entryRemoved(entry.getValue());
                         itr.remove();
                         removed = true;
                     } finally {
@@ -286,7 +472,8 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
                 if (k instanceof GroupAttrName && ((GroupAttrName<?>) k).groupId.equals(((GroupAttrName<?>) key).groupId)) {
                     lock.lock();
                     try {
-                        list.remove(entry.getValue());
+                        unlink(entry.getValue());
+                        entryRemoved(entry.getValue());
                         itr.remove();
                         removed = true;
                     } finally {
@@ -299,7 +486,8 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
             try {
                 MemoryElementDescriptor<K, V> me = map.remove(key);
                 if (me != null) {
-                    list.remove(me);
+                    unlink(me);
+                    entryRemoved(me);
                     removed = true;
                 }
             } finally {
@@ -316,8 +504,10 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
         lock.lock();
         try
         {
-            list.removeAll();
+            drainReadBuffer();
+            unlinkAll();
             map.clear();
+            allEntriesRemoved();
         }
         finally
         {
@@ -333,7 +523,7 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
         lock.lock();
         try
         {
-            MemoryElementDescriptor<K, V> me = new MemoryElementDescriptor<K, V>(ce);
+            MemoryElementDescriptor<K, V> me = createDescriptor(ce);
             list.addFirst(me);
             //检查是否成功加入链表中
             if (log.isDebugEnabled())
@@ -353,7 +543,7 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
         lock.lock();
         try
         {
-            MemoryElementDescriptor<K, V> me = new MemoryElementDescriptor<K, V>(ce);
+            MemoryElementDescriptor<K, V> me = createDescriptor(ce);
             list.addLast(me);
             if (log.isDebugEnabled())
             {
@@ -370,23 +560,21 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
     /**
      * 转储缓存条目到日志中
      */
-    @SuppressWarnings("unchecked")
     private void dumpCacheEntries()
     {
         log.debug("dumpingCacheEntries");
-        for (MemoryElementDescriptor<K, V> ed = list.getFirst(); ed != null; ed = (MemoryElementDescriptor<K, V>) ed.next)
+        for (MemoryElementDescriptor<K, V> ed : listNodes())
         {
             log.debug("dumpCacheEntries> key=" + ed.getCacheElement().getKey() + ", val=" + ed.getCacheElement().getVal());
         }
     }
 
-    @SuppressWarnings("unchecked")
     private void verifyMemCache() {
         boolean found = false;
         log.debug("verifycache: checke linked list by key ");
 
         //检查list节点的key是否存在于map中
-        for (MemoryElementDescriptor<K, V> ed = list.getFirst(); ed != null; ed = (MemoryElementDescriptor<K, V>) ed.next) {
+        for (MemoryElementDescriptor<K, V> ed : listNodes()) {
             K key = ed.getCacheElement().getKey();
             if (!map.containsKey(key)) {
                 log.error("verifycache[" + getCacheName() + "]: map does not contain key : " + key);
@@ -407,7 +595,7 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
         log.debug("verifycache: checke linked list by value ");
 
         //检查list的value是否存在于map中
-        for (MemoryElementDescriptor<K, V> ed = list.getFirst(); ed != null; ed = (MemoryElementDescriptor<K, V>) ed.next) {
+        for (MemoryElementDescriptor<K, V> ed : listNodes()) {
             if (map.containsValue(ed) == false) {
                 log.error("verifycache[" + getCacheName() + "]: map does not contain value : " + ed);
                 mapProbe();
@@ -419,7 +607,7 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
         for (Object val : map.keySet()) {
             found = false;
 
-            for (MemoryElementDescriptor<K, V> ed = list.getFirst(); ed != null; ed = (MemoryElementDescriptor<K, V>) ed.next) {
+            for (MemoryElementDescriptor<K, V> ed : listNodes()) {
                 if (val.equals(ed.getCacheElement().getKey())) {
                     found = true;
                     break;
@@ -440,11 +628,10 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
     /**
      * 检查list中是否包含某个键
      */
-    @SuppressWarnings("unchecked")
     private void verifyMemCache(K key)
     {
         boolean found = false;
-        for (MemoryElementDescriptor<K, V> ed = list.getFirst(); ed != null; ed = (MemoryElementDescriptor<K, V>) ed.next)
+        for (MemoryElementDescriptor<K, V> ed : listNodes())
         {
             if (ed.getCacheElement().getKey() == key)
             {
@@ -470,7 +657,12 @@ public abstract class AbstractDoubleLinkedListMemoryCache<K, V> extends Abstract
         IStats stats = super.getStatistics();
         stats.setTypeName("Memory Cache");
         List<IStatElement<?>> elems = stats.getStatElements();
-        elems.add(new StatElement<Integer>("List Size", Integer.valueOf(list.size())));
+        elems.add(new StatElement<Integer>("List Size", Integer.valueOf(getListSize())));
+        if (readBuffer != null)
+        {
+            elems.add(new StatElement<Long>("Read Buffer Drained", Long.valueOf(readBuffer.getDrainedCount())));
+            elems.add(new StatElement<Long>("Read Buffer Dropped", Long.valueOf(readBuffer.getDroppedCount())));
+        }
 
         return stats;
     }
@@ -2,7 +2,10 @@ package com.cachekit.core.memory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
@@ -14,13 +17,18 @@ import org.apache.commons.logging.LogFactory;
 
 import com.cachekit.core.CacheStatus;
 import com.cachekit.core.control.ContextCache;
+import com.cachekit.core.memory.shrinking.TimerWheel;
+import com.cachekit.core.memory.util.CompactElementDescriptor;
+import com.cachekit.core.memory.util.DefaultElementWeigher;
 import com.cachekit.core.memory.util.MemoryElementDescriptor;
 import com.cachekit.core.model.ICacheElement;
 import com.cachekit.core.model.IContextCacheAttributes;
+import com.cachekit.core.model.IElementAttributes;
 import com.cachekit.core.stats.IStatElement;
 import com.cachekit.core.stats.IStats;
 import com.cachekit.core.stats.StatElement;
 import com.cachekit.core.stats.Stats;
+import com.cachekit.utils.config.OptionConverter;
 
 public abstract class AbstractMemoryCache<K, V> implements IMemoryCache<K, V> {
     private static final Log log = LogFactory.getLog(AbstractMemoryCache.class);
@@ -43,30 +51,267 @@ public abstract class AbstractMemoryCache<K, V> implements IMemoryCache<K, V> {
 
     protected AtomicLong putCnt;
 
+    //内存组件中所有元素的权重之和，只在设置了 MaxMemoryBytes 时统计
+    protected AtomicLong totalWeight;
+
+    protected long maxMemoryBytes;
+
+    protected IElementWeigher<K, V> weigher;
+
+    //每个节点加入时计算的权重，移除时从 totalWeight 中减去；只在设置了 MaxMemoryBytes 时创建，调用者必须持有 lock
+    private Map<MemoryElementDescriptor<K, V>, Long> weights;
+
+    //按到期时间组织元素，自查线程只处理到期的元素；为 null 时自查线程遍历所有元素
+    protected TimerWheel<K, V> timerWheel;
+
+    //ContextCache 的最大闲置时间（毫秒），-1 表示不限制
+    private long maxMemoryIdleTime;
+
+    //分段缓存为每个分段指定的属性，为 null 时使用 ContextCache 的属性
+    private IContextCacheAttributes segmentAttributes;
+
+    //紧凑元素共享的属性模板，为 null 时不使用紧凑元素
+    private IElementAttributes compactTemplate;
+
     @Override
     public void initialize(ContextCache<K, V> hub)
     {
         hitCnt = new AtomicLong(0);
         missCnt = new AtomicLong(0);
         putCnt = new AtomicLong(0);
+        totalWeight = new AtomicLong(0);
 
-        this.cacheAttributes = hub.getCacheAttributes();
+        this.cacheAttributes = segmentAttributes != null ? segmentAttributes : hub.getCacheAttributes();
         this.chunkSize = cacheAttributes.getSpoolChunkSize();
         this.cache = hub;
 
+        this.maxMemoryBytes = cacheAttributes.getMaxMemoryBytes();
+        if (maxMemoryBytes > 0)
+        {
+            this.weigher = OptionConverter.instantiateByClassName(cacheAttributes.getElementWeigherName(),
+                    new DefaultElementWeigher<K, V>());
+            this.weights = new IdentityHashMap<MemoryElementDescriptor<K, V>, Long>();
+        }
+
+        long maxMemoryIdleTimeSeconds = cacheAttributes.getMaxMemoryIdleTimeSeconds();
+        this.maxMemoryIdleTime = maxMemoryIdleTimeSeconds < 0 ? -1 : maxMemoryIdleTimeSeconds * 1000;
+        if (cacheAttributes.isUseMemoryShrinker() && supportsTimerWheel())
+        {
+            this.timerWheel = new TimerWheel<K, V>(System.currentTimeMillis());
+        }
+
+        if (cacheAttributes.isUseCompactEntries())
+        {
+            this.compactTemplate = hub.getElementAttributes();
+        }
+
         this.map = createMap();
 
         this.status = CacheStatus.ALIVE;
     }
 
+    /**
+     * 作为分段缓存的一个分段初始化，使用分段自己的属性（如 MaxObjects 的份额）
+     */
+    public void initializeSegment(ContextCache<K, V> hub, IContextCacheAttributes cattr)
+    {
+        this.segmentAttributes = cattr;
+        initialize(hub);
+    }
+
     public abstract Map<K, MemoryElementDescriptor<K, V>> createMap();
 
+    /**
+     * 为元素创建描述符，开启 UseCompactEntries 且元素属性与区域默认属性相同时使用紧凑元素
+     */
+    protected MemoryElementDescriptor<K, V> createDescriptor(ICacheElement<K, V> ce)
+    {
+        if (compactTemplate != null && CompactElementDescriptor.isCompatible(ce.getElementAttributes(), compactTemplate))
+        {
+            return new CompactElementDescriptor<K, V>(ce, compactTemplate);
+        }
+        return new MemoryElementDescriptor<K, V>(ce);
+    }
+
+    /**
+     * 是否按字节数限制内存组件
+     */
+    protected boolean isWeighted()
+    {
+        return weigher != null;
+    }
+
+    /**
+     * 计算元素的权重，不按字节数限制时为 0。计算可能需要序列化元素，应在加锁之前调用
+     */
+    protected long weigh(ICacheElement<K, V> ce)
+    {
+        return weigher != null ? weigher.weigh(ce) : 0;
+    }
+
+    /**
+     * 新节点加入内存组件：计入 weigh 预先算好的权重并挂到时间轮上，调用者必须持有 lock
+     */
+    protected void entryAdded(MemoryElementDescriptor<K, V> me, long weight)
+    {
+        if (weigher != null)
+        {
+            weights.put(me, Long.valueOf(weight));
+            totalWeight.addAndGet(weight);
+        }
+        if (timerWheel != null)
+        {
+            long expireTime = getExpireTime(me.getCacheElement());
+            if (expireTime != Long.MAX_VALUE)
+            {
+                timerWheel.schedule(me, expireTime);
+            }
+        }
+    }
+
+    /**
+     * 节点离开内存组件：从总权重中减去并从时间轮上摘除，调用者必须持有 lock
+     */
+    protected void entryRemoved(MemoryElementDescriptor<K, V> me)
+    {
+        if (weigher != null)
+        {
+            Long weight = weights.remove(me);
+            if (weight != null)
+            {
+                totalWeight.addAndGet(-weight.longValue());
+            }
+        }
+        if (timerWheel != null)
+        {
+            timerWheel.deschedule(me);
+        }
+    }
+
+    /**
+     * 清空内存组件时，重置总权重和时间轮
+     */
+    protected void allEntriesRemoved()
+    {
+        totalWeight.set(0);
+        if (weights != null)
+        {
+            weights.clear();
+        }
+        if (timerWheel != null)
+        {
+            timerWheel.clear();
+        }
+    }
+
+    /**
+     * 子类在每次增删节点时都调用 entryAdded、entryRemoved 才能使用时间轮
+     */
+    protected boolean supportsTimerWheel()
+    {
+        return false;
+    }
+
+    public boolean isTimerWheelEnabled()
+    {
+        return timerWheel != null;
+    }
+
+    /**
+     * 元素最早可能过期或超过最大闲置时间的时刻，Long.MAX_VALUE 表示不会过期
+     */
+    protected long getExpireTime(ICacheElement<K, V> ce)
+    {
+        IElementAttributes attributes = ce.getElementAttributes();
+        long expireTime = Long.MAX_VALUE;
+
+        if (!attributes.getIsEternal())
+        {
+            long timeFactor = attributes.getTimeFactorForMilliseconds();
+            if (attributes.getMaxLife() != -1)
+            {
+                expireTime = Math.min(expireTime, attributes.getCreateTime() + attributes.getMaxLife() * timeFactor);
+            }
+            if (attributes.getIdleTime() != -1)
+            {
+                expireTime = Math.min(expireTime, attributes.getLastAccessTime() + attributes.getIdleTime() * timeFactor);
+            }
+        }
+        if (maxMemoryIdleTime != -1)
+        {
+            expireTime = Math.min(expireTime, attributes.getLastAccessTime() + maxMemoryIdleTime);
+        }
+
+        //过期判断使用的是严格大于
+        return expireTime == Long.MAX_VALUE ? expireTime : expireTime + 1;
+    }
+
+    /**
+     * 推进时间轮，返回可能已过期的元素
+     */
+    public List<MemoryElementDescriptor<K, V>> advanceTimerWheel(long now)
+    {
+        lock.lock();
+        try
+        {
+            return timerWheel.advance(now);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 元素在到期前被访问过，按新的到期时间重新挂到时间轮上
+     */
+    public void rescheduleTimer(MemoryElementDescriptor<K, V> me)
+    {
+        lock.lock();
+        try
+        {
+            ICacheElement<K, V> ce = me.getCacheElement();
+            if (ce != null && map.get(ce.getKey()) == me)
+            {
+                long expireTime = getExpireTime(ce);
+                if (expireTime != Long.MAX_VALUE)
+                {
+                    timerWheel.schedule(me, expireTime);
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 总权重是否超过 MaxMemoryBytes
+     */
+    protected boolean isOverWeight()
+    {
+        return weigher != null && totalWeight.get() > maxMemoryBytes;
+    }
+
     @Override
     public abstract boolean remove(K key) throws IOException;
 
     @Override
     public abstract ICacheElement<K, V> get(K key) throws IOException;
 
+    /**
+     * 逐个更新，使用链表的内存组件在一次加锁内完成
+     */
+    @Override
+    public void updateAll(Collection<ICacheElement<K, V>> ces) throws IOException
+    {
+        for (ICacheElement<K, V> ce : ces)
+        {
+            update(ce);
+        }
+    }
+
     @Override
     public Map<K, ICacheElement<K, V>> getMultiple(Set<K> keys) throws IOException {
         Map<K, ICacheElement<K, V>> elements = new HashMap<K, ICacheElement<K, V>>();
@@ -115,6 +360,7 @@ public abstract class AbstractMemoryCache<K, V> implements IMemoryCache<K, V> {
     @Override
     public void removeAll() throws IOException {
         map.clear();
+        allEntriesRemoved();
     }
 
     @Override
@@ -123,6 +369,7 @@ public abstract class AbstractMemoryCache<K, V> implements IMemoryCache<K, V> {
         hitCnt.set(0);
         missCnt.set(0);
         putCnt.set(0);
+        totalWeight.set(0);
         log.info("Memory Cache dispose called.");
     }
 
@@ -138,6 +385,15 @@ public abstract class AbstractMemoryCache<K, V> implements IMemoryCache<K, V> {
         elems.add(new StatElement<AtomicLong>("Hit Count", hitCnt));
         elems.add(new StatElement<AtomicLong>("Miss Count", missCnt));
         elems.add(new StatElement<Integer>("Map Size", Integer.valueOf(getSize())));
+        if (isWeighted())
+        {
+            elems.add(new StatElement<Long>("Total Weight", Long.valueOf(totalWeight.get())));
+            elems.add(new StatElement<Long>("Max Memory Bytes", Long.valueOf(maxMemoryBytes)));
+        }
+        if (timerWheel != null)
+        {
+            elems.add(new StatElement<Integer>("Timer Wheel Size", Integer.valueOf(timerWheel.size())));
+        }
 
         return stats;
     }
@@ -0,0 +1,11 @@
+package com.cachekit.core.memory;
+
+import com.cachekit.core.model.ICacheElement;
+
+/**
+ * 计算元素占用的字节数，用于按 MaxMemoryBytes 限制内存组件
+ */
+public interface IElementWeigher<K, V>
+{
+    long weigh(ICacheElement<K, V> ce);
+}
@@ -1,6 +1,7 @@
 package com.cachekit.core.memory;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
@@ -31,6 +32,8 @@ public interface IMemoryCache<K, V> {
     ICacheElement<K, V> getQuiet(K key) throws IOException;
 
     void update(ICacheElement<K, V> ce) throws IOException;
+    //批量更新
+    void updateAll(Collection<ICacheElement<K, V>> ces) throws IOException;
     //将元素刷新到磁盘组件
     void waterfal(ICacheElement<K, V> ce) throws IOException;
 
@@ -0,0 +1,29 @@
+package com.cachekit.core.memory.arc;
+
+import com.cachekit.core.memory.util.MemoryElementDescriptor;
+import com.cachekit.core.model.ICacheElement;
+
+/**
+ * 记录元素在最近访问链表（T1）还是频繁访问链表（T2）中
+ */
+public class ARCElementDescriptor<K, V> extends MemoryElementDescriptor<K, V>
+{
+	private static final long serialVersionUID = 1L;
+
+	private boolean frequent;
+
+	public ARCElementDescriptor(ICacheElement<K, V> ce)
+	{
+		super(ce);
+	}
+
+	public boolean isFrequent()
+	{
+		return frequent;
+	}
+
+	public void setFrequent(boolean frequent)
+	{
+		this.frequent = frequent;
+	}
+}
@@ -0,0 +1,212 @@
+package com.cachekit.core.memory.arc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cachekit.core.control.ContextCache;
+import com.cachekit.core.memory.AbstractDoubleLinkedListMemoryCache;
+import com.cachekit.core.memory.util.MemoryElementDescriptor;
+import com.cachekit.core.model.ICacheElement;
+import com.cachekit.core.stats.IStatElement;
+import com.cachekit.core.stats.IStats;
+import com.cachekit.core.stats.StatElement;
+import com.cachekit.utils.struct.DoubleLinkedList;
+
+/**
+ * ARC（Adaptive Replacement Cache）：list 作为 T1 保存只被访问过一次的元素，frequentList 作为 T2
+ * 保存被访问过多次的元素，B1、B2 分别记录从 T1、T2 淘汰的键。未命中的键如果在 B1 中，说明 T1 太小，
+ * 增大 T1 的目标大小 p；在 B2 中则减小 p。淘汰时 T1 超过 p 就淘汰 T1 的尾部，否则淘汰 T2 的尾部，
+ * 因此一次性的扫描只会挤出 T1，T2 中的热点元素不受影响。
+ */
+public class ARCMemoryCache<K, V> extends AbstractDoubleLinkedListMemoryCache<K, V>
+{
+	private DoubleLinkedList<MemoryElementDescriptor<K, V>> frequentList;
+
+	private GhostList<K> recentGhosts;
+
+	private GhostList<K> frequentGhosts;
+
+	//T1 的目标大小
+	private int target;
+
+	//最近一次未命中的键是否在 B2 中，影响淘汰 T1 还是 T2
+	private boolean frequentGhostHit;
+
+	@Override
+	public void initialize(ContextCache<K, V> hub)
+	{
+		frequentList = new DoubleLinkedList<MemoryElementDescriptor<K, V>>();
+		recentGhosts = new GhostList<K>();
+		frequentGhosts = new GhostList<K>();
+		target = 0;
+		super.initialize(hub);
+	}
+
+	@Override
+	protected MemoryElementDescriptor<K, V> adjustListForUpdate(ICacheElement<K, V> ce) throws IOException
+	{
+		K key = ce.getKey();
+		int capacity = getCacheAttributes().getMaxObjects();
+		ARCElementDescriptor<K, V> me = new ARCElementDescriptor<K, V>(ce);
+		frequentGhostHit = false;
+
+		if (map.containsKey(key))
+		{
+			//更新已有元素视为再次访问，旧节点由调用者删除
+			me.setFrequent(true);
+			frequentList.addFirst(me);
+		}
+		else if (recentGhosts.remove(key))
+		{
+			target = Math.min(capacity, target + Math.max(1, frequentGhosts.size() / Math.max(1, recentGhosts.size())));
+			me.setFrequent(true);
+			frequentList.addFirst(me);
+		}
+		else if (frequentGhosts.remove(key))
+		{
+			target = Math.max(0, target - Math.max(1, recentGhosts.size() / Math.max(1, frequentGhosts.size())));
+			frequentGhostHit = true;
+			me.setFrequent(true);
+			frequentList.addFirst(me);
+		}
+		else
+		{
+			list.addFirst(me);
+		}
+
+		trimGhosts(capacity);
+		return me;
+	}
+
+	/**
+	 * T1 中的元素再次被访问时移到 T2，T2 中的元素移到 T2 头部
+	 */
+	@Override
+	protected void adjustListForGet(MemoryElementDescriptor<K, V> me)
+	{
+		//读缓冲回放时节点可能已被删除或替换
+		if (map.get(me.getCacheElement().getKey()) != me)
+		{
+			return;
+		}
+
+		ARCElementDescriptor<K, V> arc = (ARCElementDescriptor<K, V>) me;
+		if (arc.isFrequent())
+		{
+			frequentList.makeFirst(me);
+		}
+		else
+		{
+			list.remove(me);
+			arc.setFrequent(true);
+			frequentList.addFirst(me);
+		}
+	}
+
+	/**
+	 * T1 超过目标大小时淘汰 T1 的尾部，否则淘汰 T2 的尾部
+	 */
+	@Override
+	protected MemoryElementDescriptor<K, V> getVictim()
+	{
+		int recentSize = list.size();
+		if (recentSize > 0
+				&& (recentSize > target || (frequentGhostHit && recentSize == target) || frequentList.size() == 0))
+		{
+			return list.getLast();
+		}
+		return frequentList.getLast();
+	}
+
+	/**
+	 * 被淘汰的键放入对应的幽灵链表
+	 */
+	@Override
+	protected void evict(MemoryElementDescriptor<K, V> me)
+	{
+		unlink(me);
+		K key = me.getCacheElement().getKey();
+		if (((ARCElementDescriptor<K, V>) me).isFrequent())
+		{
+			frequentGhosts.addFirst(key);
+		}
+		else
+		{
+			recentGhosts.addFirst(key);
+		}
+		trimGhosts(getCacheAttributes().getMaxObjects());
+	}
+
+	@Override
+	protected void unlink(MemoryElementDescriptor<K, V> me)
+	{
+		if (((ARCElementDescriptor<K, V>) me).isFrequent())
+		{
+			frequentList.remove(me);
+		}
+		else
+		{
+			list.remove(me);
+		}
+	}
+
+	@Override
+	protected void unlinkAll()
+	{
+		list.removeAll();
+		frequentList.removeAll();
+		recentGhosts.clear();
+		frequentGhosts.clear();
+		target = 0;
+	}
+
+	@Override
+	protected List<DoubleLinkedList<MemoryElementDescriptor<K, V>>> getLists()
+	{
+		List<DoubleLinkedList<MemoryElementDescriptor<K, V>>> lists = new ArrayList<DoubleLinkedList<MemoryElementDescriptor<K, V>>>();
+		lists.add(list);
+		lists.add(frequentList);
+		return lists;
+	}
+
+	/**
+	 * 保持 |T1| + |B1| <= c，|T1| + |T2| + |B1| + |B2| <= 2c
+	 */
+	private void trimGhosts(int capacity)
+	{
+		while (recentGhosts.size() > 0 && list.size() + recentGhosts.size() > capacity)
+		{
+			recentGhosts.removeLast();
+		}
+		while (frequentGhosts.size() > 0
+				&& list.size() + frequentList.size() + recentGhosts.size() + frequentGhosts.size() > 2 * capacity)
+		{
+			frequentGhosts.removeLast();
+		}
+	}
+
+	@Override
+	public IStats getStatistics()
+	{
+		IStats stats = super.getStatistics();
+		stats.setTypeName("ARC Memory Cache");
+
+		List<IStatElement<?>> elems = stats.getStatElements();
+		lock.lock();
+		try
+		{
+			elems.add(new StatElement<Integer>("Recent Size", Integer.valueOf(list.size())));
+			elems.add(new StatElement<Integer>("Frequent Size", Integer.valueOf(frequentList.size())));
+			elems.add(new StatElement<Integer>("Recent Ghost Size", Integer.valueOf(recentGhosts.size())));
+			elems.add(new StatElement<Integer>("Frequent Ghost Size", Integer.valueOf(frequentGhosts.size())));
+			elems.add(new StatElement<Integer>("Target Recent Size", Integer.valueOf(target)));
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		return stats;
+	}
+}
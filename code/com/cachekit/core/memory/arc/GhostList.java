@@ -0,0 +1,67 @@
+package com.cachekit.core.memory.arc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cachekit.utils.struct.DoubleLinkedList;
+import com.cachekit.utils.struct.DoubleLinkedListNode;
+
+/**
+ * 幽灵链表：按淘汰顺序只保存被淘汰元素的键，用来判断一次未命中是否本来可以命中。非线程安全
+ */
+public class GhostList<K>
+{
+	private final DoubleLinkedList<DoubleLinkedListNode<K>> list = new DoubleLinkedList<DoubleLinkedListNode<K>>();
+
+	private final Map<K, DoubleLinkedListNode<K>> index = new HashMap<K, DoubleLinkedListNode<K>>();
+
+	public boolean contains(K key)
+	{
+		return index.containsKey(key);
+	}
+
+	public void addFirst(K key)
+	{
+		DoubleLinkedListNode<K> node = new DoubleLinkedListNode<K>(key);
+		DoubleLinkedListNode<K> old = index.put(key, node);
+		if (old != null)
+		{
+			list.remove(old);
+		}
+		list.addFirst(node);
+	}
+
+	public boolean remove(K key)
+	{
+		DoubleLinkedListNode<K> node = index.remove(key);
+		if (node != null)
+		{
+			list.remove(node);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 删除最早被淘汰的键
+	 */
+	public void removeLast()
+	{
+		DoubleLinkedListNode<K> node = list.removeLast();
+		if (node != null)
+		{
+			index.remove(node.getPayload());
+		}
+	}
+
+	public int size()
+	{
+		return index.size();
+	}
+
+	public void clear()
+	{
+		list.removeAll();
+		index.clear();
+	}
+}
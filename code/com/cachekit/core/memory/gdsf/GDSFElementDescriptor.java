@@ -0,0 +1,66 @@
+package com.cachekit.core.memory.gdsf;
+
+import com.cachekit.core.memory.util.MemoryElementDescriptor;
+import com.cachekit.core.model.ICacheElement;
+
+/**
+ * 记录元素的访问次数、大小、优先级以及在堆中的位置
+ */
+public class GDSFElementDescriptor<K, V> extends MemoryElementDescriptor<K, V>
+{
+	private static final long serialVersionUID = 1L;
+
+	private long frequency;
+
+	private long size;
+
+	private double priority;
+
+	//在优先级堆中的下标，-1 表示不在堆中
+	private int heapIndex = -1;
+
+	public GDSFElementDescriptor(ICacheElement<K, V> ce)
+	{
+		super(ce);
+	}
+
+	public long getFrequency()
+	{
+		return frequency;
+	}
+
+	public void setFrequency(long frequency)
+	{
+		this.frequency = frequency;
+	}
+
+	public long getSize()
+	{
+		return size;
+	}
+
+	public void setSize(long size)
+	{
+		this.size = size;
+	}
+
+	public double getPriority()
+	{
+		return priority;
+	}
+
+	public void setPriority(double priority)
+	{
+		this.priority = priority;
+	}
+
+	public int getHeapIndex()
+	{
+		return heapIndex;
+	}
+
+	public void setHeapIndex(int heapIndex)
+	{
+		this.heapIndex = heapIndex;
+	}
+}
@@ -0,0 +1,87 @@
+package com.cachekit.core.memory.offheap;
+
+import com.cachekit.core.memory.util.MemoryElementDescriptor;
+import com.cachekit.core.model.ICacheElement;
+
+/**
+ * 堆外元素在堆内的索引项：只保存键、chunk 地址和长度，元素本身序列化后存放在直接内存中。
+ * getCacheElement() 每次都从所属的 OffHeapMemoryCache 读取并反序列化，描述符已被删除或替换时返回 null
+ */
+public class OffHeapElementDescriptor<K, V> extends MemoryElementDescriptor<K, V>
+{
+    private static final long serialVersionUID = 1L;
+
+    private final transient OffHeapMemoryCache<K, V> cache;
+
+    private final K key;
+
+    private final long address;
+
+    private final int length;
+
+    private final int sizeClass;
+
+    //最近一次访问的时间，反序列化时写回元素属性
+    private volatile long lastAccessTime;
+
+    //second chance 标记：命中时只设置标记，淘汰时被标记的元素移到表头并清除标记
+    private volatile boolean accessed;
+
+    public OffHeapElementDescriptor(OffHeapMemoryCache<K, V> cache, K key, long address, int length, int sizeClass,
+            long lastAccessTime)
+    {
+        super(null);
+        this.cache = cache;
+        this.key = key;
+        this.address = address;
+        this.length = length;
+        this.sizeClass = sizeClass;
+        this.lastAccessTime = lastAccessTime;
+    }
+
+    @Override
+    public ICacheElement<K, V> getCacheElement()
+    {
+        return cache != null ? cache.readElement(this) : null;
+    }
+
+    public K getKey()
+    {
+        return key;
+    }
+
+    public long getAddress()
+    {
+        return address;
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+
+    public int getSizeClass()
+    {
+        return sizeClass;
+    }
+
+    public long getLastAccessTime()
+    {
+        return lastAccessTime;
+    }
+
+    public void setLastAccessTime(long lastAccessTime)
+    {
+        this.lastAccessTime = lastAccessTime;
+    }
+
+    public boolean isAccessed()
+    {
+        return accessed;
+    }
+
+    public void setAccessed(boolean accessed)
+    {
+        this.accessed = accessed;
+    }
+}
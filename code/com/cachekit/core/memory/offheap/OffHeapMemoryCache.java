@@ -0,0 +1,591 @@
+package com.cachekit.core.memory.offheap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.cachekit.core.CacheConstants;
+import com.cachekit.core.ElementAttributes;
+import com.cachekit.core.control.ContextCache;
+import com.cachekit.core.control.group.GroupAttrName;
+import com.cachekit.core.memory.AbstractMemoryCache;
+import com.cachekit.core.memory.util.MemoryElementDescriptor;
+import com.cachekit.core.model.ICacheElement;
+import com.cachekit.core.model.IElementSerializer;
+import com.cachekit.core.stats.IStatElement;
+import com.cachekit.core.stats.IStats;
+import com.cachekit.core.stats.StatElement;
+import com.cachekit.utils.config.OptionConverter;
+import com.cachekit.utils.serialization.StandardSerializer;
+import com.cachekit.utils.struct.DoubleLinkedList;
+
+/**
+ * 堆外内存组件：元素用 ElementSerializerName 指定的序列化器序列化后存放在直接内存的 slab 中，
+ * 堆内只保留键到 chunk 地址的索引，大容量的区域不再占用老年代。
+ * 每个大小等级维护一个 second chance 链表作为近似LRU，空间或 MaxObjects 不足时比较各等级链表尾部的访问时间，
+ * 从最久未被访问的等级淘汰。新元素所在等级没有空间而最旧的元素属于其他等级时，淘汰该元素所在 slab 上的所有元素，
+ * slab 回到空闲池后分给新元素的等级，因此 slab 不会永久属于最先使用它的等级。
+ * 超过一个 slab 的元素占用多个整 slab。被淘汰的元素反序列化后刷新到磁盘组件，
+ * 超过 MaxOffHeapBytes 的元素以及无法分配空间的元素直接刷新到磁盘组件。
+ */
+public class OffHeapMemoryCache<K, V> extends AbstractMemoryCache<K, V>
+{
+    private static final Log log = LogFactory.getLog(OffHeapMemoryCache.class);
+
+    private SlabAllocator allocator;
+
+    private DoubleLinkedList<OffHeapElementDescriptor<K, V>>[] lists;
+
+    private IElementSerializer serializer;
+
+    private long maxOffHeapBytes;
+
+    //每个等级自上次抢占其他等级的 slab 以来，因空间不足在本等级内淘汰的元素个数
+    private long[] pressure;
+
+    private AtomicLong evictCnt;
+
+    //无法放入堆外内存、直接刷新到磁盘组件的次数
+    private AtomicLong rejectCnt;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void initialize(ContextCache<K, V> hub)
+    {
+        super.initialize(hub);
+
+        maxOffHeapBytes = getCacheAttributes().getMaxOffHeapBytes();
+        allocator = new SlabAllocator(maxOffHeapBytes);
+        serializer = OptionConverter.instantiateByClassName(getCacheAttributes().getElementSerializerName(),
+                new StandardSerializer());
+
+        pressure = new long[SlabAllocator.SIZE_CLASSES];
+        lists = (DoubleLinkedList<OffHeapElementDescriptor<K, V>>[]) new DoubleLinkedList<?>[SlabAllocator.SIZE_CLASSES];
+        for (int i = 0; i < lists.length; i++)
+        {
+            lists[i] = new DoubleLinkedList<OffHeapElementDescriptor<K, V>>();
+        }
+
+        evictCnt = new AtomicLong(0);
+        rejectCnt = new AtomicLong(0);
+
+        log.info("Initialize OffHeapMemoryCache for " + getCacheName() + ", max off-heap bytes: " + maxOffHeapBytes
+                + ", slabs: " + allocator.getMaxSlabs());
+    }
+
+    @Override
+    public ConcurrentMap<K, MemoryElementDescriptor<K, V>> createMap()
+    {
+        return new ConcurrentHashMap<K, MemoryElementDescriptor<K, V>>();
+    }
+
+    /**
+     * 序列化在锁外完成，锁内只分配 chunk 并拷贝数据
+     */
+    @Override
+    public void update(ICacheElement<K, V> ce) throws IOException
+    {
+        putCnt.incrementAndGet();
+
+        final K key = ce.getKey();
+        byte[] data = serializer.serialize(ce);
+        int sizeClass = allocator.sizeClassOf(data.length);
+
+        List<OffHeapElementDescriptor<K, V>> evicted = new ArrayList<OffHeapElementDescriptor<K, V>>();
+        List<byte[]> evictedData = new ArrayList<byte[]>();
+        boolean stored = false;
+
+        lock.lock();
+        try
+        {
+            //旧值无论新值能否放入都要删除，否则会读到旧值
+            OffHeapElementDescriptor<K, V> oldNode = descriptor(map.remove(key));
+            if (oldNode != null)
+            {
+                release(oldNode);
+            }
+
+            if (sizeClass >= 0)
+            {
+                long address = allocator.allocate(sizeClass, data);
+                while (address < 0 && makeRoom(sizeClass, evicted, evictedData))
+                {
+                    address = allocator.allocate(sizeClass, data);
+                }
+
+                if (address >= 0)
+                {
+                    OffHeapElementDescriptor<K, V> newNode = new OffHeapElementDescriptor<K, V>(this, key, address,
+                            data.length, sizeClass, ce.getElementAttributes().getLastAccessTime());
+                    allocator.setOwner(address, newNode);
+                    lists[sizeClass].addFirst(newNode);
+                    map.put(key, newNode);
+                    stored = true;
+
+                    int maxObjects = getCacheAttributes().getMaxObjects();
+                    while (map.size() > maxObjects)
+                    {
+                        int victim = lruClass(sizeClass, newNode);
+                        if (victim < 0 || !evictLast(victim, evicted, evictedData))
+                        {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if (!stored)
+        {
+            rejectCnt.incrementAndGet();
+            if (log.isDebugEnabled())
+            {
+                log.debug(getCacheName() + ": no off-heap space for " + key + ", size: " + data.length);
+            }
+            waterfal(ce);
+        }
+
+        spool(evicted, evictedData);
+    }
+
+    @Override
+    public ICacheElement<K, V> get(K key) throws IOException
+    {
+        if (log.isDebugEnabled())
+        {
+            log.debug(getCacheName() + ": get item for key " + key);
+        }
+
+        ICacheElement<K, V> ce = read(key, true);
+        if (ce != null)
+        {
+            hitCnt.incrementAndGet();
+            if (log.isDebugEnabled())
+            {
+                log.debug(getCacheName() + ": OffHeapMemoryCache hit for " + key);
+            }
+        }
+        else
+        {
+            missCnt.incrementAndGet();
+            if (log.isDebugEnabled())
+            {
+                log.debug(getCacheName() + ": OffHeapMemoryCache miss for " + key);
+            }
+        }
+        return ce;
+    }
+
+    @Override
+    public ICacheElement<K, V> getQuiet(K key) throws IOException
+    {
+        return read(key, false);
+    }
+
+    private ICacheElement<K, V> read(K key, boolean touch)
+    {
+        OffHeapElementDescriptor<K, V> me = descriptor(map.get(key));
+        if (me == null)
+        {
+            return null;
+        }
+
+        ICacheElement<K, V> ce = readElement(me);
+        if (ce != null && touch)
+        {
+            me.setAccessed(true);
+            me.setLastAccessTime(System.currentTimeMillis());
+        }
+        return ce;
+    }
+
+    /**
+     * 读取描述符对应的元素，描述符已被删除或替换时返回 null。
+     * 在锁内拷贝出数据，防止 chunk 被释放后重用，反序列化在锁外完成
+     */
+    ICacheElement<K, V> readElement(OffHeapElementDescriptor<K, V> me)
+    {
+        byte[] data;
+
+        lock.lock();
+        try
+        {
+            if (map.get(me.getKey()) != me)
+            {
+                return null;
+            }
+            data = allocator.read(me.getAddress(), me.getLength());
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        return toElement(me, data);
+    }
+
+    /**
+     * 反序列化并写回最近访问时间，失败时返回 null
+     */
+    private ICacheElement<K, V> toElement(OffHeapElementDescriptor<K, V> me, byte[] data)
+    {
+        try
+        {
+            ICacheElement<K, V> ce = serializer.deSerialize(data, null);
+            if (ce.getElementAttributes() instanceof ElementAttributes)
+            {
+                ((ElementAttributes) ce.getElementAttributes()).setLastAccessTime(me.getLastAccessTime());
+            }
+            return ce;
+        }
+        catch (IOException e)
+        {
+            log.warn(getCacheName() + ": fail to deserialize element " + me.getKey(), e);
+        }
+        catch (ClassNotFoundException e)
+        {
+            log.warn(getCacheName() + ": fail to deserialize element " + me.getKey(), e);
+        }
+        return null;
+    }
+
+    /**
+     * 新元素所在等级没有空闲 chunk 时腾出空间，调用者必须持有 lock。
+     * 最旧的元素属于其他等级、且本等级为空或者自上次抢占以来已经淘汰了一个 slab 能容纳的元素（至少 16 个）时，
+     * 淘汰最旧元素所在的整个 slab，使 slab 回到空闲池；否则在本等级内淘汰一个元素。
+     * 限制抢占的频率是为了避免为一个元素清空整个 slab，同时让持续缺少空间的等级能够逐步得到更多 slab
+     */
+    private boolean makeRoom(int sizeClass, List<OffHeapElementDescriptor<K, V>> evicted, List<byte[]> evictedData)
+    {
+        int victim = lruClass(sizeClass, null);
+        if (victim < 0)
+        {
+            return false;
+        }
+        if (victim != sizeClass && (lists[sizeClass].size() == 0 || pressure[sizeClass] >= stealThreshold(sizeClass)))
+        {
+            pressure[sizeClass] = 0;
+            return evictSlab(lists[victim].getLast(), evicted, evictedData);
+        }
+        pressure[sizeClass]++;
+        return evictLast(sizeClass, evicted, evictedData);
+    }
+
+    private static long stealThreshold(int sizeClass)
+    {
+        return Math.max(16, SlabAllocator.SLAB_SIZE / SlabAllocator.chunkSizeOf(sizeClass));
+    }
+
+    /**
+     * 链表尾部最久未被访问的等级，访问时间相同时优先 preferred，没有可淘汰的元素时返回 -1。
+     * skip 是刚插入、不能被淘汰的元素
+     */
+    private int lruClass(int preferred, OffHeapElementDescriptor<K, V> skip)
+    {
+        int victim = -1;
+        long oldest = Long.MAX_VALUE;
+
+        if (preferred >= 0)
+        {
+            OffHeapElementDescriptor<K, V> last = secondChance(lists[preferred]);
+            if (last != null && last != skip)
+            {
+                victim = preferred;
+                oldest = last.getLastAccessTime();
+            }
+        }
+
+        for (int i = 0; i < lists.length; i++)
+        {
+            if (i == preferred)
+            {
+                continue;
+            }
+            OffHeapElementDescriptor<K, V> last = secondChance(lists[i]);
+            if (last != null && last != skip && (victim < 0 || last.getLastAccessTime() < oldest))
+            {
+                victim = i;
+                oldest = last.getLastAccessTime();
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * 被标记访问过的尾部元素移到表头给第二次机会，返回新的尾部元素，调用者必须持有 lock
+     */
+    private OffHeapElementDescriptor<K, V> secondChance(DoubleLinkedList<OffHeapElementDescriptor<K, V>> list)
+    {
+        //最多给每个元素一次机会，防止并发的读线程不断设置标记
+        int chances = list.size();
+        OffHeapElementDescriptor<K, V> last = list.getLast();
+        while (last != null && last.isAccessed() && chances-- > 0)
+        {
+            last.setAccessed(false);
+            list.makeFirst(last);
+            last = list.getLast();
+        }
+        return last;
+    }
+
+    /**
+     * 从等级链表尾部淘汰一个元素，调用者必须持有 lock
+     */
+    private boolean evictLast(int sizeClass, List<OffHeapElementDescriptor<K, V>> evicted, List<byte[]> evictedData)
+    {
+        OffHeapElementDescriptor<K, V> last = secondChance(lists[sizeClass]);
+        if (last == null)
+        {
+            return false;
+        }
+
+        evict(last, evicted, evictedData);
+        return true;
+    }
+
+    /**
+     * 淘汰与 me 在同一个 slab 上的所有元素，全部释放后 slab 回到空闲池，调用者必须持有 lock
+     */
+    @SuppressWarnings("unchecked")
+    private boolean evictSlab(OffHeapElementDescriptor<K, V> me, List<OffHeapElementDescriptor<K, V>> evicted,
+            List<byte[]> evictedData)
+    {
+        for (Object owner : allocator.ownersOf(me.getAddress()))
+        {
+            evict((OffHeapElementDescriptor<K, V>) owner, evicted, evictedData);
+        }
+        return true;
+    }
+
+    private void evict(OffHeapElementDescriptor<K, V> me, List<OffHeapElementDescriptor<K, V>> evicted,
+            List<byte[]> evictedData)
+    {
+        map.remove(me.getKey(), me);
+        evicted.add(me);
+        evictedData.add(allocator.read(me.getAddress(), me.getLength()));
+        release(me);
+        evictCnt.incrementAndGet();
+    }
+
+    /**
+     * 从链表中删除并释放 chunk，调用者必须持有 lock
+     */
+    private void release(OffHeapElementDescriptor<K, V> me)
+    {
+        lists[me.getSizeClass()].remove(me);
+        allocator.free(me.getAddress(), me.getLength());
+    }
+
+    /**
+     * 在锁外把被淘汰的元素刷新到磁盘组件
+     */
+    private void spool(List<OffHeapElementDescriptor<K, V>> evicted, List<byte[]> evictedData)
+    {
+        for (int i = 0; i < evicted.size(); i++)
+        {
+            ICacheElement<K, V> ce = toElement(evicted.get(i), evictedData.get(i));
+            if (ce != null)
+            {
+                waterfal(ce);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private OffHeapElementDescriptor<K, V> descriptor(MemoryElementDescriptor<K, V> me)
+    {
+        return (OffHeapElementDescriptor<K, V>) me;
+    }
+
+    @Override
+    public int freeElements(int numberToFree) throws IOException
+    {
+        List<OffHeapElementDescriptor<K, V>> evicted = new ArrayList<OffHeapElementDescriptor<K, V>>();
+        List<byte[]> evictedData = new ArrayList<byte[]>();
+
+        lock.lock();
+        try
+        {
+            for (int i = 0; i < numberToFree; i++)
+            {
+                //每次从尾部最旧的等级淘汰
+                int victim = lruClass(-1, null);
+                if (victim < 0 || !evictLast(victim, evicted, evictedData))
+                {
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        spool(evicted, evictedData);
+        return evicted.size();
+    }
+
+    @Override
+    public boolean remove(K key) throws IOException
+    {
+        if (log.isDebugEnabled())
+        {
+            log.debug("Remove item for key: " + key);
+        }
+
+        boolean removed = false;
+
+        lock.lock();
+        try
+        {
+            if (key instanceof String && ((String) key).endsWith(CacheConstants.NAME_COMPONENT_DELIMITER))
+            {
+                for (Iterator<Map.Entry<K, MemoryElementDescriptor<K, V>>> itr = map.entrySet().iterator(); itr.hasNext();)
+                {
+                    Map.Entry<K, MemoryElementDescriptor<K, V>> entry = itr.next();
+                    K k = entry.getKey();
+
+                    if (k instanceof String && ((String) k).startsWith(key.toString()))
+                    {
+                        release(descriptor(entry.getValue()));
+                        itr.remove();
+                        removed = true;
+                    }
+                }
+            }
+            else if (key instanceof GroupAttrName && ((GroupAttrName<?>) key).attrName == null)
+            {
+                for (Iterator<Map.Entry<K, MemoryElementDescriptor<K, V>>> itr = map.entrySet().iterator(); itr.hasNext();)
+                {
+                    Map.Entry<K, MemoryElementDescriptor<K, V>> entry = itr.next();
+                    K k = entry.getKey();
+
+                    if (k instanceof GroupAttrName
+                            && ((GroupAttrName<?>) k).groupId.equals(((GroupAttrName<?>) key).groupId))
+                    {
+                        release(descriptor(entry.getValue()));
+                        itr.remove();
+                        removed = true;
+                    }
+                }
+            }
+            else
+            {
+                OffHeapElementDescriptor<K, V> me = descriptor(map.remove(key));
+                if (me != null)
+                {
+                    release(me);
+                    removed = true;
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        return removed;
+    }
+
+    @Override
+    public void removeAll() throws IOException
+    {
+        lock.lock();
+        try
+        {
+            for (DoubleLinkedList<OffHeapElementDescriptor<K, V>> list : lists)
+            {
+                list.removeAll();
+            }
+            map.clear();
+            allocator.clear();
+            Arrays.fill(pressure, 0);
+            allEntriesRemoved();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<K> getKeySet()
+    {
+        return new LinkedHashSet<K>(map.keySet());
+    }
+
+    @Override
+    public void mapProbe()
+    {
+        log.debug("mapProbe");
+        for (Map.Entry<K, MemoryElementDescriptor<K, V>> e : map.entrySet())
+        {
+            OffHeapElementDescriptor<K, V> me = descriptor(e.getValue());
+            log.debug("mapProbe> key=" + e.getKey() + ", address=" + me.getAddress() + ", length=" + me.getLength());
+        }
+    }
+
+    @Override
+    public IStats getStatistics()
+    {
+        IStats stats = super.getStatistics();
+        stats.setTypeName("Off-Heap Memory Cache");
+
+        List<IStatElement<?>> elems = stats.getStatElements();
+        elems.add(new StatElement<AtomicLong>("Evict Count", evictCnt));
+        elems.add(new StatElement<AtomicLong>("Reject Count", rejectCnt));
+
+        lock.lock();
+        try
+        {
+            long used = allocator.getUsedBytes();
+            long requested = allocator.getRequestedBytes();
+            long allocated = (long) allocator.getSlabCount() * SlabAllocator.SLAB_SIZE;
+
+            elems.add(new StatElement<Long>("Max Off-Heap Bytes", Long.valueOf(maxOffHeapBytes)));
+            elems.add(new StatElement<Long>("Allocated Off-Heap Bytes", Long.valueOf(allocated)));
+            elems.add(new StatElement<Integer>("Slab Count", Integer.valueOf(allocator.getSlabCount())));
+            elems.add(new StatElement<Integer>("Free Slab Count", Integer.valueOf(allocator.getFreeSlabCount())));
+            elems.add(new StatElement<Long>("Slab Reassign Count", Long.valueOf(allocator.getReassignCount())));
+            elems.add(new StatElement<Long>("Used Chunk Bytes", Long.valueOf(used)));
+            elems.add(new StatElement<Long>("Payload Bytes", Long.valueOf(requested)));
+            //chunk 内部浪费的比例
+            elems.add(new StatElement<Long>("Internal Fragmentation Percent",
+                    Long.valueOf(used == 0 ? 0 : (used - requested) * 100 / used)));
+            //已分配给等级但未被使用的 slab 空间
+            elems.add(new StatElement<Long>("Free Chunk Bytes", Long.valueOf(allocated - used)));
+
+            for (int i = 0; i < SlabAllocator.SIZE_CLASSES; i++)
+            {
+                if (allocator.getSlabCount(i) > 0)
+                {
+                    String name = i == SlabAllocator.LARGE_CLASS ? "Class Large" : "Class " + SlabAllocator.chunkSizeOf(i) + "B";
+                    elems.add(new StatElement<String>(name,
+                            "slabs: " + allocator.getSlabCount(i) + ", chunks: " + allocator.getUsedChunks(i)
+                                    + ", list: " + lists[i].size()));
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        return stats;
+    }
+}
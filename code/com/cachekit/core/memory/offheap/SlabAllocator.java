@@ -0,0 +1,469 @@
+package com.cachekit.core.memory.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 堆外内存的 slab 分配器：直接内存按 SLAB_SIZE 分块（slab），slab 从空闲池中取出时归属于一个大小等级，
+ * 并被切分成该等级大小的 chunk。每个 slab 维护自己的空闲 chunk 栈，每个等级维护还有空闲 chunk 的 slab，
+ * 分配和释放都是 O(1)。slab 的最后一个 chunk 被释放时回到空闲池，可以再分给其他等级。
+ * 超过 SLAB_SIZE 的数据属于 LARGE_CLASS，占用若干个串联起来的整 slab。
+ * 每个 chunk 记录占用它的对象，调用者可以据此清空整个 slab。
+ * 地址编码为 slab 序号左移 OFFSET_BITS 位再加上 slab 内的偏移。非线程安全，调用者需要持有锁。
+ */
+public class SlabAllocator
+{
+	private static final int OFFSET_BITS = 20;
+
+	//slab 大小，也是最大的 chunk 大小
+	public static final int SLAB_SIZE = 1 << OFFSET_BITS;
+
+	private static final int OFFSET_MASK = SLAB_SIZE - 1;
+
+	//最小的 chunk 大小
+	private static final int MIN_CHUNK_SHIFT = 6;
+
+	private static final int MAX_CHUNK_SHIFT = OFFSET_BITS;
+
+	//超过一个 slab 的数据占用多个整 slab
+	public static final int LARGE_CLASS = MAX_CHUNK_SHIFT - MIN_CHUNK_SHIFT + 1;
+
+	public static final int SIZE_CLASSES = LARGE_CLASS + 1;
+
+	private final List<Slab> slabs = new ArrayList<Slab>();
+
+	//不属于任何等级的 slab
+	private final List<Slab> freeSlabs = new ArrayList<Slab>();
+
+	//每个等级中还有空闲 chunk 的 slab，从末尾分配
+	private final List<List<Slab>> partialSlabs = new ArrayList<List<Slab>>();
+
+	private final int maxSlabs;
+
+	private final int[] slabsPerClass = new int[SIZE_CLASSES];
+
+	private final long[] usedChunks = new long[SIZE_CLASSES];
+
+	private final long[] requestedBytes = new long[SIZE_CLASSES];
+
+	//空闲池中用过的 slab 被重新分给等级的次数
+	private long reassignCount = 0;
+
+	public SlabAllocator(long maxBytes)
+	{
+		this.maxSlabs = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / SLAB_SIZE));
+		for (int i = 0; i < SIZE_CLASSES; i++)
+		{
+			partialSlabs.add(new ArrayList<Slab>());
+		}
+	}
+
+	/**
+	 * 能够容纳 length 字节的最小等级，超过最大 chunk 时为 LARGE_CLASS，超过全部 slab 的容量时返回 -1
+	 */
+	public int sizeClassOf(int length)
+	{
+		if (length > SLAB_SIZE)
+		{
+			return slabsFor(length) <= maxSlabs ? LARGE_CLASS : -1;
+		}
+		int shift = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1);
+		return Math.max(shift, MIN_CHUNK_SHIFT) - MIN_CHUNK_SHIFT;
+	}
+
+	/**
+	 * 等级的 chunk 大小，LARGE_CLASS 按一个 slab 计
+	 */
+	public static int chunkSizeOf(int sizeClass)
+	{
+		return sizeClass == LARGE_CLASS ? SLAB_SIZE : 1 << (sizeClass + MIN_CHUNK_SHIFT);
+	}
+
+	private static int slabsFor(int length)
+	{
+		return (length + SLAB_SIZE - 1) / SLAB_SIZE;
+	}
+
+	/**
+	 * 分配一个 chunk 并写入数据，等级中没有空闲 chunk 且空闲池和 slab 都已用完时返回 -1
+	 */
+	public long allocate(int sizeClass, byte[] data)
+	{
+		if (sizeClass == LARGE_CLASS)
+		{
+			return allocateLarge(data);
+		}
+
+		List<Slab> partial = partialSlabs.get(sizeClass);
+		if (partial.isEmpty() && !growClass(sizeClass))
+		{
+			return -1;
+		}
+
+		Slab slab = partial.get(partial.size() - 1);
+		int chunk = slab.pop();
+		if (slab.isFull())
+		{
+			partial.remove(partial.size() - 1);
+		}
+		usedChunks[sizeClass]++;
+		requestedBytes[sizeClass] += data.length;
+
+		ByteBuffer buf = slab.buffer.duplicate();
+		buf.position(chunk * chunkSizeOf(sizeClass));
+		buf.put(data);
+		return ((long) slab.index << OFFSET_BITS) | (chunk * chunkSizeOf(sizeClass));
+	}
+
+	/**
+	 * 从空闲池中取出足够的 slab 串联起来，依次写入数据，slab 不足时不占用任何 slab 并返回 -1
+	 */
+	private long allocateLarge(byte[] data)
+	{
+		int count = slabsFor(data.length);
+		if (freeSlabs.size() + maxSlabs - slabs.size() < count)
+		{
+			return -1;
+		}
+
+		Slab head = null;
+		Slab prev = null;
+		for (int i = 0; i < count; i++)
+		{
+			Slab slab = takeSlab();
+			slab.assign(LARGE_CLASS, 1);
+			slab.used = 1;
+			slabsPerClass[LARGE_CLASS]++;
+
+			int offset = i * SLAB_SIZE;
+			ByteBuffer buf = slab.buffer.duplicate();
+			buf.put(data, offset, Math.min(SLAB_SIZE, data.length - offset));
+
+			if (prev == null)
+			{
+				head = slab;
+			}
+			else
+			{
+				prev.nextSlab = slab;
+			}
+			prev = slab;
+		}
+		usedChunks[LARGE_CLASS]++;
+		requestedBytes[LARGE_CLASS] += data.length;
+		return (long) head.index << OFFSET_BITS;
+	}
+
+	/**
+	 * 记录占用 chunk 的对象，由 ownersOf 返回给调用者
+	 */
+	public void setOwner(long address, Object owner)
+	{
+		Slab slab = slabs.get(slabOf(address));
+		if (slab.sizeClass == LARGE_CLASS)
+		{
+			for (; slab != null; slab = slab.nextSlab)
+			{
+				slab.owners[0] = owner;
+			}
+			return;
+		}
+		slab.owners[offsetOf(address) >>> (slab.sizeClass + MIN_CHUNK_SHIFT)] = owner;
+	}
+
+	public byte[] read(long address, int length)
+	{
+		byte[] data = new byte[length];
+		Slab slab = slabs.get(slabOf(address));
+		if (slab.sizeClass == LARGE_CLASS)
+		{
+			for (int offset = 0; offset < length; offset += SLAB_SIZE, slab = slab.nextSlab)
+			{
+				ByteBuffer buf = slab.buffer.duplicate();
+				buf.get(data, offset, Math.min(SLAB_SIZE, length - offset));
+			}
+			return data;
+		}
+		ByteBuffer buf = slab.buffer.duplicate();
+		buf.position(offsetOf(address));
+		buf.get(data);
+		return data;
+	}
+
+	public void free(long address, int length)
+	{
+		Slab slab = slabs.get(slabOf(address));
+		int sizeClass = slab.sizeClass;
+
+		if (sizeClass == LARGE_CLASS)
+		{
+			while (slab != null)
+			{
+				Slab next = slab.nextSlab;
+				slabsPerClass[LARGE_CLASS]--;
+				slab.release();
+				freeSlabs.add(slab);
+				slab = next;
+			}
+			usedChunks[LARGE_CLASS]--;
+			requestedBytes[LARGE_CLASS] -= length;
+			return;
+		}
+
+		boolean wasFull = slab.isFull();
+
+		slab.push(offsetOf(address) >>> (sizeClass + MIN_CHUNK_SHIFT));
+		usedChunks[sizeClass]--;
+		requestedBytes[sizeClass] -= length;
+
+		List<Slab> partial = partialSlabs.get(sizeClass);
+		if (slab.isEmpty())
+		{
+			//最后一个 chunk 被释放，slab 回到空闲池
+			if (!wasFull)
+			{
+				partial.remove(slab);
+			}
+			slabsPerClass[sizeClass]--;
+			slab.release();
+			freeSlabs.add(slab);
+		}
+		else if (wasFull)
+		{
+			partial.add(slab);
+		}
+	}
+
+	/**
+	 * 地址所在 slab 中所有被占用 chunk 的占用者，调用者逐个释放后 slab 回到空闲池
+	 */
+	public List<Object> ownersOf(long address)
+	{
+		Slab slab = slabs.get(slabOf(address));
+		List<Object> owners = new ArrayList<Object>();
+		for (Object owner : slab.owners)
+		{
+			if (owner != null)
+			{
+				owners.add(owner);
+			}
+		}
+		return owners;
+	}
+
+	/**
+	 * 释放所有 chunk，所有 slab 回到空闲池
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < SIZE_CLASSES; i++)
+		{
+			partialSlabs.get(i).clear();
+			slabsPerClass[i] = 0;
+			usedChunks[i] = 0;
+			requestedBytes[i] = 0;
+		}
+		freeSlabs.clear();
+		for (Slab slab : slabs)
+		{
+			slab.release();
+			freeSlabs.add(slab);
+		}
+	}
+
+	/**
+	 * 为等级分配一个 slab
+	 */
+	private boolean growClass(int sizeClass)
+	{
+		Slab slab = takeSlab();
+		if (slab == null)
+		{
+			return false;
+		}
+
+		slab.assign(sizeClass, SLAB_SIZE / chunkSizeOf(sizeClass));
+		slabsPerClass[sizeClass]++;
+		partialSlabs.get(sizeClass).add(slab);
+		return true;
+	}
+
+	/**
+	 * 优先使用空闲池中的 slab，空闲池为空且未达到上限时创建新的 slab
+	 */
+	private Slab takeSlab()
+	{
+		if (!freeSlabs.isEmpty())
+		{
+			Slab slab = freeSlabs.remove(freeSlabs.size() - 1);
+			if (slab.everAssigned)
+			{
+				reassignCount++;
+			}
+			return slab;
+		}
+		if (slabs.size() < maxSlabs)
+		{
+			Slab slab = new Slab(slabs.size(), ByteBuffer.allocateDirect(SLAB_SIZE));
+			slabs.add(slab);
+			return slab;
+		}
+		return null;
+	}
+
+	private static int slabOf(long address)
+	{
+		return (int) (address >>> OFFSET_BITS);
+	}
+
+	private static int offsetOf(long address)
+	{
+		return (int) (address & OFFSET_MASK);
+	}
+
+	public int getSlabCount()
+	{
+		return slabs.size();
+	}
+
+	public int getMaxSlabs()
+	{
+		return maxSlabs;
+	}
+
+	public int getFreeSlabCount()
+	{
+		return freeSlabs.size();
+	}
+
+	public long getReassignCount()
+	{
+		return reassignCount;
+	}
+
+	public int getSlabCount(int sizeClass)
+	{
+		return slabsPerClass[sizeClass];
+	}
+
+	public long getUsedChunks(int sizeClass)
+	{
+		return usedChunks[sizeClass];
+	}
+
+	/**
+	 * 已被 chunk 占用的字节数
+	 */
+	public long getUsedBytes()
+	{
+		long used = (long) slabsPerClass[LARGE_CLASS] * SLAB_SIZE;
+		for (int i = 0; i < LARGE_CLASS; i++)
+		{
+			used += usedChunks[i] * chunkSizeOf(i);
+		}
+		return used;
+	}
+
+	/**
+	 * 实际存放的数据字节数
+	 */
+	public long getRequestedBytes()
+	{
+		long requested = 0;
+		for (int i = 0; i < SIZE_CLASSES; i++)
+		{
+			requested += requestedBytes[i];
+		}
+		return requested;
+	}
+
+	private static final class Slab
+	{
+		final int index;
+
+		final ByteBuffer buffer;
+
+		int sizeClass = -1;
+
+		boolean everAssigned = false;
+
+		int chunks;
+
+		//从未分配过的 chunk 从 next 开始顺序分配，释放的 chunk 压入 freeStack
+		int next;
+
+		int[] freeStack = new int[16];
+
+		int freeCount;
+
+		int used;
+
+		//每个 chunk 的占用者
+		Object[] owners;
+
+		//LARGE_CLASS 中存放同一个数据的下一个 slab
+		Slab nextSlab;
+
+		Slab(int index, ByteBuffer buffer)
+		{
+			this.index = index;
+			this.buffer = buffer;
+		}
+
+		void assign(int sizeClass, int chunks)
+		{
+			this.sizeClass = sizeClass;
+			this.everAssigned = true;
+			this.chunks = chunks;
+			this.next = 0;
+			this.freeCount = 0;
+			this.used = 0;
+			this.owners = new Object[chunks];
+		}
+
+		void release()
+		{
+			this.sizeClass = -1;
+			this.owners = null;
+			this.nextSlab = null;
+			this.used = 0;
+			this.freeStack = new int[16];
+			this.freeCount = 0;
+			this.next = 0;
+		}
+
+		int pop()
+		{
+			used++;
+			if (freeCount > 0)
+			{
+				return freeStack[--freeCount];
+			}
+			return next++;
+		}
+
+		void push(int chunk)
+		{
+			owners[chunk] = null;
+			used--;
+			if (freeCount == freeStack.length)
+			{
+				int[] grown = new int[freeStack.length << 1];
+				System.arraycopy(freeStack, 0, grown, 0, freeStack.length);
+				freeStack = grown;
+			}
+			freeStack[freeCount++] = chunk;
+		}
+
+		boolean isFull()
+		{
+			return used == chunks;
+		}
+
+		boolean isEmpty()
+		{
+			return used == 0;
+		}
+	}
+}
@@ -0,0 +1,365 @@
+package com.cachekit.core.memory.segmented;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.cachekit.core.CacheConstants;
+import com.cachekit.core.control.ContextCache;
+import com.cachekit.core.control.group.GroupAttrName;
+import com.cachekit.core.memory.AbstractMemoryCache;
+import com.cachekit.core.memory.lru.LRUMemoryCache;
+import com.cachekit.core.memory.util.MemoryElementDescriptor;
+import com.cachekit.core.model.ICacheElement;
+import com.cachekit.core.model.IContextCacheAttributes;
+import com.cachekit.core.stats.IStatElement;
+import com.cachekit.core.stats.IStats;
+import com.cachekit.core.stats.StatElement;
+import com.cachekit.core.stats.Stats;
+import com.cachekit.utils.config.OptionConverter;
+
+/**
+ * 分段内存组件：按键的哈希值把元素分到 MemoryCacheSegments 个互相独立的分段中，
+ * 每个分段有自己的链表、锁以及 MaxObjects、MaxMemoryBytes、MaxOffHeapBytes 的份额，写操作只竞争所在分段的锁。
+ * 分段使用 SegmentMemoryCacheName 指定的内存组件，默认为 LRU。
+ */
+public class SegmentedMemoryCache<K, V> extends AbstractMemoryCache<K, V>
+{
+    private static final Log log = LogFactory.getLog(SegmentedMemoryCache.class);
+
+    private AbstractMemoryCache<K, V>[] segments;
+
+    private int segmentMask;
+
+    private int segmentShift;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void initialize(ContextCache<K, V> hub)
+    {
+        super.initialize(hub);
+
+        IContextCacheAttributes cattr = getCacheAttributes();
+
+        int count = 1;
+        while (count < Math.max(1, cattr.getMemoryCacheSegments()))
+        {
+            count <<= 1;
+        }
+
+        IContextCacheAttributes segmentAttr = segmentAttributes(cattr, count);
+
+        segments = (AbstractMemoryCache<K, V>[]) new AbstractMemoryCache<?, ?>[count];
+        for (int i = 0; i < count; i++)
+        {
+            segments[i] = createSegment(cattr.getSegmentMemoryCacheName());
+            segments[i].initializeSegment(hub, segmentAttr);
+        }
+        segmentMask = count - 1;
+        segmentShift = 32 - Integer.numberOfTrailingZeros(count);
+
+        log.info("Initialize SegmentedMemoryCache for " + getCacheName() + ", segments: " + count
+                + ", max objects per segment: " + segmentAttr.getMaxObjects());
+    }
+
+    /**
+     * 每个分段的属性，容量限制按分段数平分
+     */
+    private static IContextCacheAttributes segmentAttributes(IContextCacheAttributes cattr, int count)
+    {
+        IContextCacheAttributes segmentAttr = cattr.clone();
+        segmentAttr.setMaxObjects((cattr.getMaxObjects() + count - 1) / count);
+        if (cattr.getMaxMemoryBytes() > 0)
+        {
+            segmentAttr.setMaxMemoryBytes((cattr.getMaxMemoryBytes() + count - 1) / count);
+        }
+        //分段使用堆外内存组件时按分段平分直接内存，份额不足一个 slab 的分段仍会使用一个 slab
+        segmentAttr.setMaxOffHeapBytes((cattr.getMaxOffHeapBytes() + count - 1) / count);
+        return segmentAttr;
+    }
+
+    /**
+     * 分段数在初始化时确定，新属性按原来的分段数平分后传给每个分段
+     */
+    @Override
+    public void setCacheAttributes(IContextCacheAttributes cattr)
+    {
+        super.setCacheAttributes(cattr);
+        if (segments != null)
+        {
+            IContextCacheAttributes segmentAttr = segmentAttributes(cattr, segments.length);
+            for (AbstractMemoryCache<K, V> segment : segments)
+            {
+                segment.setCacheAttributes(segmentAttr);
+            }
+        }
+    }
+
+    private AbstractMemoryCache<K, V> createSegment(String className)
+    {
+        AbstractMemoryCache<K, V> segment = OptionConverter.instantiateByClassName(className, null);
+        if (segment == null || segment instanceof SegmentedMemoryCache)
+        {
+            log.warn("Segment memory cache [" + className + "] is not supported, use LRUMemoryCache.");
+            segment = new LRUMemoryCache<K, V>();
+        }
+        return segment;
+    }
+
+    /**
+     * 每个分段维护自己的 map
+     */
+    @Override
+    public Map<K, MemoryElementDescriptor<K, V>> createMap()
+    {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * 用哈希值的高位选择分段，低位留给分段内的 ConcurrentHashMap，避免分段内的桶冲突
+     */
+    private AbstractMemoryCache<K, V> segmentFor(K key)
+    {
+        return segments[indexFor(key)];
+    }
+
+    private int indexFor(K key)
+    {
+        int h = key.hashCode() * 0x9e3779b9;
+        h ^= (h >>> 16);
+        return (h >>> segmentShift) & segmentMask;
+    }
+
+    /**
+     * 前缀删除和分组删除会匹配多个键，需要在所有分段中执行
+     */
+    private boolean isMultiKey(K key)
+    {
+        return (key instanceof String && ((String) key).endsWith(CacheConstants.NAME_COMPONENT_DELIMITER))
+                || (key instanceof GroupAttrName && ((GroupAttrName<?>) key).attrName == null);
+    }
+
+    @Override
+    public void update(ICacheElement<K, V> ce) throws IOException
+    {
+        segmentFor(ce.getKey()).update(ce);
+    }
+
+    /**
+     * 按分段拆分，每个分段一次批量更新
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void updateAll(Collection<ICacheElement<K, V>> ces) throws IOException
+    {
+        List<ICacheElement<K, V>>[] batches = (List<ICacheElement<K, V>>[]) new List<?>[segments.length];
+        for (ICacheElement<K, V> ce : ces)
+        {
+            int index = indexFor(ce.getKey());
+            if (batches[index] == null)
+            {
+                batches[index] = new ArrayList<ICacheElement<K, V>>();
+            }
+            batches[index].add(ce);
+        }
+        for (int i = 0; i < segments.length; i++)
+        {
+            if (batches[i] != null)
+            {
+                segments[i].updateAll(batches[i]);
+            }
+        }
+    }
+
+    @Override
+    public ICacheElement<K, V> get(K key) throws IOException
+    {
+        return segmentFor(key).get(key);
+    }
+
+    @Override
+    public ICacheElement<K, V> getQuiet(K key) throws IOException
+    {
+        return segmentFor(key).getQuiet(key);
+    }
+
+    @Override
+    public boolean remove(K key) throws IOException
+    {
+        if (isMultiKey(key))
+        {
+            boolean removed = false;
+            for (AbstractMemoryCache<K, V> segment : segments)
+            {
+                removed |= segment.remove(key);
+            }
+            return removed;
+        }
+        return segmentFor(key).remove(key);
+    }
+
+    @Override
+    public void removeAll() throws IOException
+    {
+        for (AbstractMemoryCache<K, V> segment : segments)
+        {
+            segment.removeAll();
+        }
+    }
+
+    @Override
+    public void dispose() throws IOException
+    {
+        for (AbstractMemoryCache<K, V> segment : segments)
+        {
+            segment.dispose();
+        }
+        log.info("Segmented Memory Cache dispose called.");
+    }
+
+    /**
+     * 按分段平均释放，某个分段不足时由其他分段补足
+     */
+    @Override
+    public int freeElements(int numberToFree) throws IOException
+    {
+        int freed = 0;
+        boolean progress = true;
+        while (freed < numberToFree && progress)
+        {
+            progress = false;
+            int share = Math.max(1, (numberToFree - freed) / segments.length);
+            for (AbstractMemoryCache<K, V> segment : segments)
+            {
+                int n = segment.freeElements(Math.min(share, numberToFree - freed));
+                if (n > 0)
+                {
+                    freed += n;
+                    progress = true;
+                }
+                if (freed >= numberToFree)
+                {
+                    break;
+                }
+            }
+        }
+        return freed;
+    }
+
+    @Override
+    public Set<K> getKeySet()
+    {
+        Set<K> keys = new LinkedHashSet<K>();
+        for (AbstractMemoryCache<K, V> segment : segments)
+        {
+            keys.addAll(segment.getKeySet());
+        }
+        return keys;
+    }
+
+    @Override
+    public int getSize()
+    {
+        int size = 0;
+        for (AbstractMemoryCache<K, V> segment : segments)
+        {
+            size += segment.getSize();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isTimerWheelEnabled()
+    {
+        return segments[0].isTimerWheelEnabled();
+    }
+
+    @Override
+    public List<MemoryElementDescriptor<K, V>> advanceTimerWheel(long now)
+    {
+        List<MemoryElementDescriptor<K, V>> due = new ArrayList<MemoryElementDescriptor<K, V>>();
+        for (AbstractMemoryCache<K, V> segment : segments)
+        {
+            due.addAll(segment.advanceTimerWheel(now));
+        }
+        return due;
+    }
+
+    @Override
+    public void rescheduleTimer(MemoryElementDescriptor<K, V> me)
+    {
+        ICacheElement<K, V> ce = me.getCacheElement();
+        if (ce != null)
+        {
+            segmentFor(ce.getKey()).rescheduleTimer(me);
+        }
+    }
+
+    @Override
+    public void mapProbe()
+    {
+        for (AbstractMemoryCache<K, V> segment : segments)
+        {
+            segment.mapProbe();
+        }
+    }
+
+    /**
+     * 数值型的统计项按名称在所有分段上求和
+     */
+    @Override
+    public IStats getStatistics()
+    {
+        IStats stats = new Stats();
+        stats.setTypeName("Segmented Memory Cache");
+
+        ArrayList<IStatElement<?>> elems = new ArrayList<IStatElement<?>>();
+        stats.setStatElements(elems);
+        elems.add(new StatElement<Integer>("Segments", Integer.valueOf(segments.length)));
+
+        List<String> names = new ArrayList<String>();
+        List<Long> sums = new ArrayList<Long>();
+        for (AbstractMemoryCache<K, V> segment : segments)
+        {
+            for (IStatElement<?> elem : segment.getStatistics().getStatElements())
+            {
+                Object data = elem.getData();
+                long value;
+                if (data instanceof Number)
+                {
+                    value = ((Number) data).longValue();
+                }
+                else
+                {
+                    continue;
+                }
+
+                int index = names.indexOf(elem.getName());
+                if (index < 0)
+                {
+                    names.add(elem.getName());
+                    sums.add(Long.valueOf(value));
+                }
+                else
+                {
+                    sums.set(index, Long.valueOf(sums.get(index).longValue() + value));
+                }
+            }
+        }
+
+        for (int i = 0; i < names.size(); i++)
+        {
+            elems.add(new StatElement<Long>(names.get(i), sums.get(i)));
+        }
+
+        return stats;
+    }
+}
@@ -1,5 +1,7 @@
 package com.cachekit.core.memory.shrinking;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -7,7 +9,9 @@ import org.apache.commons.logging.LogFactory;
 
 import com.cachekit.core.control.ContextCache;
 import com.cachekit.core.control.event.ElementEventType;
+import com.cachekit.core.memory.AbstractMemoryCache;
 import com.cachekit.core.memory.IMemoryCache;
+import com.cachekit.core.memory.util.MemoryElementDescriptor;
 import com.cachekit.core.model.ICacheElement;
 import com.cachekit.core.model.IElementAttributes;
 //ContextCache中的一个线程任务，负责每30s检查一次内存
@@ -59,6 +63,13 @@ public class ShrinkerThread<K, V> implements Runnable {
         }
         IMemoryCache<K, V> memCache = cache.getMemoryCache();
 
+        //内存组件维护了时间轮时，只处理到期的元素
+        if (memCache instanceof AbstractMemoryCache && ((AbstractMemoryCache<K, V>) memCache).isTimerWheelEnabled())
+        {
+            shrinkByTimerWheel((AbstractMemoryCache<K, V>) memCache);
+            return;
+        }
+
         try
         {
             Set<K> keys = memCache.getKeySet();
@@ -144,4 +155,106 @@ public class ShrinkerThread<K, V> implements Runnable {
             return;
         }
     }
+
+    /**
+     * 推进时间轮，逐个检查到期的元素：过期的删除，超过最大闲置时间的刷新到磁盘组件，
+     * 期间被访问过的按新的到期时间重新挂到时间轮上。
+     * 到期的节点已经全部从时间轮上摘除，处理某个元素出错时只跳过该元素，没有处理到的节点重新挂回时间轮
+     */
+    protected void shrinkByTimerWheel(AbstractMemoryCache<K, V> memCache)
+    {
+        long now = System.currentTimeMillis();
+        List<MemoryElementDescriptor<K, V>> due;
+        try
+        {
+            due = memCache.advanceTimerWheel(now);
+        }
+        catch (Throwable t)
+        {
+            log.info("Error occur in shrink", t);
+            return;
+        }
+
+        if (log.isDebugEnabled())
+        {
+            log.debug("Timer wheel due size: " + due.size());
+        }
+
+        int spoolCount = 0;
+        int next = 0;
+
+        try
+        {
+            while (next < due.size())
+            {
+                MemoryElementDescriptor<K, V> me = due.get(next++);
+                try
+                {
+                    if (shrinkElement(memCache, me, now, spoolCount))
+                    {
+                        spoolCount++;
+                    }
+                }
+                catch (Throwable t)
+                {
+                    log.info("Error occur in shrink", t);
+                    //留到下一次处理
+                    memCache.rescheduleTimer(me);
+                }
+            }
+        }
+        finally
+        {
+            for (; next < due.size(); next++)
+            {
+                memCache.rescheduleTimer(due.get(next));
+            }
+        }
+    }
+
+    /**
+     * 处理一个到期的元素，返回 true 表示元素被刷新到了磁盘组件
+     */
+    private boolean shrinkElement(AbstractMemoryCache<K, V> memCache, MemoryElementDescriptor<K, V> me, long now,
+            int spoolCount) throws IOException
+    {
+        ICacheElement<K, V> cacheElement = me.getCacheElement();
+
+        //元素已被删除或被新值替换，新值有自己的到期时间
+        if (cacheElement == null || memCache.getQuiet(cacheElement.getKey()) != cacheElement)
+        {
+            return false;
+        }
+
+        if (!cacheElement.getElementAttributes().getIsEternal()
+                && cache.isExpired(cacheElement, now, ElementEventType.EXCEEDED_MAXLIFE_BACKGROUND,
+                ElementEventType.EXCEEDED_IDLETIME_BACKGROUND))
+        {
+            memCache.remove(cacheElement.getKey());
+            return false;
+        }
+
+        if (maxMemoryIdleTime != -1
+                && cacheElement.getElementAttributes().getLastAccessTime() + maxMemoryIdleTime < now)
+        {
+            //超过本次最大刷盘数量，留到下一次处理
+            if (spoolLimit && spoolCount >= this.maxSpoolPerRun)
+            {
+                memCache.rescheduleTimer(me);
+                return false;
+            }
+
+            if (log.isDebugEnabled())
+            {
+                log.debug("Exceed memory idle time: " + cacheElement.getKey());
+            }
+
+            memCache.remove(cacheElement.getKey());
+            memCache.waterfal(cacheElement);
+            return true;
+        }
+
+        memCache.rescheduleTimer(me);
+        return false;
+    }
 }
@@ -0,0 +1,247 @@
+package com.cachekit.core.memory.shrinking;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cachekit.core.memory.util.MemoryElementDescriptor;
+
+/**
+ * 分层时间轮：按到期时间把内存元素挂到不同精度的桶中，约1秒、1分钟、1小时、1天各一层，
+ * 再加一个溢出桶。推进时间时只处理走过的桶，高层桶中的元素逐级下沉到低层，
+ * 到期的元素返回给调用者，因此一次推进的开销与到期的元素数量成正比。
+ * 元素的节点保存在时间轮自己的 nodes 中，描述符里不为时间轮留字段。
+ * 非线程安全，调用者需要持有内存组件的锁。
+ */
+public class TimerWheel<K, V>
+{
+	private static final int[] BUCKETS = { 64, 64, 32, 4, 1 };
+
+	//每层一个桶覆盖的毫秒数，均为2的幂
+	private static final long[] SPANS = { 1L << 10, // 1.02s
+			1L << 16, // 1.09m
+			1L << 22, // 1.17h
+			1L << 27, // 1.55d
+			BUCKETS[3] * (1L << 27), // 6.2d
+			BUCKETS[3] * (1L << 27) };
+
+	private static final long[] SHIFT = { Long.numberOfTrailingZeros(SPANS[0]), Long.numberOfTrailingZeros(SPANS[1]),
+			Long.numberOfTrailingZeros(SPANS[2]), Long.numberOfTrailingZeros(SPANS[3]),
+			Long.numberOfTrailingZeros(SPANS[4]) };
+
+	private final Node<K, V>[][] wheel;
+
+	//时间轮当前推进到的时间
+	private long time;
+
+	private int scheduled;
+
+	//元素对应的节点，deschedule 和 clear 时删除
+	private final Map<MemoryElementDescriptor<K, V>, Node<K, V>> nodes = new IdentityHashMap<MemoryElementDescriptor<K, V>, Node<K, V>>();
+
+	@SuppressWarnings("unchecked")
+	public TimerWheel(long now)
+	{
+		this.time = now;
+		this.wheel = (Node<K, V>[][]) new Node<?, ?>[BUCKETS.length][];
+		for (int i = 0; i < BUCKETS.length; i++)
+		{
+			wheel[i] = (Node<K, V>[]) new Node<?, ?>[BUCKETS[i]];
+			for (int j = 0; j < BUCKETS[i]; j++)
+			{
+				wheel[i][j] = new Node<K, V>(null);
+			}
+		}
+	}
+
+	/**
+	 * 按到期时间挂到对应的桶中，已经挂在时间轮上的节点会先被摘除
+	 */
+	public void schedule(MemoryElementDescriptor<K, V> me, long expireTime)
+	{
+		Node<K, V> node = nodes.get(me);
+		if (node == null)
+		{
+			node = new Node<K, V>(me);
+			nodes.put(me, node);
+		}
+		else if (node.isScheduled())
+		{
+			unlink(node);
+		}
+		node.expireTime = expireTime;
+		link(findBucket(expireTime), node);
+	}
+
+	/**
+	 * 从时间轮上摘除，元素离开内存组件时调用
+	 */
+	public void deschedule(MemoryElementDescriptor<K, V> me)
+	{
+		Node<K, V> node = nodes.remove(me);
+		if (node != null && node.isScheduled())
+		{
+			unlink(node);
+		}
+	}
+
+	/**
+	 * 推进到 now，返回已到期的元素，这些元素已经从时间轮上摘除
+	 */
+	public List<MemoryElementDescriptor<K, V>> advance(long now)
+	{
+		List<MemoryElementDescriptor<K, V>> expired = new ArrayList<MemoryElementDescriptor<K, V>>();
+
+		long previous = time;
+		if (now <= previous)
+		{
+			return expired;
+		}
+		time = now;
+
+		for (int i = 0; i < SHIFT.length; i++)
+		{
+			long previousTicks = previous >>> SHIFT[i];
+			long currentTicks = now >>> SHIFT[i];
+			if (currentTicks - previousTicks <= 0L)
+			{
+				break;
+			}
+			expire(i, previousTicks, currentTicks - previousTicks, expired);
+		}
+		return expired;
+	}
+
+	/**
+	 * 处理一层中走过的桶，未到期的节点重新挂到更低层的桶中
+	 */
+	private void expire(int index, long previousTicks, long delta, List<MemoryElementDescriptor<K, V>> expired)
+	{
+		Node<K, V>[] timerWheel = wheel[index];
+		int mask = timerWheel.length - 1;
+
+		int steps = (int) Math.min(1 + delta, timerWheel.length);
+		int start = (int) (previousTicks & mask);
+		int end = start + steps;
+
+		for (int i = start; i < end; i++)
+		{
+			Node<K, V> sentinel = timerWheel[i & mask];
+			Node<K, V> node = sentinel.next;
+			sentinel.prev = sentinel;
+			sentinel.next = sentinel;
+
+			while (node != sentinel)
+			{
+				Node<K, V> next = node.next;
+				node.prev = null;
+				node.next = null;
+				scheduled--;
+
+				if (node.expireTime - time > 0L)
+				{
+					link(findBucket(node.expireTime), node);
+				}
+				else
+				{
+					expired.add(node.me);
+				}
+				node = next;
+			}
+		}
+	}
+
+	private Node<K, V> findBucket(long expireTime)
+	{
+		//已经到期的节点放到当前的桶中，下次推进时处理
+		long t = Math.max(expireTime, time);
+		long duration = t - time;
+		int length = wheel.length - 1;
+		for (int i = 0; i < length; i++)
+		{
+			if (duration < SPANS[i + 1])
+			{
+				long ticks = t >>> SHIFT[i];
+				int index = (int) (ticks & (wheel[i].length - 1));
+				return wheel[i][index];
+			}
+		}
+		return wheel[length][0];
+	}
+
+	private void link(Node<K, V> sentinel, Node<K, V> node)
+	{
+		node.prev = sentinel.prev;
+		node.next = sentinel;
+		sentinel.prev.next = node;
+		sentinel.prev = node;
+		scheduled++;
+	}
+
+	private void unlink(Node<K, V> node)
+	{
+		node.prev.next = node.next;
+		node.next.prev = node.prev;
+		node.prev = null;
+		node.next = null;
+		scheduled--;
+	}
+
+	public void clear()
+	{
+		for (Node<K, V>[] timerWheel : wheel)
+		{
+			for (Node<K, V> sentinel : timerWheel)
+			{
+				Node<K, V> node = sentinel.next;
+				while (node != sentinel)
+				{
+					Node<K, V> next = node.next;
+					node.prev = null;
+					node.next = null;
+					node = next;
+				}
+				sentinel.prev = sentinel;
+				sentinel.next = sentinel;
+			}
+		}
+		nodes.clear();
+		scheduled = 0;
+	}
+
+	/**
+	 * 挂在时间轮上的元素个数
+	 */
+	public int size()
+	{
+		return scheduled;
+	}
+
+	public static final class Node<K, V>
+	{
+		private final MemoryElementDescriptor<K, V> me;
+
+		private long expireTime;
+
+		private Node<K, V> prev;
+
+		private Node<K, V> next;
+
+		Node(MemoryElementDescriptor<K, V> me)
+		{
+			this.me = me;
+			//哨兵节点自成环
+			if (me == null)
+			{
+				this.prev = this;
+				this.next = this;
+			}
+		}
+
+		boolean isScheduled()
+		{
+			return prev != null;
+		}
+	}
+}
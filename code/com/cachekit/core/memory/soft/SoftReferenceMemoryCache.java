@@ -1,6 +1,8 @@
 package com.cachekit.core.memory.soft;
 
 import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -8,7 +10,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -19,22 +21,50 @@ import com.cachekit.core.control.group.GroupAttrName;
 import com.cachekit.core.memory.AbstractMemoryCache;
 import com.cachekit.core.memory.util.MemoryElementDescriptor;
 import com.cachekit.core.memory.util.SoftReferenceElementDescriptor;
+import com.cachekit.core.memory.util.SoftReferenceElementDescriptor.ElementReference;
 import com.cachekit.core.model.ICacheElement;
 import com.cachekit.core.stats.IStatElement;
 import com.cachekit.core.stats.IStats;
 import com.cachekit.core.stats.StatElement;
 
+/**
+ * 软引用内存组件：map 中只保存元素的软引用，最近写入或访问的 MaxObjects 个元素同时保存在强引用环中，
+ * 元素离开强引用环时刷新到磁盘组件，之后可以被GC回收。被回收的软引用进入 ReferenceQueue，
+ * 写操作时分批从 map 中清理，map 的大小就是存活元素的个数。
+ */
 public class SoftReferenceMemoryCache<K, V> extends AbstractMemoryCache<K, V> {
     private static final Log log = LogFactory.getLog(SoftReferenceMemoryCache.class);
 
-    private LinkedBlockingQueue<ICacheElement<K, V>> strongReferences;
+    //每次写操作最多清理的已回收引用个数
+    private static final int DRAIN_BATCH = 64;
+
+    private ReferenceQueue<ICacheElement<K, V>> referenceQueue;
+
+    //强引用环，ringElements 持有元素，ringDescriptors 记录元素放入时对应的描述符
+    private ICacheElement<K, V>[] ringElements;
+
+    private SoftReferenceElementDescriptor<K, V>[] ringDescriptors;
+
+    //下一个写入位置的序号，位置为 ringSequence % ring.length
+    private long ringSequence;
+
+    private int strongCount;
+
+    private AtomicLong clearedCnt;
 
     @Override
+    @SuppressWarnings("unchecked")
     public synchronized void initialize(ContextCache<K, V> hub)
     {
         super.initialize(hub);
 
-        strongReferences = new LinkedBlockingQueue<ICacheElement<K, V>>();
+        int capacity = Math.max(1, getCacheAttributes().getMaxObjects());
+        referenceQueue = new ReferenceQueue<ICacheElement<K, V>>();
+        ringElements = (ICacheElement<K, V>[]) new ICacheElement<?, ?>[capacity];
+        ringDescriptors = (SoftReferenceElementDescriptor<K, V>[]) new SoftReferenceElementDescriptor<?, ?>[capacity];
+        ringSequence = 0;
+        strongCount = 0;
+        clearedCnt = new AtomicLong(0);
 
         log.info("Initialized soft reference memory cache for " + getCacheName());
     }
@@ -45,15 +75,38 @@ public class SoftReferenceMemoryCache<K, V> extends AbstractMemoryCache<K, V> {
         return new ConcurrentHashMap<K, MemoryElementDescriptor<K, V>>();
     }
 
+    /**
+     * 从 map 中删除已被回收的元素，只删除仍然映射到该描述符的条目，不需要持有 lock
+     */
+    @SuppressWarnings("unchecked")
+    private void drainClearedReferences(int max)
+    {
+        for (int i = 0; i < max; i++)
+        {
+            Reference<? extends ICacheElement<K, V>> ref = referenceQueue.poll();
+            if (ref == null)
+            {
+                break;
+            }
+
+            ElementReference<K, V> er = (ElementReference<K, V>) ref;
+            if (map.remove(er.getKey(), er.getDescriptor()))
+            {
+                clearedCnt.incrementAndGet();
+            }
+        }
+    }
+
     @Override
     public Set<K> getKeySet()
     {
+        drainClearedReferences(Integer.MAX_VALUE);
+
         Set<K> keys = new HashSet<K>();
-        //考虑软引用被删除的情况
+        //已被回收但还没有进入引用队列的元素
         for (Map.Entry<K, MemoryElementDescriptor<K, V>> e : map.entrySet())
         {
-            SoftReferenceElementDescriptor<K, V> sred = (SoftReferenceElementDescriptor<K, V>) e.getValue();
-            if (sred.getCacheElement() != null)
+            if (e.getValue().getCacheElement() != null)
             {
                 keys.add(e.getKey());
             }
@@ -64,17 +117,8 @@ public class SoftReferenceMemoryCache<K, V> extends AbstractMemoryCache<K, V> {
     @Override
     public int getSize()
     {
-        int size = 0;
-        for (MemoryElementDescriptor<K, V> me : map.values())
-        {
-            SoftReferenceElementDescriptor<K, V> sred = (SoftReferenceElementDescriptor<K, V>) me;
-
-            if (sred.getCacheElement() != null)
-            {
-                size++;
-            }
-        }
-        return size;
+        drainClearedReferences(Integer.MAX_VALUE);
+        return map.size();
     }
 
     @Override
@@ -84,9 +128,8 @@ public class SoftReferenceMemoryCache<K, V> extends AbstractMemoryCache<K, V> {
         stats.setTypeName("soft reference memory cache");
 
         List<IStatElement<?>> elems = stats.getStatElements();
-        int emptyrefs = map.size() - getSize();
-        elems.add(new StatElement<Integer>("empty references", Integer.valueOf(emptyrefs)));
-        elems.add(new StatElement<Integer>("strong references", Integer.valueOf(strongReferences.size())));
+        elems.add(new StatElement<AtomicLong>("cleared references", clearedCnt));
+        elems.add(new StatElement<Integer>("strong references", Integer.valueOf(strongCount)));
 
         return stats;
     }
@@ -113,7 +156,7 @@ public class SoftReferenceMemoryCache<K, V> extends AbstractMemoryCache<K, V> {
                     lock.lock();
                     try
                     {
-                        strongReferences.remove(entry.getValue().getCacheElement());
+                        releaseStrongReference(descriptor(entry.getValue()));
                         itr.remove();
                         removed = true;
                     }
@@ -136,7 +179,7 @@ public class SoftReferenceMemoryCache<K, V> extends AbstractMemoryCache<K, V> {
                     lock.lock();
                     try
                     {
-                        strongReferences.remove(entry.getValue().getCacheElement());
+                        releaseStrongReference(descriptor(entry.getValue()));
                         itr.remove();
                         removed = true;
                     }
@@ -155,7 +198,7 @@ public class SoftReferenceMemoryCache<K, V> extends AbstractMemoryCache<K, V> {
                 MemoryElementDescriptor<K, V> me = map.remove(key);
                 if (me != null)
                 {
-                    strongReferences.remove(me.getCacheElement());
+                    releaseStrongReference(descriptor(me));
                     removed = true;
                 }
             }
@@ -171,12 +214,25 @@ public class SoftReferenceMemoryCache<K, V> extends AbstractMemoryCache<K, V> {
     @Override
     public void removeAll() throws IOException
     {
-        super.removeAll();
-        strongReferences.clear();
+        lock.lock();
+        try
+        {
+            super.removeAll();
+            for (int i = 0; i < ringElements.length; i++)
+            {
+                ringElements[i] = null;
+                ringDescriptors[i] = null;
+            }
+            strongCount = 0;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
     /**
-     * 创建一个软引用对象，并加入强引用队列
+     * 创建一个软引用对象，并加入强引用环
      */
     @Override
     public void update(ICacheElement<K, V> ce) throws IOException
@@ -184,14 +240,19 @@ public class SoftReferenceMemoryCache<K, V> extends AbstractMemoryCache<K, V> {
         putCnt.incrementAndGet();
         ce.getElementAttributes().setLastAccessTimeNow();
 
+        drainClearedReferences(DRAIN_BATCH);
+
         lock.lock();
 
         try
         {
-            map.put(ce.getKey(), new SoftReferenceElementDescriptor<K, V>(ce));
-            //add 方法为非阻塞方法，队列满抛出异常
-            strongReferences.add(ce);
-            trimStrongReferences();
+            SoftReferenceElementDescriptor<K, V> sred = new SoftReferenceElementDescriptor<K, V>(ce, referenceQueue);
+            MemoryElementDescriptor<K, V> old = map.put(ce.getKey(), sred);
+            if (old != null)
+            {
+                releaseStrongReference(descriptor(old));
+            }
+            addStrongReference(sred, ce);
         }
         finally
         {
@@ -200,23 +261,60 @@ public class SoftReferenceMemoryCache<K, V> extends AbstractMemoryCache<K, V> {
     }
 
     /**
-     * 如果强引用队列中的元素大于 MaxObjects，需要从队列中删除元素，并刷新到磁盘组件
+     * 放入强引用环，覆盖的元素如果在环中没有更新的位置，就离开了强引用窗口，刷新到磁盘组件。
+     * 调用者必须持有 lock
+     */
+    private void addStrongReference(SoftReferenceElementDescriptor<K, V> sred, ICacheElement<K, V> ce)
+    {
+        long sequence = ringSequence++;
+        int index = (int) (sequence % ringElements.length);
+
+        ICacheElement<K, V> displaced = ringElements[index];
+        SoftReferenceElementDescriptor<K, V> displacedDescriptor = ringDescriptors[index];
+
+        ringElements[index] = ce;
+        ringDescriptors[index] = sred;
+        sred.setRingSequence(sequence);
+
+        if (displaced == null)
+        {
+            strongCount++;
+        }
+        else if (displacedDescriptor.getRingSequence() == sequence - ringElements.length
+                && map.get(displaced.getKey()) == displacedDescriptor)
+        {
+            waterfal(displaced);
+        }
+    }
+
+    /**
+     * 元素被删除或替换时清除它在环中最新的位置，较早的重复位置在被覆盖时释放，调用者必须持有 lock
      */
-    private void trimStrongReferences()
+    private void releaseStrongReference(SoftReferenceElementDescriptor<K, V> sred)
     {
-        int max = getCacheAttributes().getMaxObjects();
-        int startsize = strongReferences.size();
+        long sequence = sred.getRingSequence();
+        if (sequence < 0 || ringSequence - sequence > ringElements.length)
+        {
+            return;
+        }
 
-        for (int cursize = startsize; cursize > max; cursize--)
+        int index = (int) (sequence % ringElements.length);
+        if (ringDescriptors[index] == sred)
         {
-            //poll为非阻塞方法，队列空返回null
-            ICacheElement<K, V> ce = strongReferences.poll();
-            waterfal(ce);
+            ringElements[index] = null;
+            ringDescriptors[index] = null;
+            strongCount--;
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private SoftReferenceElementDescriptor<K, V> descriptor(MemoryElementDescriptor<K, V> me)
+    {
+        return (SoftReferenceElementDescriptor<K, V>) me;
+    }
+
     /**
-     * LRU策略，每访问一次，都需要将这个 CacheElement 重新放入到强引用队列的尾部
+     * LRU策略，每访问一次，都需要将这个 CacheElement 重新放入强引用环
      */
     @Override
     public ICacheElement<K, V> get(K key) throws IOException
@@ -226,12 +324,23 @@ public class SoftReferenceMemoryCache<K, V> extends AbstractMemoryCache<K, V> {
 
         try
         {
-            val = getQuiet(key);
-            if (val != null)
+            MemoryElementDescriptor<K, V> me = map.get(key);
+            if (me != null)
             {
-                val.getElementAttributes().setLastAccessTimeNow();
-                strongReferences.add(val);
-                trimStrongReferences();
+                val = me.getCacheElement();
+                if (val != null)
+                {
+                    val.getElementAttributes().setLastAccessTimeNow();
+                    addStrongReference(descriptor(me), val);
+                }
+                else
+                {
+                    //已被回收，不必等待引用队列
+                    if (map.remove(key, me))
+                    {
+                        clearedCnt.incrementAndGet();
+                    }
+                }
             }
         }
         finally
@@ -0,0 +1,129 @@
+package com.cachekit.core.memory.tinylfu;
+
+/**
+ * Count-Min Sketch，用来估计键的访问频率。每个计数器占4位，一个 long 存放16个计数器，
+ * 每行使用不同的种子定位计数器。累计增加次数达到采样上限后，所有计数器减半（老化），
+ * 使过去的热点逐渐让位于新的热点。非线程安全，调用者需要持有缓存的锁。
+ */
+public class FrequencySketch
+{
+	private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+			0xcbf29ce484222325L };
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	//4位计数器的上限
+	private static final int MAX_COUNT = 15;
+
+	private final long[] table;
+
+	private final int tableMask;
+
+	private final int sampleSize;
+
+	private int additions;
+
+	private long resetCnt;
+
+	public FrequencySketch(int maxObjects)
+	{
+		int capacity = Math.max(maxObjects, 16);
+		int size = 1;
+		while (size < capacity)
+		{
+			size <<= 1;
+		}
+		this.table = new long[size];
+		this.tableMask = size - 1;
+		this.sampleSize = capacity * 10;
+	}
+
+	/**
+	 * 估计键的访问频率，取各行计数器的最小值
+	 */
+	public int frequency(Object key)
+	{
+		int hash = spread(key.hashCode());
+		int frequency = MAX_COUNT;
+		for (int i = 0; i < SEEDS.length; i++)
+		{
+			int index = indexOf(hash, i);
+			int offset = offsetOf(hash, i);
+			int count = (int) ((table[index] >>> offset) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	/**
+	 * 增加键的访问频率，达到采样上限后执行老化
+	 */
+	public void increment(Object key)
+	{
+		int hash = spread(key.hashCode());
+		boolean added = false;
+		for (int i = 0; i < SEEDS.length; i++)
+		{
+			int index = indexOf(hash, i);
+			int offset = offsetOf(hash, i);
+			long mask = 0xfL << offset;
+			if ((table[index] & mask) != mask)
+			{
+				table[index] += 1L << offset;
+				added = true;
+			}
+		}
+
+		if (added && ++additions >= sampleSize)
+		{
+			reset();
+		}
+	}
+
+	/**
+	 * 所有计数器减半
+	 */
+	private void reset()
+	{
+		for (int i = 0; i < table.length; i++)
+		{
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		additions = additions >>> 1;
+		resetCnt++;
+	}
+
+	public void clear()
+	{
+		for (int i = 0; i < table.length; i++)
+		{
+			table[i] = 0L;
+		}
+		additions = 0;
+	}
+
+	public long getResetCount()
+	{
+		return resetCnt;
+	}
+
+	private int indexOf(int hash, int i)
+	{
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += h >>> 32;
+		return ((int) h) & tableMask;
+	}
+
+	private int offsetOf(int hash, int i)
+	{
+		//每个 long 有16个计数器，每行在其中选一个
+		return (((hash >>> (i << 3)) & 0x3) + (i << 2)) << 2;
+	}
+
+	private static int spread(int x)
+	{
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+}
@@ -0,0 +1,35 @@
+package com.cachekit.core.memory.tinylfu;
+
+import com.cachekit.core.memory.util.MemoryElementDescriptor;
+import com.cachekit.core.model.ICacheElement;
+
+/**
+ * 记录元素当前所在的队列：准入窗口、试用区或保护区
+ */
+public class TinyLfuElementDescriptor<K, V> extends MemoryElementDescriptor<K, V>
+{
+	private static final long serialVersionUID = 1L;
+
+	public static final int WINDOW = 0;
+
+	public static final int PROBATION = 1;
+
+	public static final int PROTECTED = 2;
+
+	private int queue = WINDOW;
+
+	public TinyLfuElementDescriptor(ICacheElement<K, V> ce)
+	{
+		super(ce);
+	}
+
+	public int getQueue()
+	{
+		return queue;
+	}
+
+	public void setQueue(int queue)
+	{
+		this.queue = queue;
+	}
+}
@@ -0,0 +1,531 @@
+package com.cachekit.core.memory.tinylfu;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.cachekit.core.CacheConstants;
+import com.cachekit.core.control.ContextCache;
+import com.cachekit.core.control.group.GroupAttrName;
+import com.cachekit.core.memory.AbstractMemoryCache;
+import com.cachekit.core.memory.util.MemoryElementDescriptor;
+import com.cachekit.core.memory.util.ReadBuffer;
+import com.cachekit.core.model.ICacheElement;
+import com.cachekit.core.stats.IStatElement;
+import com.cachekit.core.stats.IStats;
+import com.cachekit.core.stats.StatElement;
+import com.cachekit.utils.struct.DoubleLinkedList;
+
+/**
+ * W-TinyLFU：新元素先进入很小的准入窗口（LRU），被挤出窗口后与主区的淘汰候选比较访问频率，
+ * 频率更高的一方留在主区。主区是分段LRU，分为试用区和保护区，试用区中再次被访问的元素晋升到保护区。
+ * 被淘汰或被拒绝的元素都会刷新到磁盘组件。
+ * get 不加锁，命中和未命中分别记录到读缓冲，由下一个持有锁的线程批量累加频率并调整队列。
+ */
+public class TinyLfuMemoryCache<K, V> extends AbstractMemoryCache<K, V>
+{
+    private static final Log log = LogFactory.getLog(TinyLfuMemoryCache.class);
+
+    //准入窗口占总容量的百分比
+    private static final int WINDOW_PERCENT = 1;
+
+    //保护区占主区的百分比
+    private static final int PROTECTED_PERCENT = 80;
+
+    private DoubleLinkedList<TinyLfuElementDescriptor<K, V>> window;
+
+    private DoubleLinkedList<TinyLfuElementDescriptor<K, V>> probation;
+
+    private DoubleLinkedList<TinyLfuElementDescriptor<K, V>> protectedList;
+
+    private FrequencySketch sketch;
+
+    private int windowMax;
+
+    private int mainMax;
+
+    private int protectedMax;
+
+    private AtomicLong evictCnt;
+
+    private AtomicLong rejectCnt;
+
+    //命中的节点
+    private ReadBuffer<TinyLfuElementDescriptor<K, V>> hitBuffer;
+
+    //未命中的 key，同样计入频率，作为之后准入的依据
+    private ReadBuffer<K> missBuffer;
+
+    private final ReadBuffer.Processor<TinyLfuElementDescriptor<K, V>> hitProcessor = new ReadBuffer.Processor<TinyLfuElementDescriptor<K, V>>()
+    {
+        @Override
+        public void process(TinyLfuElementDescriptor<K, V> node)
+        {
+            K key = node.getCacheElement().getKey();
+            sketch.increment(key);
+            //记录之后元素可能已被删除或替换，此时不再调整队列
+            if (map.get(key) == node)
+            {
+                onHit(node);
+            }
+        }
+    };
+
+    private final ReadBuffer.Processor<K> missProcessor = new ReadBuffer.Processor<K>()
+    {
+        @Override
+        public void process(K key)
+        {
+            sketch.increment(key);
+        }
+    };
+
+    @Override
+    public void initialize(ContextCache<K, V> hub)
+    {
+        super.initialize(hub);
+
+        window = new DoubleLinkedList<TinyLfuElementDescriptor<K, V>>();
+        probation = new DoubleLinkedList<TinyLfuElementDescriptor<K, V>>();
+        protectedList = new DoubleLinkedList<TinyLfuElementDescriptor<K, V>>();
+
+        int maxObjects = getCacheAttributes().getMaxObjects();
+        windowMax = Math.max(1, maxObjects * WINDOW_PERCENT / 100);
+        mainMax = Math.max(0, maxObjects - windowMax);
+        protectedMax = mainMax * PROTECTED_PERCENT / 100;
+
+        sketch = new FrequencySketch(maxObjects);
+
+        evictCnt = new AtomicLong(0);
+        rejectCnt = new AtomicLong(0);
+
+        hitBuffer = new ReadBuffer<TinyLfuElementDescriptor<K, V>>();
+        missBuffer = new ReadBuffer<K>();
+
+        log.info("Initialize TinyLfuMemoryCache for " + getCacheName() + ", window: " + windowMax + ", main: "
+                + mainMax + ", protected: " + protectedMax);
+    }
+
+    @Override
+    public ConcurrentMap<K, MemoryElementDescriptor<K, V>> createMap()
+    {
+        return new ConcurrentHashMap<K, MemoryElementDescriptor<K, V>>();
+    }
+
+    @Override
+    protected boolean supportsTimerWheel()
+    {
+        return true;
+    }
+
+    @Override
+    public void update(ICacheElement<K, V> ce) throws IOException
+    {
+        putCnt.incrementAndGet();
+
+        long weight = weigh(ce);
+
+        lock.lock();
+        try
+        {
+            drainReadBuffers();
+
+            final K key = ce.getKey();
+            sketch.increment(key);
+
+            TinyLfuElementDescriptor<K, V> newNode = new TinyLfuElementDescriptor<K, V>(ce);
+            entryAdded(newNode, weight);
+            MemoryElementDescriptor<K, V> oldNode = map.put(key, newNode);
+            if (oldNode != null)
+            {
+                unlink(descriptor(oldNode));
+                entryRemoved(oldNode);
+            }
+
+            newNode.setQueue(TinyLfuElementDescriptor.WINDOW);
+            window.addFirst(newNode);
+
+            evictIfNeeded();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public ICacheElement<K, V> get(K key) throws IOException
+    {
+        if (log.isDebugEnabled())
+        {
+            log.debug(getCacheName() + ": get item for key " + key);
+        }
+
+        ICacheElement<K, V> ce = null;
+
+        MemoryElementDescriptor<K, V> me = map.get(key);
+
+        //只记录访问，积压较多时由抢到锁的线程回放
+        boolean drain = me != null ? hitBuffer.record(descriptor(me)) : missBuffer.record(key);
+        if (drain && lock.tryLock())
+        {
+            try
+            {
+                drainReadBuffers();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        if (me != null)
+        {
+            hitCnt.incrementAndGet();
+            ce = me.getCacheElement();
+
+            if (log.isDebugEnabled())
+            {
+                log.debug(getCacheName() + ": TinyLfuMemoryCache hit for " + key);
+            }
+        }
+        else
+        {
+            missCnt.incrementAndGet();
+
+            if (log.isDebugEnabled())
+            {
+                log.debug(getCacheName() + ": TinyLfuMemoryCache miss for " + key);
+            }
+        }
+
+        return ce;
+    }
+
+    /**
+     * 将读缓冲中记录的访问回放到频率统计和队列，调用者必须持有 lock
+     */
+    private void drainReadBuffers()
+    {
+        hitBuffer.drain(hitProcessor);
+        missBuffer.drain(missProcessor);
+    }
+
+    /**
+     * 窗口和保护区内移到头部，试用区的元素晋升到保护区，保护区溢出的元素降级到试用区
+     */
+    private void onHit(TinyLfuElementDescriptor<K, V> node)
+    {
+        switch (node.getQueue())
+        {
+            case TinyLfuElementDescriptor.WINDOW:
+                window.makeFirst(node);
+                break;
+
+            case TinyLfuElementDescriptor.PROBATION:
+                probation.remove(node);
+                node.setQueue(TinyLfuElementDescriptor.PROTECTED);
+                protectedList.addFirst(node);
+
+                while (protectedList.size() > protectedMax)
+                {
+                    TinyLfuElementDescriptor<K, V> demoted = protectedList.getLast();
+                    protectedList.remove(demoted);
+                    demoted.setQueue(TinyLfuElementDescriptor.PROBATION);
+                    probation.addFirst(demoted);
+                }
+                break;
+
+            default:
+                protectedList.makeFirst(node);
+                break;
+        }
+    }
+
+    /**
+     * 窗口溢出的元素作为候选者，与试用区末尾的元素比较频率，频率低的一方被刷新到磁盘组件
+     */
+    private void evictIfNeeded()
+    {
+        while (window.size() > windowMax)
+        {
+            TinyLfuElementDescriptor<K, V> candidate = window.getLast();
+            window.remove(candidate);
+
+            if (probation.size() + protectedList.size() < mainMax)
+            {
+                candidate.setQueue(TinyLfuElementDescriptor.PROBATION);
+                probation.addFirst(candidate);
+                continue;
+            }
+
+            TinyLfuElementDescriptor<K, V> victim = probation.getLast();
+            if (victim == null)
+            {
+                victim = protectedList.getLast();
+            }
+
+            if (victim == null)
+            {
+                candidate.setQueue(TinyLfuElementDescriptor.PROBATION);
+                probation.addFirst(candidate);
+            }
+            else if (sketch.frequency(candidate.getCacheElement().getKey()) > sketch
+                    .frequency(victim.getCacheElement().getKey()))
+            {
+                evict(victim);
+                candidate.setQueue(TinyLfuElementDescriptor.PROBATION);
+                probation.addFirst(candidate);
+            }
+            else
+            {
+                rejectCnt.incrementAndGet();
+                spool(candidate);
+            }
+        }
+
+        //容量过小时主区可能为空，保证总数不超过 MaxObjects；按字节数限制时一直淘汰到低于上限
+        while (map.size() > getCacheAttributes().getMaxObjects() || isOverWeight())
+        {
+            if (evictLast() == null)
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 依次从试用区、窗口、保护区的末尾淘汰一个元素
+     */
+    private ICacheElement<K, V> evictLast()
+    {
+        TinyLfuElementDescriptor<K, V> victim = probation.getLast();
+        if (victim == null)
+        {
+            victim = window.getLast();
+        }
+        if (victim == null)
+        {
+            victim = protectedList.getLast();
+        }
+        if (victim == null)
+        {
+            return null;
+        }
+        evict(victim);
+        return victim.getCacheElement();
+    }
+
+    private void evict(TinyLfuElementDescriptor<K, V> node)
+    {
+        unlink(node);
+        evictCnt.incrementAndGet();
+        spool(node);
+    }
+
+    /**
+     * 从 map 中删除并刷新到磁盘组件，调用前节点已经从队列中摘除
+     */
+    private void spool(TinyLfuElementDescriptor<K, V> node)
+    {
+        ICacheElement<K, V> ce = node.getCacheElement();
+
+        if (map.remove(ce.getKey(), node))
+        {
+            entryRemoved(node);
+        }
+        else
+        {
+            log.warn("Evict: remove failed for key: " + ce.getKey());
+        }
+
+        if (log.isDebugEnabled())
+        {
+            log.debug(getCacheName() + ": spool element, key: " + ce.getKey());
+        }
+
+        waterfal(ce);
+    }
+
+    private void unlink(TinyLfuElementDescriptor<K, V> node)
+    {
+        switch (node.getQueue())
+        {
+            case TinyLfuElementDescriptor.WINDOW:
+                window.remove(node);
+                break;
+
+            case TinyLfuElementDescriptor.PROBATION:
+                probation.remove(node);
+                break;
+
+            default:
+                protectedList.remove(node);
+                break;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private TinyLfuElementDescriptor<K, V> descriptor(MemoryElementDescriptor<K, V> me)
+    {
+        return (TinyLfuElementDescriptor<K, V>) me;
+    }
+
+    @Override
+    public int freeElements(int numberToFree) throws IOException
+    {
+        int freed = 0;
+
+        lock.lock();
+        try
+        {
+            drainReadBuffers();
+            for (; freed < numberToFree; freed++)
+            {
+                if (evictLast() == null)
+                {
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        return freed;
+    }
+
+    @Override
+    public boolean remove(K key) throws IOException
+    {
+        if (log.isDebugEnabled())
+        {
+            log.debug("Remove item for key: " + key);
+        }
+
+        boolean removed = false;
+
+        if (key instanceof String && ((String) key).endsWith(CacheConstants.NAME_COMPONENT_DELIMITER))
+        {
+            for (Iterator<Map.Entry<K, MemoryElementDescriptor<K, V>>> itr = map.entrySet().iterator(); itr.hasNext(); )
+            {
+                Map.Entry<K, MemoryElementDescriptor<K, V>> entry = itr.next();
+                K k = entry.getKey();
+
+                if (k instanceof String && ((String) k).startsWith(key.toString()))
+                {
+                    removed |= removeEntry(k, entry.getValue());
+                }
+            }
+        }
+        else if (key instanceof GroupAttrName && ((GroupAttrName<?>) key).attrName == null)
+        {
+            for (Iterator<Map.Entry<K, MemoryElementDescriptor<K, V>>> itr = map.entrySet().iterator(); itr.hasNext(); )
+            {
+                Map.Entry<K, MemoryElementDescriptor<K, V>> entry = itr.next();
+                K k = entry.getKey();
+
+                if (k instanceof GroupAttrName && ((GroupAttrName<?>) k).groupId.equals(((GroupAttrName<?>) key).groupId))
+                {
+                    removed |= removeEntry(k, entry.getValue());
+                }
+            }
+        }
+        else
+        {
+            lock.lock();
+            try
+            {
+                MemoryElementDescriptor<K, V> me = map.remove(key);
+                if (me != null)
+                {
+                    unlink(descriptor(me));
+                    entryRemoved(me);
+                    removed = true;
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        return removed;
+    }
+
+    private boolean removeEntry(K key, MemoryElementDescriptor<K, V> me)
+    {
+        lock.lock();
+        try
+        {
+            if (map.remove(key, me))
+            {
+                unlink(descriptor(me));
+                entryRemoved(me);
+                return true;
+            }
+            return false;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() throws IOException
+    {
+        lock.lock();
+        try
+        {
+            drainReadBuffers();
+            window.removeAll();
+            probation.removeAll();
+            protectedList.removeAll();
+            map.clear();
+            allEntriesRemoved();
+            sketch.clear();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<K> getKeySet()
+    {
+        return new LinkedHashSet<K>(map.keySet());
+    }
+
+    @Override
+    public IStats getStatistics()
+    {
+        IStats stats = super.getStatistics();
+        stats.setTypeName("TinyLfu Memory Cache");
+
+        List<IStatElement<?>> elems = stats.getStatElements();
+        elems.add(new StatElement<Integer>("Window Size", Integer.valueOf(window.size())));
+        elems.add(new StatElement<Integer>("Probation Size", Integer.valueOf(probation.size())));
+        elems.add(new StatElement<Integer>("Protected Size", Integer.valueOf(protectedList.size())));
+        elems.add(new StatElement<AtomicLong>("Evict Count", evictCnt));
+        elems.add(new StatElement<AtomicLong>("Reject Count", rejectCnt));
+        elems.add(new StatElement<Long>("Sketch Reset Count", Long.valueOf(sketch.getResetCount())));
+        elems.add(new StatElement<Long>("Read Buffer Drained",
+                Long.valueOf(hitBuffer.getDrainedCount() + missBuffer.getDrainedCount())));
+        elems.add(new StatElement<Long>("Read Buffer Dropped",
+                Long.valueOf(hitBuffer.getDroppedCount() + missBuffer.getDroppedCount())));
+
+        return stats;
+    }
+}
@@ -0,0 +1,302 @@
+package com.cachekit.core.memory.util;
+
+import java.io.ObjectStreamException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cachekit.core.CacheElement;
+import com.cachekit.core.ElementAttributes;
+import com.cachekit.core.control.event.IElementEventHandler;
+import com.cachekit.core.model.ICacheElement;
+import com.cachekit.core.model.IElementAttributes;
+
+/**
+ * 紧凑的内存元素：描述符本身就是 ICacheElement 和 IElementAttributes，直接保存键、值、创建时间和最近访问时间，
+ * 其余属性引用区域共享的模板。修改模板中的属性时先复制一份私有的属性（写时复制），模板本身不会被修改。
+ * 与区域默认属性相同的元素每个只占一个描述符对象，省去了 CacheElement 和 ElementAttributes。
+ * 序列化（刷新到磁盘、发送到其他节点）时替换为普通的 CacheElement。
+ */
+public class CompactElementDescriptor<K, V> extends MemoryElementDescriptor<K, V>
+		implements ICacheElement<K, V>, IElementAttributes
+{
+	private static final long serialVersionUID = 1L;
+
+	private final String cacheName;
+
+	private final K key;
+
+	private final V val;
+
+	//区域共享的模板，或者写时复制出的私有属性
+	private IElementAttributes attributes;
+
+	private final IElementAttributes template;
+
+	private long createTime;
+
+	private long lastAccessTime;
+
+	public CompactElementDescriptor(ICacheElement<K, V> ce, IElementAttributes template)
+	{
+		super(null);
+		this.cacheName = ce.getCacheName();
+		this.key = ce.getKey();
+		this.val = ce.getVal();
+		this.template = template;
+		this.attributes = template;
+		this.createTime = ce.getElementAttributes().getCreateTime();
+		this.lastAccessTime = ce.getElementAttributes().getLastAccessTime();
+	}
+
+	/**
+	 * 元素的属性除时间戳外都与模板相同，且没有事件处理器时才能共享模板
+	 */
+	public static boolean isCompatible(IElementAttributes attr, IElementAttributes template)
+	{
+		if (attr == null || template == null)
+		{
+			return false;
+		}
+		List<IElementEventHandler> handlers = attr.getElementEventHandlers();
+		return (handlers == null || handlers.isEmpty())
+				&& attr.getMaxLife() == template.getMaxLife()
+				&& attr.getIdleTime() == template.getIdleTime()
+				&& attr.getSize() == template.getSize()
+				&& attr.getCost() == template.getCost()
+				&& attr.getIsSpool() == template.getIsSpool()
+				&& attr.getIsLateral() == template.getIsLateral()
+				&& attr.getIsRemote() == template.getIsRemote()
+				&& attr.getIsEternal() == template.getIsEternal()
+				&& attr.getTimeFactorForMilliseconds() == template.getTimeFactorForMilliseconds();
+	}
+
+	@Override
+	public ICacheElement<K, V> getCacheElement()
+	{
+		return this;
+	}
+
+	@Override
+	public String getCacheName()
+	{
+		return cacheName;
+	}
+
+	@Override
+	public K getKey()
+	{
+		return key;
+	}
+
+	@Override
+	public V getVal()
+	{
+		return val;
+	}
+
+	@Override
+	public IElementAttributes getElementAttributes()
+	{
+		return this;
+	}
+
+	@Override
+	public void setElementAttributes(IElementAttributes attr)
+	{
+		this.attributes = attr;
+		this.createTime = attr.getCreateTime();
+		this.lastAccessTime = attr.getLastAccessTime();
+	}
+
+	/**
+	 * 修改属性前从模板复制一份私有的属性
+	 */
+	private IElementAttributes ownAttributes()
+	{
+		if (attributes == template)
+		{
+			attributes = template.clone();
+		}
+		return attributes;
+	}
+
+	@Override
+	public void setMaxLife(long mls)
+	{
+		ownAttributes().setMaxLife(mls);
+	}
+
+	@Override
+	public long getMaxLife()
+	{
+		return attributes.getMaxLife();
+	}
+
+	@Override
+	public void setIdleTime(long idle)
+	{
+		ownAttributes().setIdleTime(idle);
+	}
+
+	@Override
+	public long getIdleTime()
+	{
+		return attributes.getIdleTime();
+	}
+
+	@Override
+	public void setSize(int size)
+	{
+		ownAttributes().setSize(size);
+	}
+
+	@Override
+	public int getSize()
+	{
+		return attributes.getSize();
+	}
+
+	@Override
+	public void setCost(long cost)
+	{
+		ownAttributes().setCost(cost);
+	}
+
+	@Override
+	public long getCost()
+	{
+		return attributes.getCost();
+	}
+
+	@Override
+	public long getCreateTime()
+	{
+		return createTime;
+	}
+
+	@Override
+	public long getLastAccessTime()
+	{
+		return lastAccessTime;
+	}
+
+	@Override
+	public void setLastAccessTimeNow()
+	{
+		this.lastAccessTime = System.currentTimeMillis();
+	}
+
+	@Override
+	public long getTimeToLiveSeconds()
+	{
+		final long now = System.currentTimeMillis();
+		return (createTime + getMaxLife() * getTimeFactorForMilliseconds() - now) / 1000;
+	}
+
+	@Override
+	public boolean getIsSpool()
+	{
+		return attributes.getIsSpool();
+	}
+
+	@Override
+	public void setIsSpool(boolean val)
+	{
+		ownAttributes().setIsSpool(val);
+	}
+
+	@Override
+	public boolean getIsLateral()
+	{
+		return attributes.getIsLateral();
+	}
+
+	@Override
+	public void setIsLateral(boolean val)
+	{
+		ownAttributes().setIsLateral(val);
+	}
+
+	@Override
+	public boolean getIsRemote()
+	{
+		return attributes.getIsRemote();
+	}
+
+	@Override
+	public void setIsRemote(boolean val)
+	{
+		ownAttributes().setIsRemote(val);
+	}
+
+	@Override
+	public boolean getIsEternal()
+	{
+		return attributes.getIsEternal();
+	}
+
+	@Override
+	public void setIsEternal(boolean val)
+	{
+		ownAttributes().setIsEternal(val);
+	}
+
+	@Override
+	public void addElementEventHandler(IElementEventHandler eventHandler)
+	{
+		ownAttributes().addElementEventHandler(eventHandler);
+	}
+
+	@Override
+	public ArrayList<IElementEventHandler> getElementEventHandlers()
+	{
+		return attributes.getElementEventHandlers();
+	}
+
+	@Override
+	public void addElementEventHandlers(List<IElementEventHandler> eventHandlers)
+	{
+		ownAttributes().addElementEventHandlers(eventHandlers);
+	}
+
+	@Override
+	public long getTimeFactorForMilliseconds()
+	{
+		return attributes.getTimeFactorForMilliseconds();
+	}
+
+	@Override
+	public void setTimeFactorForMilliseconds(long factor)
+	{
+		ownAttributes().setTimeFactorForMilliseconds(factor);
+	}
+
+	/**
+	 * 返回独立的属性对象，带有本元素的时间戳
+	 */
+	@Override
+	public IElementAttributes clone()
+	{
+		IElementAttributes attr = attributes.clone();
+		if (attr instanceof ElementAttributes)
+		{
+			((ElementAttributes) attr).setCreateTime(createTime);
+			((ElementAttributes) attr).setLastAccessTime(lastAccessTime);
+		}
+		return attr;
+	}
+
+	/**
+	 * 序列化时不能带上链表指针，替换为普通的 CacheElement
+	 */
+	protected Object writeReplace() throws ObjectStreamException
+	{
+		return new CacheElement<K, V>(cacheName, key, val, clone());
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[CompactElement: cacheName [" + cacheName + "], key [" + key + "], val [" + val + "]]";
+	}
+}
@@ -0,0 +1,41 @@
+package com.cachekit.core.memory.util;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.cachekit.core.memory.IElementWeigher;
+import com.cachekit.core.model.ICacheElement;
+import com.cachekit.core.model.IElementSerializer;
+import com.cachekit.utils.serialization.StandardSerializer;
+
+/**
+ * 优先使用元素属性中的 Size，未设置时以序列化后的长度作为权重
+ */
+public class DefaultElementWeigher<K, V> implements IElementWeigher<K, V>
+{
+    private static final Log log = LogFactory.getLog(DefaultElementWeigher.class);
+
+    private final IElementSerializer serializer = new StandardSerializer();
+
+    @Override
+    public long weigh(ICacheElement<K, V> ce)
+    {
+        int size = ce.getElementAttributes().getSize();
+        if (size > 0)
+        {
+            return size;
+        }
+
+        try
+        {
+            return serializer.serialize(ce).length;
+        }
+        catch (IOException e)
+        {
+            log.warn("Fail to weigh element " + ce.getKey(), e);
+            return 0;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.cachekit.core.model.ICacheElement;
 import com.cachekit.utils.struct.DoubleLinkedListNode;
 
 //Linux系统有文件描述符，简称fd，MemoryElementDescriptor与之类似，简称为ed。
+//权重和时间轮节点由内存组件和时间轮另外保存，不开启这两个功能时每个元素不为它们付出空间
 public class MemoryElementDescriptor<K, V> extends DoubleLinkedListNode<ICacheElement<K, V>> {
 
     private static final long serialVersionUID = 1L;
@@ -0,0 +1,142 @@
+package com.cachekit.core.memory.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 分段的有损读缓冲区：命中时只把被访问的节点追加到当前线程对应的段中，
+ * 由下一个持有锁的线程批量回放到链表。段满时直接丢弃记录，访问顺序只是近似的。
+ */
+public class ReadBuffer<E>
+{
+	//每段的容量，必须是2的幂
+	private static final int BUFFER_SIZE = 32;
+
+	private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+	//段中积压的记录达到该值时，提示调用者尝试回放
+	private static final int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+
+	private final Stripe<E>[] stripes;
+
+	private final int stripeMask;
+
+	//只在持有锁时修改
+	private volatile long drainedCnt = 0;
+
+	private final AtomicLong droppedCnt = new AtomicLong(0);
+
+	public interface Processor<E>
+	{
+		void process(E e);
+	}
+
+	@SuppressWarnings("unchecked")
+	public ReadBuffer()
+	{
+		int count = ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors() * 2);
+		this.stripes = (Stripe<E>[]) new Stripe<?>[count];
+		for (int i = 0; i < count; i++)
+		{
+			stripes[i] = new Stripe<E>();
+		}
+		this.stripeMask = count - 1;
+	}
+
+	/**
+	 * 记录一次访问，返回 true 表示该段已积压较多记录，调用者应尝试回放
+	 */
+	public boolean record(E e)
+	{
+		Stripe<E> stripe = stripes[probe() & stripeMask];
+
+		long writeIdx = stripe.writeCnt.get();
+		long pending = writeIdx - stripe.readCnt;
+		if (pending >= BUFFER_SIZE)
+		{
+			droppedCnt.incrementAndGet();
+			return true;
+		}
+
+		if (stripe.writeCnt.compareAndSet(writeIdx, writeIdx + 1))
+		{
+			stripe.buffer.lazySet((int) (writeIdx & BUFFER_MASK), e);
+		}
+		else
+		{
+			//与其他线程竞争失败，放弃这次记录
+			droppedCnt.incrementAndGet();
+		}
+
+		return pending + 1 >= DRAIN_THRESHOLD;
+	}
+
+	/**
+	 * 回放所有段中的记录，调用者必须持有缓存的锁
+	 */
+	public int drain(Processor<E> processor)
+	{
+		int drained = 0;
+		for (Stripe<E> stripe : stripes)
+		{
+			long readIdx = stripe.readCnt;
+			long writeIdx = stripe.writeCnt.get();
+
+			for (; readIdx < writeIdx; readIdx++)
+			{
+				int index = (int) (readIdx & BUFFER_MASK);
+				E e = stripe.buffer.get(index);
+				//写线程已占位但尚未发布，留到下次回放
+				if (e == null)
+				{
+					break;
+				}
+				stripe.buffer.lazySet(index, null);
+				processor.process(e);
+				drained++;
+			}
+			stripe.readCnt = readIdx;
+		}
+		drainedCnt += drained;
+		return drained;
+	}
+
+	public long getDrainedCount()
+	{
+		return drainedCnt;
+	}
+
+	public long getDroppedCount()
+	{
+		return droppedCnt.get();
+	}
+
+	private static int probe()
+	{
+		long id = Thread.currentThread().getId();
+		int h = (int) (id ^ (id >>> 32));
+		h ^= (h >>> 16);
+		h *= 0x45d9f3b;
+		return h ^ (h >>> 16);
+	}
+
+	private static int ceilingPowerOfTwo(int x)
+	{
+		int n = 1;
+		while (n < x)
+		{
+			n <<= 1;
+		}
+		return n;
+	}
+
+	private static final class Stripe<E>
+	{
+		final AtomicLong writeCnt = new AtomicLong(0);
+
+		//只在持有锁时修改
+		volatile long readCnt = 0;
+
+		final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<E>(BUFFER_SIZE);
+	}
+}
@@ -1,5 +1,6 @@
 package com.cachekit.core.memory.util;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 
 import com.cachekit.core.model.ICacheElement;
@@ -9,12 +10,23 @@ public class SoftReferenceElementDescriptor<K, V> extends MemoryElementDescripto
 
 	private static final long serialVersionUID = 1L;
 
-	private final SoftReference<ICacheElement<K, V>> srce;
+	private final ElementReference<K, V> srce;
+
+	//元素最近一次放入强引用环的序号，-1 表示从未放入
+	private transient long ringSequence = -1;
 
 	public SoftReferenceElementDescriptor(ICacheElement<K, V> ce)
+	{
+		this(ce, null);
+	}
+
+	/**
+	 * 软引用被回收后会被放入 queue，由内存组件从 map 中删除
+	 */
+	public SoftReferenceElementDescriptor(ICacheElement<K, V> ce, ReferenceQueue<ICacheElement<K, V>> queue)
 	{
 		super(null);
-		this.srce = new SoftReference<ICacheElement<K, V>>(ce);
+		this.srce = new ElementReference<K, V>(ce, queue, this);
 	}
 
 	@Override
@@ -26,4 +38,42 @@ public class SoftReferenceElementDescriptor<K, V> extends MemoryElementDescripto
 		}
 		return null;
 	}
+
+	public long getRingSequence()
+	{
+		return ringSequence;
+	}
+
+	public void setRingSequence(long ringSequence)
+	{
+		this.ringSequence = ringSequence;
+	}
+
+	/**
+	 * 记住键和描述符，回收后不需要引用对象就能找到 map 中的条目
+	 */
+	public static class ElementReference<K, V> extends SoftReference<ICacheElement<K, V>>
+	{
+		private final K key;
+
+		private final SoftReferenceElementDescriptor<K, V> descriptor;
+
+		ElementReference(ICacheElement<K, V> ce, ReferenceQueue<ICacheElement<K, V>> queue,
+				SoftReferenceElementDescriptor<K, V> descriptor)
+		{
+			super(ce, queue);
+			this.key = ce.getKey();
+			this.descriptor = descriptor;
+		}
+
+		public K getKey()
+		{
+			return key;
+		}
+
+		public SoftReferenceElementDescriptor<K, V> getDescriptor()
+		{
+			return descriptor;
+		}
+	}
 }
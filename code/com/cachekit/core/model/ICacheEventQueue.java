@@ -1,6 +1,7 @@
 package com.cachekit.core.model;
 
 import java.io.IOException;
+import java.util.List;
 
 import com.cachekit.core.stats.IStats;
 
@@ -18,6 +19,8 @@ public interface ICacheEventQueue<K, V>
 
 	void addPutEvent(ICacheElement<K, V> ce) throws IOException;
 
+	void addPutAllEvent(List<ICacheElement<K, V>> ces) throws IOException;
+
 	void addRemoveEvent(K key) throws IOException;
 
 	void addRemoveAllEvent() throws IOException;
@@ -26,6 +29,11 @@ public interface ICacheEventQueue<K, V>
 
 	long getListenerId();
 
+	/**
+	 * 单线程队列把队首连续的 put 事件合并为一次批量处理，最多合并 maxPutBatchSize 个，小于等于 1 时不合并
+	 */
+	void setMaxPutBatchSize(int maxPutBatchSize);
+
 	void destroy();
 
 	boolean isAlive();
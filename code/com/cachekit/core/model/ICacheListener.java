@@ -1,11 +1,14 @@
 package com.cachekit.core.model;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface ICacheListener<K, V>
 {
 	void handlePut(ICacheElement<K, V> item) throws IOException;
 
+	void handlePutAll(List<ICacheElement<K, V>> items) throws IOException;
+
 	void handleRemove(String cacheName, K key) throws IOException;
 
 	void handleRemoveAll(String cacheName) throws IOException;
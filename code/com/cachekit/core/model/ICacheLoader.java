@@ -0,0 +1,16 @@
+package com.cachekit.core.model;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 区域的数据加载器：所有组件都未命中时从数据源加载，加载结果写回缓存
+ */
+public interface ICacheLoader<K, V>
+{
+	//数据源中不存在时返回 null
+	V load(K key) throws Exception;
+
+	//返回的 map 只包含数据源中存在的键
+	Map<K, V> loadAll(Set<K> keys) throws Exception;
+}
@@ -12,7 +12,9 @@ public interface ICacheType
 
 		REMOTE_CACHE,
 
-		PAXOS_CACHE
+		PAXOS_CACHE,
+
+		WRITER_CACHE
 	}
 
 	CacheType getCacheType();
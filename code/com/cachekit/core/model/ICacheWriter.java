@@ -0,0 +1,14 @@
+package com.cachekit.core.model;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 后端数据源的写入器：缓存的更新和删除由 write-behind 组件合并后批量写入
+ */
+public interface ICacheWriter<K, V>
+{
+	void writeAll(Map<K, V> entries) throws Exception;
+
+	void deleteAll(Collection<K> keys) throws Exception;
+}
@@ -69,5 +69,70 @@ public interface IContextCacheAttributes extends Serializable, Cloneable
 
 	void setSpoolChunkSize(int spoolChunkSize);
 
+	//命中时只记录访问，批量调整链表顺序（LRU、MRU）
+	void setUseReadBuffer(boolean useReadBuffer);
+
+	boolean isUseReadBuffer();
+
+	//内存组件的字节上限，-1 表示只按 MaxObjects 限制
+	void setMaxMemoryBytes(long maxMemoryBytes);
+
+	long getMaxMemoryBytes();
+
+	//计算元素字节数的类名
+	void setElementWeigherName(String name);
+
+	String getElementWeigherName();
+
+	//分段缓存的分段数
+	void setMemoryCacheSegments(int segments);
+
+	int getMemoryCacheSegments();
+
+	//分段缓存中每个分段使用的内存组件
+	void setSegmentMemoryCacheName(String name);
+
+	String getSegmentMemoryCacheName();
+
+	//堆外内存组件的直接内存上限（字节）
+	void setMaxOffHeapBytes(long maxOffHeapBytes);
+
+	long getMaxOffHeapBytes();
+
+	//堆外内存组件序列化元素的类名
+	void setElementSerializerName(String name);
+
+	String getElementSerializerName();
+
+	//链表内存组件使用紧凑的元素：描述符直接保存键、值和时间戳，与区域默认属性相同的元素共享属性对象
+	void setUseCompactEntries(boolean useCompactEntries);
+
+	boolean isUseCompactEntries();
+
+	//数据加载器的类名，所有组件都未命中时调用，为 null 时不加载
+	void setCacheLoaderName(String name);
+
+	String getCacheLoaderName();
+
+	//元素存活超过 MaxLife 的这个比例后，命中时在后台重新加载，0 表示关闭
+	void setRefreshAheadFactor(double factor);
+
+	double getRefreshAheadFactor();
+
+	//XFetch 提前重新加载的 beta，越大越早重新加载，0 表示关闭
+	void setEarlyRefreshBeta(double beta);
+
+	double getEarlyRefreshBeta();
+
+	//负缓存最多记录的不存在的键数，0 表示关闭
+	void setNegativeCacheMaxSize(int size);
+
+	int getNegativeCacheMaxSize();
+
+	//不存在的键在负缓存中保留的毫秒数
+	void setNegativeCacheTtlMillis(long ttl);
+
+	long getNegativeCacheTtlMillis();
+
 	IContextCacheAttributes clone();
 }
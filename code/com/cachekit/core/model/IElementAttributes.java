@@ -22,6 +22,11 @@ public interface IElementAttributes extends Serializable, Cloneable {
 
     int getSize();
 
+    //重新生成元素的代价，供按代价淘汰的策略使用，默认为1
+    void setCost(long cost);
+
+    long getCost();
+
     long getCreateTime();
 
     //最近访问时间
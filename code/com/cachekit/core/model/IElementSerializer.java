@@ -1,10 +1,21 @@
 package com.cachekit.core.model;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public interface IElementSerializer
 {
 	<T> byte[] serialize(T obj) throws IOException;
 
 	<T> T deSerialize(byte[] bytes, ClassLoader loader) throws IOException, ClassNotFoundException;
+
+	/**
+	 * 只读取 bytes 中从 offset 开始的 length 个字节，调用者可以复用 bytes
+	 */
+	<T> T deSerialize(byte[] bytes, int offset, int length, ClassLoader loader) throws IOException, ClassNotFoundException;
+
+	/**
+	 * 读取 buffer 中 position 到 limit 之间的字节，例如映射文件的一段，读取后 position 会移动
+	 */
+	<T> T deSerialize(ByteBuffer buffer, ClassLoader loader) throws IOException, ClassNotFoundException;
 }
@@ -0,0 +1,57 @@
+package com.cachekit.io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 直接读取 ByteBuffer 中 position 到 limit 之间的字节，不复制数据，读取会移动 buffer 的 position
+ */
+public class ByteBufferInputStream extends InputStream
+{
+	private final ByteBuffer buffer;
+
+	public ByteBufferInputStream(ByteBuffer buffer)
+	{
+		this.buffer = buffer;
+	}
+
+	@Override
+	public int read()
+	{
+		if (!buffer.hasRemaining())
+		{
+			return -1;
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len)
+	{
+		if (len == 0)
+		{
+			return 0;
+		}
+		if (!buffer.hasRemaining())
+		{
+			return -1;
+		}
+		int n = Math.min(len, buffer.remaining());
+		buffer.get(b, off, n);
+		return n;
+	}
+
+	@Override
+	public long skip(long n)
+	{
+		int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+		buffer.position(buffer.position() + skipped);
+		return skipped;
+	}
+
+	@Override
+	public int available()
+	{
+		return buffer.remaining();
+	}
+}
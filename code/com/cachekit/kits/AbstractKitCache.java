@@ -1,5 +1,8 @@
 package com.cachekit.kits;
 
+import java.io.IOException;
+import java.util.List;
+
 import com.cachekit.core.logger.CacheEvent;
 import com.cachekit.core.logger.ICacheEvent;
 import com.cachekit.core.logger.ICacheEventWrapper;
@@ -75,6 +78,18 @@ public abstract class AbstractKitCache<K, V> implements KitCache<K, V> {
 
     public abstract String getEventLoggerExtraInfo();
 
+    /**
+     * 默认逐个更新，支持批量写入的插件覆盖这个方法
+     */
+    @Override
+    public void updateAll(List<ICacheElement<K, V>> elements) throws IOException
+    {
+        for (ICacheElement<K, V> element : elements)
+        {
+            update(element);
+        }
+    }
+
     @Override
     public void setCacheEventLogger(ICacheEventWrapper cacheEventWrapper)
     {
@@ -1,10 +1,12 @@
 package com.cachekit.kits;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 
 import com.cachekit.core.logger.ICacheEventWrapper;
 import com.cachekit.core.model.ICache;
+import com.cachekit.core.model.ICacheElement;
 import com.cachekit.core.model.IElementSerializer;
 import com.cachekit.core.stats.IStats;
 
@@ -16,6 +18,8 @@ public interface KitCache<K, V> extends ICache<K, V>
 {
 	Set<K> getKeySet() throws IOException;
 
+	void updateAll(List<ICacheElement<K, V>> elements) throws IOException;
+
 	IStats getStatistics();
 
 	KitCacheAttributes getKitCacheAttributes();
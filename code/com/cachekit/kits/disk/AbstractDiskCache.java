@@ -4,8 +4,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.logging.Log;
@@ -17,14 +23,17 @@ import com.cachekit.core.CacheStatus;
 import com.cachekit.core.model.ICacheElement;
 import com.cachekit.core.model.ICacheEventQueue;
 import com.cachekit.core.model.ICacheListener;
+import com.cachekit.core.model.IRequireScheduler;
 import com.cachekit.core.stats.IStatElement;
 import com.cachekit.core.stats.IStats;
 import com.cachekit.core.stats.StatElement;
 import com.cachekit.core.stats.Stats;
 import com.cachekit.kits.AbstractKitCacheEvent;
+import com.cachekit.kits.disk.IDiskCacheAttributes.DurabilityPolicy;
 import com.cachekit.utils.struct.LRUMap;
+import com.cachekit.utils.timing.Deadline;
 
-public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V> {
+public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V> implements IRequireScheduler {
     private static final Log log = LogFactory.getLog(AbstractDiskCache.class);
 
     private IDiskCacheAttributes diskCacheAttributes = null;
@@ -41,6 +50,24 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
 
     private final ReentrantReadWriteLock removeAllLock = new ReentrantReadWriteLock();
 
+    private final DurabilityPolicy durabilityPolicy;
+    //上次刷盘之后是否写入过 data 文件
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    //PERIODIC 策略的定时刷盘任务
+    private ScheduledFuture<?> syncFuture;
+
+    private final AtomicLong syncCount = new AtomicLong(0);
+
+    private final AtomicLong syncNanos = new AtomicLong(0);
+
+    private final AtomicLong maxSyncNanos = new AtomicLong(0);
+
+    private final AtomicLong writeBatches = new AtomicLong(0);
+
+    private final AtomicLong batchedElements = new AtomicLong(0);
+
+    private final AtomicLong maxBatchSize = new AtomicLong(0);
+
     protected AbstractDiskCache(IDiskCacheAttributes attr)
     {
         this.diskCacheAttributes = attr;
@@ -55,6 +82,10 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
                 diskCacheAttributes.getEventQueuePoolName(),
                 diskCacheAttributes.getEventQueueType()
         );
+        //溢出高峰时一次处理多个写入事件，由 doUpdateAll 在一次加锁内写入
+        this.cacheEventQueue.setMaxPutBatchSize(diskCacheAttributes.getMaxPutBatchSize());
+        this.durabilityPolicy = diskCacheAttributes.getDurabilityPolicy() == null ? DurabilityPolicy.NEVER
+                : diskCacheAttributes.getDurabilityPolicy();
 
         initPurgatory();
     }
@@ -63,6 +94,84 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
         return alive;
     }
 
+    /**
+     * PERIODIC 策略下在调度器中定时刷盘，其他策略不需要调度器
+     */
+    @Override
+    public void setScheduledExecutorService(ScheduledExecutorService scheduledExecutor)
+    {
+        long interval = diskCacheAttributes.getSyncIntervalMillis();
+        if (durabilityPolicy == DurabilityPolicy.PERIODIC && interval > 0 && syncFuture == null)
+        {
+            syncFuture = scheduledExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run()
+                {
+                    sync();
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 把上次刷盘之后写入 data 文件的数据刷到磁盘，没有新的写入时直接返回。
+     * 刷盘期间的写入会重新标记，由下一次刷盘负责
+     */
+    public void sync()
+    {
+        if (!dirty.getAndSet(false))
+        {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try
+        {
+            doSync();
+        }
+        catch (IOException e)
+        {
+            dirty.set(true);
+            log.error("Fail to sync data file, cacheName: " + cacheName, e);
+            return;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        syncCount.incrementAndGet();
+        syncNanos.addAndGet(elapsed);
+        updateMax(maxSyncNanos, elapsed);
+    }
+
+    /**
+     * 一批元素写入 data 文件之后调用，PER_BATCH 策略下整批只刷盘一次
+     */
+    private void afterWrite(int size)
+    {
+        writeBatches.incrementAndGet();
+        batchedElements.addAndGet(size);
+        updateMax(maxBatchSize, size);
+
+        markDirty();
+    }
+
+    private void markDirty()
+    {
+        dirty.set(true);
+        if (durabilityPolicy == DurabilityPolicy.PER_BATCH)
+        {
+            sync();
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value)
+    {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+        {
+            current = max.get();
+        }
+    }
+
     public void setAlive(boolean alive) {
         this.alive = alive;
     }
@@ -116,6 +225,34 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
         }
     }
 
+    /**
+     * 所有元素一次存入 purgatory 集合，整批作为一个事件放入事件队列中
+     */
+    @Override
+    public final void updateAll(List<ICacheElement<K, V>> cacheElements) throws IOException
+    {
+        try
+        {
+            List<ICacheElement<K, V>> pes = new ArrayList<ICacheElement<K, V>>(cacheElements.size());
+            synchronized (purgatory)
+            {
+                for (ICacheElement<K, V> cacheElement : cacheElements)
+                {
+                    PurgatoryElement<K, V> pe = new PurgatoryElement<K, V>(cacheElement);
+                    pe.setSpoolable(true);
+                    purgatory.put(pe.getKey(), pe);
+                    pes.add(pe);
+                }
+            }
+            cacheEventQueue.addPutAllEvent(pes);
+        }
+        catch (IOException ex)
+        {
+            log.error("Error occur in adding put all event to queue.", ex);
+            cacheEventQueue.destroy();
+        }
+    }
+
     /**
      * 先从内存 purgatory 集合中获取，获得返回即可，如果没有需要从磁盘读取
      */
@@ -157,6 +294,12 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
             return pe.getCacheElement();
         }
 
+        //超过截止时间后不再读取磁盘
+        if (Deadline.expired())
+        {
+            return null;
+        }
+
         try
         {
             return doGet(key);
@@ -206,6 +349,10 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
         {
             for (K key : keys)
             {
+                if (Deadline.expired())
+                {
+                    break;
+                }
                 ICacheElement<K, V> element = get(key);
                 if (element != null)
                 {
@@ -311,6 +458,16 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
 
         cacheEventQueue.destroy();
 
+        if (syncFuture != null)
+        {
+            syncFuture.cancel(false);
+        }
+        //关闭文件之前把剩余的写入刷盘
+        if (durabilityPolicy != DurabilityPolicy.NEVER)
+        {
+            sync();
+        }
+
         doDispose();
 
         alive = false;
@@ -339,6 +496,17 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
         elems.add(new StatElement<Integer>("Purgatory Hits", Integer.valueOf(purgHits)));
         elems.add(new StatElement<Integer>("Purgatory Size", Integer.valueOf(purgatory.size())));
 
+        long syncs = syncCount.get();
+        long batches = writeBatches.get();
+        elems.add(new StatElement<DurabilityPolicy>("Durability Policy", durabilityPolicy));
+        elems.add(new StatElement<Long>("Fsync Count", Long.valueOf(syncs)));
+        elems.add(new StatElement<Long>("Fsync Avg Micros",
+                Long.valueOf(syncs == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(syncNanos.get() / syncs))));
+        elems.add(new StatElement<Long>("Fsync Max Micros", Long.valueOf(TimeUnit.NANOSECONDS.toMicros(maxSyncNanos.get()))));
+        elems.add(new StatElement<Long>("Write Batches", Long.valueOf(batches)));
+        elems.add(new StatElement<Long>("Write Batch Avg Size", Long.valueOf(batches == 0 ? 0 : batchedElements.get() / batches)));
+        elems.add(new StatElement<Long>("Write Batch Max Size", Long.valueOf(maxBatchSize.get())));
+
         IStats eqStats = this.cacheEventQueue.getStatistics();
         elems.addAll(eqStats.getStatElements());
 
@@ -403,6 +571,7 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
                             if (pe.isSpoolable())
                             {
                                 doUpdate(element);
+                                afterWrite(1);
                             }
                         }
                         finally
@@ -419,6 +588,7 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
                 else
                 {
                     doUpdate(element);
+                    afterWrite(1);
                 }
             }
             else
@@ -430,6 +600,68 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
             }
         }
 
+        /**
+         * 仍在 purgatory 中且可以写入的元素作为一批写入磁盘。
+         * 写入期间被删除的元素（spoolable 变为 false）在写入后再删除一次
+         */
+        @Override
+        public void handlePutAll(List<ICacheElement<K, V>> elements) throws IOException
+        {
+            List<ICacheElement<K, V>> toWrite = new ArrayList<ICacheElement<K, V>>(elements.size());
+            List<PurgatoryElement<K, V>> written = new ArrayList<PurgatoryElement<K, V>>(elements.size());
+
+            if (alive)
+            {
+                removeAllLock.readLock().lock();
+                try
+                {
+                    synchronized (purgatory)
+                    {
+                        for (ICacheElement<K, V> element : elements)
+                        {
+                            PurgatoryElement<K, V> pe = (PurgatoryElement<K, V>) element;
+                            //只写入 purgatory 中仍是这个版本的元素，被更新或删除的跳过
+                            if (purgatory.get(pe.getKey()) == pe && pe.isSpoolable())
+                            {
+                                toWrite.add(pe.getCacheElement());
+                                written.add(pe);
+                            }
+                        }
+                    }
+
+                    if (!toWrite.isEmpty())
+                    {
+                        doUpdateAll(toWrite);
+                        afterWrite(toWrite.size());
+                    }
+
+                    for (PurgatoryElement<K, V> pe : written)
+                    {
+                        if (!pe.isSpoolable())
+                        {
+                            doRemove(pe.getKey());
+                        }
+                    }
+                }
+                finally
+                {
+                    removeAllLock.readLock().unlock();
+                }
+            }
+
+            synchronized (purgatory)
+            {
+                for (ICacheElement<K, V> element : elements)
+                {
+                    //只删除本批次放入的版本，之后的更新留在 purgatory 中
+                    if (purgatory.get(element.getKey()) == element)
+                    {
+                        purgatory.remove(element.getKey());
+                    }
+                }
+            }
+        }
+
         @Override
         public void handleRemove(String cacheName, K key) throws IOException
         {
@@ -438,6 +670,8 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
                 if (doRemove(key))
                 {
                     log.debug("Element removed, key: " + key);
+                    //删除也会修改组件的索引，与写入一样刷盘
+                    markDirty();
                 }
             }
         }
@@ -476,6 +710,17 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
         super.updateWithEventLogger(cacheElement);
     }
 
+    /**
+     * 批量写入磁盘，默认逐个写入，子类可以在一次加锁内完成
+     */
+    protected void doUpdateAll(List<ICacheElement<K, V>> cacheElements) throws IOException
+    {
+        for (ICacheElement<K, V> cacheElement : cacheElements)
+        {
+            doUpdate(cacheElement);
+        }
+    }
+
     protected final boolean doRemove(K key) throws IOException
     {
         return super.removeWithEventLogger(key);
@@ -498,4 +743,9 @@ public abstract class AbstractDiskCache<K, V> extends AbstractKitCacheEvent<K, V
     }
 
     protected abstract String getDiskLocation();
+
+    /**
+     * 把 data 文件已写入的数据刷到磁盘
+     */
+    protected abstract void doSync() throws IOException;
 }
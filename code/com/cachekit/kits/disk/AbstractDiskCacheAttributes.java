@@ -24,6 +24,18 @@ public abstract class AbstractDiskCacheAttributes extends AbstractKitCacheAttrib
 
     private DiskLimitType diskLimitType = DiskLimitType.COUNT;
 
+    private static final int DEFAULT_MAX_PUT_BATCH_SIZE = 128;
+
+    //事件队列一次最多合并多少个连续的写入事件，小于等于 1 时逐个写入
+    private int maxPutBatchSize = DEFAULT_MAX_PUT_BATCH_SIZE;
+
+    private DurabilityPolicy durabilityPolicy = DurabilityPolicy.NEVER;
+
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+
+    //PERIODIC 策略下的刷盘间隔
+    private long syncIntervalMillis = DEFAULT_SYNC_INTERVAL_MILLIS;
+
     @Override
     public void setDiskPath(String path) {
         setDiskPath(new File(path));
@@ -89,6 +101,9 @@ public abstract class AbstractDiskCacheAttributes extends AbstractKitCacheAttrib
         str.append("\n maxPurgatorySize   = " + getMaxPurgatorySize());
         str.append("\n allowRemoveAll   = " + isAllowRemoveAll());
         str.append("\n ShutdownSpoolTimeLimit   = " + getShutdownSpoolTimeLimit());
+        str.append("\n maxPutBatchSize   = " + getMaxPutBatchSize());
+        str.append("\n durabilityPolicy   = " + getDurabilityPolicy());
+        str.append("\n syncIntervalMillis   = " + getSyncIntervalMillis());
         return str.toString();
     }
 
@@ -110,4 +125,43 @@ public abstract class AbstractDiskCacheAttributes extends AbstractKitCacheAttrib
     public DiskLimitType getDiskLimitType() {
         return diskLimitType;
     }
+
+    @Override
+    public int getMaxPutBatchSize() {
+        return maxPutBatchSize;
+    }
+
+    @Override
+    public void setMaxPutBatchSize(int maxPutBatchSize) {
+        this.maxPutBatchSize = maxPutBatchSize;
+    }
+
+    @Override
+    public DurabilityPolicy getDurabilityPolicy() {
+        return durabilityPolicy;
+    }
+
+    @Override
+    public void setDurabilityPolicy(DurabilityPolicy durabilityPolicy) {
+        this.durabilityPolicy = durabilityPolicy;
+    }
+
+    @Override
+    public void setDurabilityPolicyName(String durabilityPolicyName)
+    {
+        if (durabilityPolicyName != null)
+        {
+            durabilityPolicy = DurabilityPolicy.valueOf(durabilityPolicyName.trim());
+        }
+    }
+
+    @Override
+    public long getSyncIntervalMillis() {
+        return syncIntervalMillis;
+    }
+
+    @Override
+    public void setSyncIntervalMillis(long syncIntervalMillis) {
+        this.syncIntervalMillis = syncIntervalMillis;
+    }
 }
@@ -10,6 +10,15 @@ public interface IDiskCacheAttributes extends KitCacheAttributes {
         COUNT, SIZE
     }
 
+    /**
+     * data 文件的刷盘策略：NEVER 不主动刷盘，PERIODIC 每隔 syncIntervalMillis 刷盘一次，
+     * PER_BATCH 每批写入后刷盘一次，同一批中的写入共用一次刷盘
+     */
+    enum DurabilityPolicy
+    {
+        NEVER, PERIODIC, PER_BATCH
+    }
+
     int MAX_PURGATORY_SIZE_DEFAULT = 5000;
 
     void setDiskPath(String path);
@@ -33,4 +42,18 @@ public interface IDiskCacheAttributes extends KitCacheAttributes {
     void setDiskLimitTypeName(String diskLimitTypeName);
 
     DiskLimitType getDiskLimitType();
+
+    int getMaxPutBatchSize();
+
+    void setMaxPutBatchSize(int maxPutBatchSize);
+
+    DurabilityPolicy getDurabilityPolicy();
+
+    void setDurabilityPolicy(DurabilityPolicy durabilityPolicy);
+
+    void setDurabilityPolicyName(String durabilityPolicyName);
+
+    long getSyncIntervalMillis();
+
+    void setSyncIntervalMillis(long syncIntervalMillis);
 }
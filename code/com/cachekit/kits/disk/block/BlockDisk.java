@@ -282,6 +282,14 @@ public class BlockDisk
 		return dividend;
 	}
 
+	/**
+	 * 把文件数据刷到磁盘
+	 */
+	protected void force() throws IOException
+	{
+		fc.force(false);
+	}
+
 	/**
 	 * 文件大小
 	 */
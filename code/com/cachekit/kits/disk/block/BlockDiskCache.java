@@ -31,6 +31,7 @@ import com.cachekit.core.stats.StatElement;
 import com.cachekit.core.stats.Stats;
 import com.cachekit.kits.KitCacheAttributes;
 import com.cachekit.kits.disk.AbstractDiskCache;
+import com.cachekit.utils.timing.Deadline;
 
 public class BlockDiskCache<K, V> extends AbstractDiskCache<K, V> implements IRequireScheduler
 {
@@ -116,6 +117,8 @@ public class BlockDiskCache<K, V> extends AbstractDiskCache<K, V> implements IRe
 	@Override
 	public void setScheduledExecutorService(ScheduledExecutorService scheduledExecutor)
 	{
+		super.setScheduledExecutorService(scheduledExecutor);
+
 		if (this.blockDiskCacheAttributes.getKeyPersistenceIntervalSeconds() > 0)
 		{
 			future = scheduledExecutor.scheduleAtFixedRate(new Runnable() {
@@ -245,7 +248,15 @@ public class BlockDiskCache<K, V> extends AbstractDiskCache<K, V> implements IRe
 
 		try
 		{
-			storageLock.readLock().lock();
+			//有截止时间时最多等待剩余的时间，等不到读锁（例如正在整理文件）时按未命中返回
+			if (!Deadline.tryLock(storageLock.readLock()))
+			{
+				if (log.isDebugEnabled())
+				{
+					log.debug(cacheLogger + "deadline exceeded waiting for storage lock, key = " + key);
+				}
+				return null;
+			}
 			try
 			{
 				int[] ded = this.keyStore.get(key);
@@ -599,4 +610,24 @@ public class BlockDiskCache<K, V> extends AbstractDiskCache<K, V> implements IRe
 	{
 		return dataFile.getFilePath();
 	}
+
+	/**
+	 * 读锁保证刷盘期间 data 文件不会被 reset 或关闭
+	 */
+	@Override
+	protected void doSync() throws IOException
+	{
+		storageLock.readLock().lock();
+		try
+		{
+			if (isAlive() && dataFile != null)
+			{
+				dataFile.force();
+			}
+		}
+		finally
+		{
+			storageLock.readLock().unlock();
+		}
+	}
 }
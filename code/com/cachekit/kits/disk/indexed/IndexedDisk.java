@@ -6,7 +6,10 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -28,50 +31,189 @@ import com.cachekit.core.model.IElementSerializer;
 
 	private final FileChannel fc;
 
+	private static final int MIN_POOLED_READ_BYTES = 4096;
+
+	private static final int MAX_POOLED_READ_BYTES = 1024 * 1024;
+
+	//每个读线程一个读缓冲区，反序列化在同一个线程中完成后才会被下一次读取覆盖
+	private static final ThreadLocal<byte[]> READ_BUFFER = new ThreadLocal<byte[]>();
+
+	//映射读取的窗口大小，0 表示通过 FileChannel 读取
+	private final int mappedWindowSize;
+
+	//按窗口映射的文件，只映射被读取过的窗口，窗口只映射到当时的文件末尾，读取的记录超出时重新映射这个窗口
+	private volatile MappedByteBuffer[] windows = new MappedByteBuffer[0];
+
+	private final Object mapLock = new Object();
+
 	public IndexedDisk(File file, IElementSerializer elementSerializer) throws FileNotFoundException
+	{
+		this(file, elementSerializer, 0);
+	}
+
+	public IndexedDisk(File file, IElementSerializer elementSerializer, int mappedWindowSize) throws FileNotFoundException
 	{
 		this.filepath = file.getAbsolutePath();
 		this.elementSerializer = elementSerializer;
+		this.mappedWindowSize = Math.max(0, mappedWindowSize);
 		RandomAccessFile raf = new RandomAccessFile(filepath, "rw");
 		this.fc = raf.getChannel();
 	}
 
+	/**
+	 * 描述符中已经有记录的长度，数据头和数据体一次定位读取到线程的读缓冲区中，在内存中校验长度后直接从缓冲区反序列化。
+	 * 读到文件末尾仍未读满说明记录超出了文件。
+	 * 数据头的长度与描述符不一致或者数据体无法反序列化时抛出 CorruptRecordException
+	 */
 	protected <T extends Serializable> T readObject(IndexedDiskElementDescriptor ded) throws IOException, ClassNotFoundException
 	{
-		boolean corrupted = false;
-		long fileLength = fc.size();
-		if (ded.pos > fileLength)
+		if (ded.pos < 0 || ded.len < 0)
 		{
-			corrupted = true;
+			throw new IOException("The file is corrupt.");
 		}
-		else
+
+		int total = HEADER_SIZE_BYTES + ded.len;
+		if (mappedWindowSize > 0)
 		{
-			//读取数据头4个字节
-			ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE_BYTES);
-			fc.read(buffer, ded.pos);
-			//数据读写完成，则buffer执行flip，将指针重置为0，方便后续读写操作
-			buffer.flip();
-			int datalen = buffer.getInt();
-			if (ded.len != datalen)
+			ByteBuffer window = mappedWindow(ded.pos, total);
+			if (window != null)
 			{
-				corrupted = true;
+				int offset = (int) (ded.pos % mappedWindowSize);
+				if (window.getInt(offset) != ded.len)
+				{
+					throw new CorruptRecordException("The file is corrupt, length in header is " + window.getInt(offset)
+							+ ", expect " + ded.len);
+				}
+				//多个读线程共用一个窗口，每次读取使用自己的 position 和 limit
+				ByteBuffer slice = window.duplicate();
+				slice.limit(offset + total);
+				slice.position(offset + HEADER_SIZE_BYTES);
+				return deSerialize(slice);
 			}
-			else if (ded.pos + ded.len > fileLength)
+		}
+
+		byte[] bytes = readBuffer(total);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, total);
+		while (buffer.hasRemaining())
+		{
+			if (fc.read(buffer, ded.pos + buffer.position()) < 0)
 			{
-				corrupted = true;
+				throw new IOException("The file is corrupt.");
 			}
 		}
 
-		if (corrupted)
+		//数据头4个字节是数据体的长度
+		if (buffer.getInt(0) != ded.len)
 		{
-			throw new IOException("The file is corrupt.");
+			throw new CorruptRecordException("The file is corrupt, length in header is " + buffer.getInt(0) + ", expect "
+					+ ded.len);
+		}
+
+		try
+		{
+			return elementSerializer.deSerialize(bytes, HEADER_SIZE_BYTES, ded.len, null);
+		}
+		catch (IOException e)
+		{
+			throw new CorruptRecordException("The file is corrupt, fail to deserialize record at " + ded.pos, e);
+		}
+	}
+
+	private <T extends Serializable> T deSerialize(ByteBuffer slice) throws IOException, ClassNotFoundException
+	{
+		try
+		{
+			return elementSerializer.deSerialize(slice, null);
+		}
+		catch (IOException e)
+		{
+			throw new CorruptRecordException("The file is corrupt, fail to deserialize mapped record", e);
+		}
+	}
+
+	/**
+	 * 返回完整包含 [pos, pos + size) 的映射窗口。记录跨越两个窗口或者超出文件末尾时返回 null，由 FileChannel 读取
+	 */
+	private ByteBuffer mappedWindow(long pos, int size) throws IOException
+	{
+		int index = (int) (pos / mappedWindowSize);
+		long end = pos + size;
+		if ((end - 1) / mappedWindowSize != index)
+		{
+			return null;
+		}
+
+		long windowStart = (long) index * mappedWindowSize;
+		MappedByteBuffer[] current = windows;
+		if (index < current.length && current[index] != null && windowStart + current[index].capacity() >= end)
+		{
+			return current[index];
 		}
-		//读取数据体
-		ByteBuffer data = ByteBuffer.allocate(ded.len);
-		fc.read(data, ded.pos + HEADER_SIZE_BYTES);
-		data.flip();
 
-		return elementSerializer.deSerialize(data.array(), null);
+		synchronized (mapLock)
+		{
+			current = windows;
+			if (index < current.length && current[index] != null && windowStart + current[index].capacity() >= end)
+			{
+				return current[index];
+			}
+
+			//只映射到文件末尾：通道可写，映射超出文件的区域会把文件变长
+			long fileLength = fc.size();
+			if (end > fileLength)
+			{
+				return null;
+			}
+			MappedByteBuffer[] grown = Arrays.copyOf(current, Math.max(current.length, index + 1));
+			grown[index] = fc.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(mappedWindowSize, fileLength - windowStart));
+			windows = grown;
+			return grown[index];
+		}
+	}
+
+	/**
+	 * 文件截断前丢弃超出新长度的窗口，访问被截断的映射会导致 SIGBUS。
+	 * 调用者持有存储写锁，没有线程正在通过窗口读取；旧的映射在回收时解除
+	 */
+	private void dropWindowsFrom(long length)
+	{
+		if (mappedWindowSize == 0)
+		{
+			return;
+		}
+		synchronized (mapLock)
+		{
+			MappedByteBuffer[] current = windows;
+			int keep = (int) Math.min(current.length, length / mappedWindowSize);
+			if (keep < current.length)
+			{
+				windows = Arrays.copyOf(current, keep);
+			}
+		}
+	}
+
+	/**
+	 * 不超过 MAX_POOLED_READ_BYTES 的记录复用线程的读缓冲区，容量按 2 的幂增长；更大的记录单独分配，避免线程长期持有大数组
+	 */
+	private static byte[] readBuffer(int size)
+	{
+		if (size > MAX_POOLED_READ_BYTES)
+		{
+			return new byte[size];
+		}
+
+		byte[] bytes = READ_BUFFER.get();
+		if (bytes == null || bytes.length < size)
+		{
+			int capacity = MIN_POOLED_READ_BYTES;
+			while (capacity < size)
+			{
+				capacity <<= 1;
+			}
+			bytes = new byte[capacity];
+			READ_BUFFER.set(bytes);
+		}
+		return bytes;
 	}
 
 	protected void move(final IndexedDiskElementDescriptor ded, final long newPosition) throws IOException
@@ -125,11 +267,94 @@ import com.cachekit.core.model.IElementSerializer;
 		buffer.put(data);
 		buffer.flip();
 		int written = fc.write(buffer, pos);
-		//fc.force(true);
 
 		return written == data.length;
 	}
 
+	/**
+	 * 批量写入，调用者必须持有写锁。按位置排序后，首尾相连的记录通过一次聚集写入（FileChannel.write(ByteBuffer[])）
+	 * 写到文件中，不相连的记录逐个写入
+	 */
+	protected void writeAll(final IndexedDiskElementDescriptor[] deds, byte[][] datas) throws IOException
+	{
+		Integer[] order = new Integer[deds.length];
+		for (int i = 0; i < deds.length; i++)
+		{
+			if (datas[i].length != deds[i].len)
+			{
+				throw new IOException("Descriptor does not match data length");
+			}
+			order[i] = Integer.valueOf(i);
+		}
+
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer a, Integer b)
+			{
+				long pa = deds[a.intValue()].pos;
+				long pb = deds[b.intValue()].pos;
+				return (pa < pb) ? -1 : ((pa == pb) ? 0 : 1);
+			}
+		});
+
+		int start = 0;
+		while (start < order.length)
+		{
+			//找出从 start 开始首尾相连的一段记录
+			int end = start + 1;
+			long next = nextPosition(deds[order[start].intValue()]);
+			while (end < order.length && deds[order[end].intValue()].pos == next)
+			{
+				next = nextPosition(deds[order[end].intValue()]);
+				end++;
+			}
+
+			if (end - start == 1)
+			{
+				int i = order[start].intValue();
+				write(deds[i], datas[i]);
+			}
+			else
+			{
+				writeRun(deds, datas, order, start, end);
+			}
+			start = end;
+		}
+	}
+
+	private static long nextPosition(IndexedDiskElementDescriptor ded)
+	{
+		return ded.pos + HEADER_SIZE_BYTES + ded.len;
+	}
+
+	/**
+	 * 一段相连的记录：每条记录的头和数据体各占一个 ByteBuffer，从第一条记录的位置开始聚集写入。
+	 * 其他读写都使用带位置的方法，不依赖 channel 的当前位置
+	 */
+	private void writeRun(IndexedDiskElementDescriptor[] deds, byte[][] datas, Integer[] order, int start, int end)
+			throws IOException
+	{
+		ByteBuffer[] buffers = new ByteBuffer[(end - start) * 2];
+		long remaining = 0;
+		for (int k = start; k < end; k++)
+		{
+			int i = order[k].intValue();
+			ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE_BYTES);
+			head.putInt(datas[i].length);
+			head.flip();
+			buffers[(k - start) * 2] = head;
+			buffers[(k - start) * 2 + 1] = ByteBuffer.wrap(datas[i]);
+			remaining += HEADER_SIZE_BYTES + datas[i].length;
+		}
+
+		fc.position(deds[order[start].intValue()].pos);
+		while (remaining > 0)
+		{
+			remaining -= fc.write(buffers);
+		}
+	}
+
 	protected boolean writeObject(Serializable obj, long pos) throws IOException
 	{
 		byte[] data = elementSerializer.serialize(obj);
@@ -137,6 +362,14 @@ import com.cachekit.core.model.IElementSerializer;
 		return true;
 	}
 
+	/**
+	 * 刷盘由组件的 DurabilityPolicy 决定，写入时不刷盘
+	 */
+	protected void force() throws IOException
+	{
+		fc.force(false);
+	}
+
 	protected long length() throws IOException
 	{
 		return fc.size();
@@ -144,6 +377,7 @@ import com.cachekit.core.model.IElementSerializer;
 
 	protected void close() throws IOException
 	{
+		dropWindowsFrom(0);
 		fc.close();
 	}
 
@@ -153,6 +387,7 @@ import com.cachekit.core.model.IElementSerializer;
 		{
 			log.debug("Reset Indexed File [" + filepath + "]");
 		}
+		dropWindowsFrom(0);
 		fc.truncate(0);
 		//强制刷新
 		fc.force(true);
@@ -165,6 +400,7 @@ import com.cachekit.core.model.IElementSerializer;
 		{
 			log.info("Truncate file [" + filepath + "] to " + length);
 		}
+		dropWindowsFrom(length);
 		fc.truncate(length);
 	}
 
@@ -172,4 +408,22 @@ import com.cachekit.core.model.IElementSerializer;
 	{
 		return filepath;
 	}
+
+	/**
+	 * 记录的内容与描述符不符：数据头的长度不一致，或者数据体无法反序列化
+	 */
+	static class CorruptRecordException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+		CorruptRecordException(String message)
+		{
+			super(message);
+		}
+
+		CorruptRecordException(String message, Throwable cause)
+		{
+			super(message, cause);
+		}
+	}
 }
@@ -3,11 +3,14 @@ package com.cachekit.kits.disk.indexed;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -35,8 +38,10 @@ import com.cachekit.core.stats.Stats;
 import com.cachekit.kits.KitCacheAttributes;
 import com.cachekit.kits.disk.AbstractDiskCache;
 import com.cachekit.kits.disk.IDiskCacheAttributes.DiskLimitType;
+import com.cachekit.kits.disk.IDiskCacheAttributes.DurabilityPolicy;
 import com.cachekit.utils.struct.AbstractLRUMap;
 import com.cachekit.utils.struct.LRUMap;
+import com.cachekit.utils.timing.Deadline;
 import com.cachekit.utils.timing.ElapsedTimer;
 
 public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
@@ -50,6 +55,18 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 	private IndexedDisk dataFile;
 
 	private IndexedDisk keyFile;
+	//keyHash 的追加日志，没有开启 KeyJournal 时为 null
+	private IndexedKeyJournal keyJournal;
+	//日志记录写入失败后，下一次写入完成时写检查点
+	private volatile boolean journalFailed = false;
+	//检查点之间互斥
+	private final Object checkpointLock = new Object();
+	//reset 的次数，写检查点期间发生过 reset 时放弃这次检查点
+	private int resetCount = 0;
+
+	private int checkpointCount = 0;
+
+	private volatile Thread currentCheckpointThread;
 
 	private Map<K, IndexedDiskElementDescriptor> keyHash;
 
@@ -115,11 +132,11 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 		{
 		    //初始化文件夹路径
 			initializeFileSystem(cattr);
+			//重放日志时 LRU 淘汰的元素会放入回收集合
+			initializeRecycleBin();
             //初始化 key 和 data 文件路径
 			initializeKeysAndData(cattr);
 
-			initializeRecycleBin();
-
 			setAlive(true);
 
 			if (log.isInfoEnabled())
@@ -151,8 +168,15 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 
 	private void initializeKeysAndData(IndexedDiskCacheAttributes cattr) throws IOException
 	{
-		this.dataFile = new IndexedDisk(new File(cacheFileDir, fileName + ".data"), getElementSerializer());
+		this.dataFile = createDataFile();
 		this.keyFile = new IndexedDisk(new File(cacheFileDir, fileName + ".key"), getElementSerializer());
+		//上次运行留下的日志在关闭日志功能时也要重放
+		boolean journalFound = IndexedKeyJournal.exists(cacheFileDir, fileName);
+		IndexedKeyJournal journal = null;
+		if (cattr.isKeyJournal() || journalFound)
+		{
+			journal = new IndexedKeyJournal(cacheFileDir, fileName, getElementSerializer());
+		}
 		//默认是false
 		if (cattr.isClearDiskOnStartup())
 		{
@@ -161,24 +185,43 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 				log.info(cacheLogger + "ClearDiskOnStartup is set to true. Ingnore any persisted data.");
 			}
 			//初始化 keyHash 集合并清空 data 磁盘文件
-			initializeEmptyStore();
+			initializeEmptyStore(journal);
 		}
-		else if (keyFile.length() > 0)
+		else if (keyFile.length() > 0 || journalFound)
 		{
-			//将keyFile文件的内容加载到keyHash，然后检查keyHash与DataFile是否一致，不一致就清空重新存储
-			initializeStoreFromPersistedData();
+			//将keyFile文件的内容加载到keyHash，重放日志，然后检查keyHash与DataFile是否一致，不一致就清空重新存储
+			initializeStoreFromPersistedData(journal);
 		}
 		//keyFile.length()==0
 		else
 		{
-			initializeEmptyStore();
+			initializeEmptyStore(journal);
 		}
+
+		if (journal != null && !cattr.isKeyJournal())
+		{
+			//关闭了日志功能：恢复出的 keyHash 整体写入 .key 文件后删除日志
+			saveKeys();
+			journal.delete();
+			journal = null;
+		}
+		//重放完成后才开始记录，重放期间的 LRU 淘汰不写入日志
+		this.keyJournal = journal;
+	}
+
+	/**
+	 * MappedRead 为 true 时按 MappedWindowSize 映射读取 data 文件
+	 */
+	private IndexedDisk createDataFile() throws IOException
+	{
+		int windowSize = cattr.isMappedRead() ? cattr.getMappedWindowSize() : 0;
+		return new IndexedDisk(new File(cacheFileDir, fileName + ".data"), getElementSerializer(), windowSize);
 	}
 
 	/**
 	 * 初始化 keyHash 集合并清空 data 磁盘文件
 	 */
-	private void initializeEmptyStore() throws IOException
+	private void initializeEmptyStore(IndexedKeyJournal journal) throws IOException
 	{
 		//初始化 keyHash 集合
 		initializeKeyMap();
@@ -187,19 +230,50 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 		{
 			dataFile.reset();
 		}
+		if (journal != null)
+		{
+			journal.reset();
+		}
 	}
 
     /**
      * 检查磁盘是否已经存储了key，没有则清空从零开始存储，
 	 * 有的话检查key与data是否一致，不一致清空从零开始，一致则接着keyHash的位置存储
      */
-	private void initializeStoreFromPersistedData() throws IOException
+	private void initializeStoreFromPersistedData(IndexedKeyJournal journal) throws IOException
 	{
 		loadKeys();
 
-		if (keyHash.isEmpty())
+		boolean journalOk = true;
+		List<IndexedDiskElementDescriptor> freed = new ArrayList<IndexedDiskElementDescriptor>();
+		if (journal != null)
+		{
+			ElapsedTimer timer = new ElapsedTimer();
+			journalOk = journal.replay(keyHash, freed);
+			if (log.isInfoEnabled())
+			{
+				log.info(cacheLogger + "replay key journal, ok = " + journalOk + ", key count: " + keyHash.size()
+						+ " in " + timer.getElapsedTimeString());
+			}
+		}
+
+		if (!journalOk)
 		{
+			//日志不可用，keyHash 无法确认，全部清除
+			keyHash.clear();
+			keyFile.reset();
 			dataFile.reset();
+			journal.reset();
+
+			log.warn(cacheLogger + "key journal can not be replayed.  reset data, keys and journal files.");
+		}
+		else if (keyHash.isEmpty())
+		{
+			dataFile.reset();
+			if (journal != null)
+			{
+				journal.reset();
+			}
 		}
 		else
 		{
@@ -212,11 +286,16 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 				keyHash.clear();
 				keyFile.reset();
 				dataFile.reset();
+				if (journal != null)
+				{
+					journal.reset();
+				}
 
 				log.warn(cacheLogger + "corruption detected.  reset data and keys files.");
 			}
 			else
 			{
+				recycleReplayed(freed);
 				synchronized (this)
 				{
 					startupSize = keyHash.size();
@@ -241,8 +320,13 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 		{
 			initializeKeyMap();
 
-			HashMap<K, IndexedDiskElementDescriptor> keys = keyFile.readObject(
-					new IndexedDiskElementDescriptor(0, (int) keyFile.length() - IndexedDisk.HEADER_SIZE_BYTES));
+			//只有日志没有检查点时 key 文件为空
+			HashMap<K, IndexedDiskElementDescriptor> keys = null;
+			if (keyFile.length() > 0)
+			{
+				keys = keyFile.readObject(
+						new IndexedDiskElementDescriptor(0, (int) keyFile.length() - IndexedDisk.HEADER_SIZE_BYTES));
+			}
 
 			if (keys != null)
 			{
@@ -275,6 +359,44 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 		}
 	}
 
+	/**
+	 * 重放日志时被替换、删除和被 LRU 淘汰的位置加入垃圾列表。之后的记录可能重用了同一个位置，
+	 * 仍被 keyHash 引用的位置不能回收
+	 */
+	private void recycleReplayed(List<IndexedDiskElementDescriptor> freed) throws IOException
+	{
+		long fileLength = dataFile.length();
+		Set<Long> used = new HashSet<Long>();
+		for (IndexedDiskElementDescriptor ded : keyHash.values())
+		{
+			used.add(Long.valueOf(ded.pos));
+		}
+
+		Iterator<IndexedDiskElementDescriptor> it = recycle.iterator();
+		while (it.hasNext())
+		{
+			IndexedDiskElementDescriptor ded = it.next();
+			if (!used.add(Long.valueOf(ded.pos)))
+			{
+				it.remove();
+				adjustBytesFree(ded, false);
+			}
+		}
+
+		for (IndexedDiskElementDescriptor ded : freed)
+		{
+			if (ded.pos + IndexedDisk.HEADER_SIZE_BYTES + ded.len <= fileLength && used.add(Long.valueOf(ded.pos)))
+			{
+				addToRecycleBin(ded);
+			}
+		}
+
+		if (log.isInfoEnabled())
+		{
+			log.info(cacheLogger + "recycle bin size after replaying key journal: " + recycle.size());
+		}
+	}
+
 	private boolean checkKeyDataConsistency(boolean checkForDedOverlaps)
 	{
 		ElapsedTimer timer = new ElapsedTimer();
@@ -400,10 +522,6 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 			log.debug(cacheLogger + "store element on disk, key: " + ce.getKey());
 		}
 
-		IndexedDiskElementDescriptor ded = null;
-
-		IndexedDiskElementDescriptor old = null;
-
 		try
 		{
 			byte[] data = getElementSerializer().serialize(ce);
@@ -411,71 +529,218 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 			storageLock.writeLock().lock();
 			try
 			{
-				old = keyHash.get(ce.getKey());
+				writeElement(ce, data);
+				flushJournal();
+			}
+			finally
+			{
+				storageLock.writeLock().unlock();
+			}
+		}
+		catch (IOException e)
+		{
+			log.error(cacheLogger + "fail to update element, key: " + ce.getKey(), e);
+		}
 
-				if (old != null && data.length <= old.len)
-				{
-					// 如果存在相同的key并且旧的数据长度大于新数据长度，则在旧的位置直接覆盖旧元素
-					ded = old;
-					ded.len = data.length;
-				}
-				else
-				{
-					//在data文件末尾插入
-					ded = new IndexedDiskElementDescriptor(dataFile.length(), data.length);
+		checkpointIfNeeded();
+	}
 
-					if (doRecycle)
-					{
-						// 从垃圾列表中找到 数据大小 >= 插入数据大小 的第一个元素
-						IndexedDiskElementDescriptor rep = recycle.ceiling(ded);
-						if (rep != null)
-						{
-							recycle.remove(rep);
-							ded = rep;
-							ded.len = data.length;
-							recycleCnt++;
-							this.adjustBytesFree(ded, false);
-							if (log.isDebugEnabled())
-							{
-								log.debug(cacheLogger + "use recycled ded " + ded.pos + " rep.len = " + rep.len + " ded.len = " + ded.len);
-							}
-						}
-					}
+	/**
+	 * 批量写入：在锁外完成序列化，在一次加锁内为所有元素分配位置，再把位置相连的元素合并为聚集写入
+	 */
+	@Override
+	protected void doUpdateAll(List<ICacheElement<K, V>> cacheElements)
+	{
+		if (!isAlive())
+		{
+			log.error(cacheLogger + "no alive, abort to put " + cacheElements.size() + " elements");
+			return;
+		}
 
-					keyHash.put(ce.getKey(), ded);
+		List<ICacheEvent<K>> events = new ArrayList<ICacheEvent<K>>(cacheElements.size());
+		List<byte[]> datas = new ArrayList<byte[]>(cacheElements.size());
+		List<ICacheElement<K, V>> serialized = new ArrayList<ICacheElement<K, V>>(cacheElements.size());
+		for (ICacheElement<K, V> ce : cacheElements)
+		{
+			events.add(createICacheEvent(ce, ICacheEventWrapper.UPDATE_EVENT));
+			try
+			{
+				datas.add(getElementSerializer().serialize(ce));
+				serialized.add(ce);
+			}
+			catch (IOException e)
+			{
+				log.error(cacheLogger + "fail to serialize element, key: " + ce.getKey(), e);
+			}
+		}
 
-					if (queueInput)
-					{
-						queuedPutList.add(ded);
-						if (log.isDebugEnabled())
-						{
-							log.debug(cacheLogger + "add to queued put list." + queuedPutList.size());
-						}
-					}
+		try
+		{
+			storageLock.writeLock().lock();
+			try
+			{
+				writeElements(serialized, datas);
+				flushJournal();
+			}
+			finally
+			{
+				storageLock.writeLock().unlock();
+			}
+		}
+		catch (IOException e)
+		{
+			log.error(cacheLogger + "fail to update " + serialized.size() + " elements", e);
+		}
+		finally
+		{
+			for (ICacheEvent<K> event : events)
+			{
+				cacheEventLogger(event);
+			}
+		}
+
+		if (log.isDebugEnabled())
+		{
+			log.debug(cacheLogger + "put " + serialized.size() + " elements to file: " + fileName);
+		}
+
+		checkpointIfNeeded();
+	}
+
+	/**
+	 * 为元素分配位置并写入 data 文件，调用者必须持有写锁
+	 */
+	private void writeElement(ICacheElement<K, V> ce, byte[] data) throws IOException
+	{
+		IndexedDiskElementDescriptor ded = allocate(ce, data.length, dataFile.length());
+		//没有更新byteFree大小？？？？？
+		dataFile.write(ded, data);
+
+		if (log.isDebugEnabled())
+		{
+			log.debug(cacheLogger + "put to file: " + fileName + ", key: " + ce.getKey() + ", position: " + ded.pos
+					+ ", size: " + ded.len);
+		}
+	}
+
+	/**
+	 * 先为所有元素分配位置，再一次写入，调用者必须持有写锁。
+	 * 还没有写入的末尾位置由 endOfFile 记录；同一个描述符在批次中被分配多次时（同一个key多次写入，
+	 * 或被 LRU 淘汰后从垃圾列表中重用），只写入最后一次分配的数据
+	 */
+	private void writeElements(List<ICacheElement<K, V>> elements, List<byte[]> datas) throws IOException
+	{
+		int size = elements.size();
+		IndexedDiskElementDescriptor[] allocated = new IndexedDiskElementDescriptor[size];
+		Map<IndexedDiskElementDescriptor, Integer> slots = new IdentityHashMap<IndexedDiskElementDescriptor, Integer>();
+		long endOfFile = dataFile.length();
+		int count = 0;
+		for (int i = 0; i < size; i++)
+		{
+			IndexedDiskElementDescriptor ded = allocate(elements.get(i), datas.get(i).length, endOfFile);
+			if (ded.pos >= endOfFile)
+			{
+				endOfFile = ded.pos + IndexedDisk.HEADER_SIZE_BYTES + ded.len;
+			}
+
+			Integer previous = slots.put(ded, Integer.valueOf(i));
+			if (previous != null)
+			{
+				allocated[previous.intValue()] = null;
+				count--;
+			}
+			allocated[i] = ded;
+			count++;
+		}
+
+		IndexedDiskElementDescriptor[] deds = new IndexedDiskElementDescriptor[count];
+		byte[][] bytes = new byte[count][];
+		int j = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if (allocated[i] != null)
+			{
+				deds[j] = allocated[i];
+				bytes[j] = datas.get(i);
+				j++;
+			}
+		}
+		dataFile.writeAll(deds, bytes);
 
-					if (old != null)
+		if (log.isDebugEnabled())
+		{
+			log.debug(cacheLogger + "put " + count + " records to file: " + fileName + ", end of file: " + endOfFile);
+		}
+	}
+
+	/**
+	 * 为元素分配位置并更新 keyHash：能在旧位置覆盖时覆盖，否则从垃圾列表中重用，最后在 endOfFile 追加。调用者必须持有写锁
+	 */
+	private IndexedDiskElementDescriptor allocate(ICacheElement<K, V> ce, int length, long endOfFile)
+	{
+		IndexedDiskElementDescriptor ded = null;
+
+		IndexedDiskElementDescriptor old = keyHash.get(ce.getKey());
+
+		if (old != null && length <= old.len)
+		{
+			// 如果存在相同的key并且旧的数据长度大于新数据长度，则在旧的位置直接覆盖旧元素
+			ded = old;
+			ded.len = length;
+		}
+		else
+		{
+			//在data文件末尾插入
+			ded = new IndexedDiskElementDescriptor(endOfFile, length);
+
+			if (doRecycle)
+			{
+				// 从垃圾列表中找到 数据大小 >= 插入数据大小 的第一个元素
+				IndexedDiskElementDescriptor rep = recycle.ceiling(ded);
+				if (rep != null)
+				{
+					recycle.remove(rep);
+					ded = rep;
+					ded.len = length;
+					recycleCnt++;
+					this.adjustBytesFree(ded, false);
+					if (log.isDebugEnabled())
 					{
-						addToRecycleBin(old);
+						log.debug(cacheLogger + "use recycled ded " + ded.pos + " rep.len = " + rep.len + " ded.len = " + ded.len);
 					}
 				}
-				//没有更新byteFree大小？？？？？
-				dataFile.write(ded, data);
 			}
-			finally
+
+			keyHash.put(ce.getKey(), ded);
+
+			if (queueInput)
 			{
-				storageLock.writeLock().unlock();
+				queuedPutList.add(ded);
+				if (log.isDebugEnabled())
+				{
+					log.debug(cacheLogger + "add to queued put list." + queuedPutList.size());
+				}
 			}
 
-			if (log.isDebugEnabled())
+			if (old != null)
 			{
-				log.debug(cacheLogger + "put to file: " + fileName + ", key: " + ce.getKey() + ", position: " + ded.pos
-						+ ", size: " + ded.len);
+				addToRecycleBin(old);
 			}
 		}
-		catch (IOException e)
+
+		if (keyJournal != null)
 		{
-			log.error(cacheLogger + "fail to update element, key: " + ce.getKey() + " old: " + old, e);
+			try
+			{
+				keyJournal.put(ce.getKey(), ded);
+			}
+			catch (IOException e)
+			{
+				journalFailed = true;
+				log.error(cacheLogger + "fail to journal put, key: " + ce.getKey(), e);
+			}
 		}
+		return ded;
 	}
 
 	/**
@@ -496,24 +761,55 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 		}
 
 		ICacheElement<K, V> object = null;
+		IndexedDiskElementDescriptor ded = null;
 		try
 		{
-			storageLock.readLock().lock();
+			//有截止时间时最多等待剩余的时间，等不到读锁（例如正在整理文件）时按未命中返回
+			if (!Deadline.tryLock(storageLock.readLock()))
+			{
+				if (log.isDebugEnabled())
+				{
+					log.debug(cacheLogger + "deadline exceeded waiting for storage lock, key = " + key);
+				}
+				return null;
+			}
 			try
 			{
 				//从磁盘 data 文件中读取数据
-				object = readElement(key);
+				ded = keyHash.get(key);
+				object = readElement(key, ded);
 			}
 			finally
 			{
 				storageLock.readLock().unlock();
 			}
 
+			if (object != null && !key.equals(object.getKey()))
+			{
+				log.warn(cacheLogger + "record at " + ded.pos + " belongs to key " + object.getKey() + ", drop stale key = " + key);
+				dropStaleKey(key, ded);
+				object = null;
+			}
+
 			if (object != null)
 			{
 				hitCount.incrementAndGet();
 			}
 		}
+		catch (IndexedDisk.CorruptRecordException cre)
+		{
+			if (keyJournal == null)
+			{
+				log.error(cacheLogger + "fail to get from disk, key = " + key, cre);
+				reset();
+			}
+			else
+			{
+				//有日志时记录不符多半是崩溃后重放的映射指向了已经被覆盖或重用的位置，只删除这个键
+				log.warn(cacheLogger + "record at " + ded.pos + " does not match, drop stale key = " + key + ", " + cre.getMessage());
+				dropStaleKey(key, ded);
+			}
+		}
 		catch (IOException ioe)
 		{
 			log.error(cacheLogger + "fail to get from disk, key = " + key, ioe);
@@ -553,12 +849,10 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
     /**
      * 从磁盘data文件中读数据
      */
-	private ICacheElement<K, V> readElement(K key) throws IOException
+	private ICacheElement<K, V> readElement(K key, IndexedDiskElementDescriptor ded) throws IOException
 	{
 		ICacheElement<K, V> object = null;
 
-		IndexedDiskElementDescriptor ded = keyHash.get(key);
-
 		if (ded != null)
 		{
 			if (log.isDebugEnabled())
@@ -570,6 +864,10 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 				ICacheElement<K, V> readObject = dataFile.readObject(ded);
 				object = readObject;
 			}
+			catch (IndexedDisk.CorruptRecordException e)
+			{
+				throw e;
+			}
 			catch (IOException e)
 			{
 				log.error(cacheLogger + "IO Exception, error occur in reading object from file", e);
@@ -604,6 +902,34 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 		return keys;
 	}
 
+	/**
+	 * 读到的记录属于其他键或者与描述符不符时调用。DurabilityPolicy 不是 NEVER 时日志记录在 doSync 时才落盘，
+	 * 而覆盖和重用的位置立即写入 data 文件，崩溃后重放的日志可能把 key 指向已经被覆盖或被其他键重用的位置。
+	 * 只删除 key 的映射，这个位置可能仍属于另一个键，不加入垃圾列表
+	 */
+	private void dropStaleKey(K key, IndexedDiskElementDescriptor ded)
+	{
+		storageLock.writeLock().lock();
+		try
+		{
+			if (keyHash.get(key) == ded)
+			{
+				keyHash.remove(key);
+				journalRemove(key);
+				flushJournal();
+			}
+		}
+		catch (IOException e)
+		{
+			journalFailed = true;
+			log.error(cacheLogger + "fail to write key journal after dropping stale key = " + key, e);
+		}
+		finally
+		{
+			storageLock.writeLock().unlock();
+		}
+	}
+
 	@Override
 	protected boolean processRemove(K key)
 	{
@@ -636,6 +962,12 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 			{
 				removed = performSingleKeyRemoval(key);
 			}
+			flushJournal();
+		}
+		catch (IOException e)
+		{
+			journalFailed = true;
+			log.error(cacheLogger + "fail to write key journal after removing key = " + key, e);
 		}
 		finally
 		{
@@ -651,6 +983,7 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 		{
 			//removeCount次数达到阈值，进行磁盘文件优化
 			doOptimizeRealTime();
+			checkpointIfNeeded();
 		}
 
 		return removed;
@@ -711,6 +1044,10 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 		IndexedDiskElementDescriptor ded = keyHash.remove(key);
 		removed = ded != null;
 		addToRecycleBin(ded);
+		if (removed)
+		{
+			journalRemove(key);
+		}
 
 		if (log.isDebugEnabled())
 		{
@@ -772,7 +1109,13 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 				log.debug("Could not delete file " + keyFileTemp);
 			}
 
-			dataFile = new IndexedDisk(new File(cacheFileDir, fileName + ".data"), getElementSerializer());
+			resetCount++;
+			if (keyJournal != null)
+			{
+				keyJournal.reset();
+			}
+
+			dataFile = createDataFile();
 			keyFile = new IndexedDisk(new File(cacheFileDir, fileName + ".key"), getElementSerializer());
 
 			initializeRecycleBin();
@@ -887,7 +1230,24 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 			optimizeFile();
 		}
 
-		saveKeys();
+		Thread checkpointThread = currentCheckpointThread;
+		if (checkpointThread != null)
+		{
+			try
+			{
+				checkpointThread.join();
+			}
+			catch (InterruptedException e)
+			{
+				log.error(cacheLogger + "unable to join current checkpoint thread.", e);
+			}
+		}
+
+		//开启日志时 keyHash 已经记录在检查点和日志中，不再整体写入
+		if (keyJournal == null)
+		{
+			saveKeys();
+		}
 
 		try
 		{
@@ -895,6 +1255,10 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 			{
 				log.debug(cacheLogger + "close files, base filename: " + fileName);
 			}
+			if (keyJournal != null)
+			{
+				keyJournal.close();
+			}
 			dataFile.close();
 			dataFile = null;
 			keyFile.close();
@@ -1009,6 +1373,20 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 			queueInput = true;
 			doRecycle = false;
 			defragList = createPositionSortedDescriptorList();
+			if (keyJournal != null)
+			{
+				//移动记录之前标记日志，整理完成后由检查点代替
+				keyJournal.optimizing();
+			}
+		}
+		catch (IOException e)
+		{
+			//没有标记就移动记录，崩溃后日志会指向错误的位置，放弃这次整理
+			log.error(cacheLogger + "fail to mark key journal, skip optimizing.", e);
+			queueInput = false;
+			doRecycle = true;
+			isOptimizing = false;
+			return;
 		}
 		finally
 		{
@@ -1050,12 +1428,221 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 			storageLock.writeLock().unlock();
 		}
 
+		if (keyJournal != null)
+		{
+			checkpoint();
+		}
+
 		if (log.isInfoEnabled())
 		{
 			log.info(cacheLogger + "finished " + timesOptimized + " optimization took " + timer.getElapsedTimeString());
 		}
 	}
 
+	/**
+	 * 写锁内调用：DurabilityPolicy 为 NEVER 时立即把日志记录写入文件，
+	 * 否则由 doSync 在 data 文件刷盘之后写入，日志记录不会早于它指向的数据落盘
+	 */
+	private void flushJournal() throws IOException
+	{
+		if (keyJournal != null && cattr.getDurabilityPolicy() == DurabilityPolicy.NEVER)
+		{
+			keyJournal.flush();
+		}
+	}
+
+	private void journalRemove(K key)
+	{
+		if (keyJournal != null)
+		{
+			try
+			{
+				keyJournal.remove(key);
+			}
+			catch (IOException e)
+			{
+				journalFailed = true;
+				log.error(cacheLogger + "fail to journal remove, key: " + key, e);
+			}
+		}
+	}
+
+	/**
+	 * 日志超过 KeyJournalCheckpointBytes 或有记录写入失败时，创建 currentCheckpointThread 写检查点，
+	 * 写入线程不等待检查点完成
+	 */
+	private void checkpointIfNeeded()
+	{
+		IndexedKeyJournal journal = keyJournal;
+		if (journal == null || currentCheckpointThread != null || !isAlive()
+				|| !(journalFailed || journal.size() >= cattr.getKeyJournalCheckpointBytes()))
+		{
+			return;
+		}
+
+		Thread thread = null;
+		synchronized (this)
+		{
+			if (currentCheckpointThread == null)
+			{
+				thread = new Thread(new Runnable() {
+					@Override
+					public void run()
+					{
+						try
+						{
+							checkpoint();
+						}
+						finally
+						{
+							currentCheckpointThread = null;
+						}
+					}
+				}, "IndexedDiskCache-CheckpointThread");
+				currentCheckpointThread = thread;
+			}
+		}
+
+		if (thread != null)
+		{
+			thread.start();
+		}
+	}
+
+	/**
+	 * 复制 keyHash 和其中的描述符，之后的原地覆盖不影响副本。LRU 集合通过 getQuiet 读取，
+	 * 不改变访问顺序，也不像 entrySet 那样先创建一份包装后的副本
+	 */
+	@SuppressWarnings("unchecked")
+	private HashMap<K, IndexedDiskElementDescriptor> copyKeys()
+	{
+		HashMap<K, IndexedDiskElementDescriptor> keys = new HashMap<K, IndexedDiskElementDescriptor>(keyHash.size() * 4 / 3 + 1);
+		if (keyHash instanceof AbstractLRUMap)
+		{
+			AbstractLRUMap<K, IndexedDiskElementDescriptor> lru = (AbstractLRUMap<K, IndexedDiskElementDescriptor>) keyHash;
+			for (K key : lru.keySet())
+			{
+				IndexedDiskElementDescriptor ded = lru.getQuiet(key);
+				keys.put(key, new IndexedDiskElementDescriptor(ded.pos, ded.len));
+			}
+		}
+		else
+		{
+			for (Map.Entry<K, IndexedDiskElementDescriptor> e : keyHash.entrySet())
+			{
+				keys.put(e.getKey(), new IndexedDiskElementDescriptor(e.getValue().pos, e.getValue().len));
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * 写检查点：在写锁内复制 keyHash 并切换日志；锁外先把 data 文件和切换出去的日志刷盘，
+	 * 再写入 .key.tmp，刷盘后改名为 .key，最后删除切换出去的日志。耗时与 key 的数量成正比，但只有复制时持有写锁
+	 */
+	protected void checkpoint()
+	{
+		synchronized (checkpointLock)
+		{
+			ElapsedTimer timer = new ElapsedTimer();
+			long lockedMillis;
+			HashMap<K, IndexedDiskElementDescriptor> keys;
+			int resets;
+
+			storageLock.writeLock().lock();
+			try
+			{
+				if (keyJournal == null || dataFile == null)
+				{
+					return;
+				}
+				keys = copyKeys();
+				keyJournal.rotate();
+				journalFailed = false;
+				resets = resetCount;
+				lockedMillis = timer.getElapsedTime();
+			}
+			catch (IOException e)
+			{
+				log.error(cacheLogger + "fail to rotate key journal for checkpoint.", e);
+				return;
+			}
+			finally
+			{
+				storageLock.writeLock().unlock();
+			}
+
+			File keyPath = new File(cacheFileDir, fileName + ".key");
+			File tempPath = new File(cacheFileDir, fileName + ".key.tmp");
+			try
+			{
+				//检查点中的位置在改名之前都已经落盘
+				storageLock.readLock().lock();
+				try
+				{
+					if (dataFile == null)
+					{
+						return;
+					}
+					dataFile.force();
+				}
+				finally
+				{
+					storageLock.readLock().unlock();
+				}
+				keyJournal.forceRotated();
+
+				IndexedDisk temp = new IndexedDisk(tempPath, getElementSerializer());
+				try
+				{
+					temp.truncate(0);
+					if (!keys.isEmpty())
+					{
+						temp.writeObject(keys, 0);
+					}
+					temp.force();
+				}
+				finally
+				{
+					temp.close();
+				}
+
+				storageLock.writeLock().lock();
+				try
+				{
+					if (resets != resetCount || keyJournal == null)
+					{
+						//写检查点期间清空过，这个检查点已经过期
+						tempPath.delete();
+						return;
+					}
+					keyFile.close();
+					Files.move(tempPath.toPath(), keyPath.toPath(), StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+					keyFile = new IndexedDisk(keyPath, getElementSerializer());
+					keyJournal.dropRotated();
+					checkpointCount++;
+				}
+				finally
+				{
+					storageLock.writeLock().unlock();
+				}
+			}
+			catch (IOException e)
+			{
+				journalFailed = true;
+				log.error(cacheLogger + "fail to write key checkpoint to: " + keyPath, e);
+				return;
+			}
+
+			if (log.isInfoEnabled())
+			{
+				log.info(cacheLogger + "write key checkpoint, key count: " + keys.size() + " in "
+						+ timer.getElapsedTimeString() + ", write lock held " + lockedMillis + " ms");
+			}
+		}
+	}
+
 	/**
 	 * 填充文件空隙，并返回更新后文件的最后位置
 	 */
@@ -1251,6 +1838,11 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 		elems.add(new StatElement<Integer>("Recycle Count", Integer.valueOf(this.recycleCnt)));
 		elems.add(new StatElement<Integer>("Recycle Bin Size", Integer.valueOf(this.recycle.size())));
 		elems.add(new StatElement<Integer>("Startup Size", Integer.valueOf(this.startupSize)));
+		if (this.keyJournal != null)
+		{
+			elems.add(new StatElement<Long>("Key Journal Bytes", Long.valueOf(this.keyJournal.size())));
+			elems.add(new StatElement<Integer>("Key Checkpoints", Integer.valueOf(this.checkpointCount)));
+		}
 
 		IStats sStats = super.getStatistics();
 		elems.addAll(sStats.getStatElements());
@@ -1271,6 +1863,30 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 		return dataFile.getFilePath();
 	}
 
+	/**
+	 * 读锁保证刷盘期间 data 文件不会被 reset 或关闭
+	 */
+	@Override
+	protected void doSync() throws IOException
+	{
+		storageLock.readLock().lock();
+		try
+		{
+			if (isAlive() && dataFile != null)
+			{
+				dataFile.force();
+				if (keyJournal != null)
+				{
+					keyJournal.force();
+				}
+			}
+		}
+		finally
+		{
+			storageLock.readLock().unlock();
+		}
+	}
+
 	protected static final class PositionComparator implements Comparator<IndexedDiskElementDescriptor>, Serializable
 	{
 		private static final long serialVersionUID = 1L;
@@ -1376,6 +1992,7 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 			}
 			//更新 自由空间 和 垃圾列表
 			addToRecycleBin(value);
+			journalRemove(key);
 
 			if (log.isDebugEnabled())
 			{
@@ -1411,6 +2028,7 @@ public class IndexedDiskCache<K, V> extends AbstractDiskCache<K, V>
 		{
 			//更新 自由空间 和 垃圾列表
 			addToRecycleBin(value);
+			journalRemove(key);
 
 			if (log.isDebugEnabled())
 			{
@@ -20,6 +20,26 @@ public class IndexedDiskCacheAttributes extends AbstractDiskCacheAttributes
 
 	private boolean clearDiskOnStartup = DEFAULT_CLEAR_DISK_ON_STARTUP;
 
+	public static final boolean DEFAULT_MAPPED_READ = false;
+
+	//读取 data 文件时使用内存映射，写入仍然通过 FileChannel
+	private boolean mappedRead = DEFAULT_MAPPED_READ;
+
+	public static final int DEFAULT_MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	//每个映射窗口的字节数，跨越窗口边界的记录通过 FileChannel 读取
+	private int mappedWindowSize = DEFAULT_MAPPED_WINDOW_SIZE;
+
+	public static final boolean DEFAULT_KEY_JOURNAL = false;
+
+	//keyHash 的变化追加到日志中，崩溃后由检查点和日志恢复，关闭时不再整体写入 key 文件
+	private boolean keyJournal = DEFAULT_KEY_JOURNAL;
+
+	public static final long DEFAULT_KEY_JOURNAL_CHECKPOINT_BYTES = 16 * 1024 * 1024;
+
+	//日志超过这个字节数时写检查点并截断日志
+	private long keyJournalCheckpointBytes = DEFAULT_KEY_JOURNAL_CHECKPOINT_BYTES;
+
 	public IndexedDiskCacheAttributes()
 	{
 		super();
@@ -65,6 +85,46 @@ public class IndexedDiskCacheAttributes extends AbstractDiskCacheAttributes
 		return clearDiskOnStartup;
 	}
 
+	public void setMappedRead(boolean mappedRead)
+	{
+		this.mappedRead = mappedRead;
+	}
+
+	public boolean isMappedRead()
+	{
+		return mappedRead;
+	}
+
+	public void setMappedWindowSize(int mappedWindowSize)
+	{
+		this.mappedWindowSize = mappedWindowSize;
+	}
+
+	public int getMappedWindowSize()
+	{
+		return mappedWindowSize;
+	}
+
+	public void setKeyJournal(boolean keyJournal)
+	{
+		this.keyJournal = keyJournal;
+	}
+
+	public boolean isKeyJournal()
+	{
+		return keyJournal;
+	}
+
+	public void setKeyJournalCheckpointBytes(long keyJournalCheckpointBytes)
+	{
+		this.keyJournalCheckpointBytes = keyJournalCheckpointBytes;
+	}
+
+	public long getKeyJournalCheckpointBytes()
+	{
+		return keyJournalCheckpointBytes;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -77,6 +137,10 @@ public class IndexedDiskCacheAttributes extends AbstractDiskCacheAttributes
 		sb.append("\n shutdownSpoolTimeLimit  = " + super.getShutdownSpoolTimeLimit());
 		sb.append("\n optimizeOnShutdown  = " + optimizeOnShutdown);
 		sb.append("\n clearDiskOnStartup  = " + clearDiskOnStartup);
+		sb.append("\n mappedRead  = " + mappedRead);
+		sb.append("\n mappedWindowSize  = " + mappedWindowSize);
+		sb.append("\n keyJournal  = " + keyJournal);
+		sb.append("\n keyJournalCheckpointBytes  = " + keyJournalCheckpointBytes);
 		return sb.toString();
 	}
 }
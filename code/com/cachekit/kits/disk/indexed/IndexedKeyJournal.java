@@ -0,0 +1,397 @@
+package com.cachekit.kits.disk.indexed;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.cachekit.core.model.IElementSerializer;
+
+/**
+ * keyHash 的追加日志，记录每次 put 和 remove，启动时在 .key 检查点之上重放。
+ * 每条记录由内容长度、CRC32 和内容组成：类型（1 字节），put 还有位置和长度，最后是序列化的 key。
+ * 写检查点时把当前日志改名为 .journal.old，检查点写成功后再删除，崩溃时写了一半的尾部记录在重放时丢弃
+ */
+class IndexedKeyJournal
+{
+	private static final Log log = LogFactory.getLog(IndexedKeyJournal.class);
+
+	private static final byte PUT = 1;
+
+	private static final byte REMOVE = 2;
+	//开始整理 data 文件，记录的位置会被移动，直到下一个检查点之前日志都不可用
+	private static final byte OPTIMIZE = 3;
+	//长度和 CRC32
+	private static final int RECORD_HEADER_BYTES = 8;
+
+	private final IElementSerializer elementSerializer;
+
+	private final File activeFile;
+
+	private final File rotatedFile;
+
+	private RandomAccessFile raf;
+
+	private FileChannel fc;
+
+	private long fileSize;
+	//还没有写入文件的记录
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+	private final DataOutputStream out = new DataOutputStream(pending);
+
+	private final CRC32 crc = new CRC32();
+
+	IndexedKeyJournal(File directory, String fileName, IElementSerializer elementSerializer) throws IOException
+	{
+		this.elementSerializer = elementSerializer;
+		this.activeFile = new File(directory, fileName + ".journal");
+		this.rotatedFile = new File(directory, fileName + ".journal.old");
+		open();
+	}
+
+	/**
+	 * 目录中是否有上次运行留下的日志
+	 */
+	static boolean exists(File directory, String fileName)
+	{
+		return new File(directory, fileName + ".journal").length() > 0
+				|| new File(directory, fileName + ".journal.old").exists();
+	}
+
+	private void open() throws IOException
+	{
+		raf = new RandomAccessFile(activeFile, "rw");
+		fc = raf.getChannel();
+		fileSize = fc.size();
+	}
+
+	synchronized void put(Object key, IndexedDiskElementDescriptor ded) throws IOException
+	{
+		byte[] keyBytes = elementSerializer.serialize(key);
+		ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 4 + keyBytes.length);
+		payload.put(PUT);
+		payload.putLong(ded.pos);
+		payload.putInt(ded.len);
+		payload.put(keyBytes);
+		append(payload.array());
+	}
+
+	synchronized void remove(Object key) throws IOException
+	{
+		byte[] keyBytes = elementSerializer.serialize(key);
+		ByteBuffer payload = ByteBuffer.allocate(1 + keyBytes.length);
+		payload.put(REMOVE);
+		payload.put(keyBytes);
+		append(payload.array());
+	}
+
+	/**
+	 * 整理 data 文件之前调用，标记立即写入并刷盘，之后的第一次移动不会早于这个标记落盘
+	 */
+	synchronized void optimizing() throws IOException
+	{
+		append(new byte[] { OPTIMIZE });
+		force();
+	}
+
+	private void append(byte[] payload) throws IOException
+	{
+		crc.reset();
+		crc.update(payload, 0, payload.length);
+		out.writeInt(payload.length);
+		out.writeInt((int) crc.getValue());
+		out.write(payload);
+	}
+
+	/**
+	 * 把缓存的记录追加到日志文件末尾
+	 */
+	synchronized void flush() throws IOException
+	{
+		if (pending.size() == 0)
+		{
+			return;
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+		while (buffer.hasRemaining())
+		{
+			fileSize += fc.write(buffer, fileSize);
+		}
+		pending.reset();
+	}
+
+	synchronized void force() throws IOException
+	{
+		flush();
+		fc.force(false);
+	}
+
+	/**
+	 * 文件中的字节数加上还没有写入的字节数
+	 */
+	synchronized long size()
+	{
+		return fileSize + pending.size();
+	}
+
+	/**
+	 * 写检查点之前调用，调用者必须持有写锁：当前日志改名为 .journal.old，之后的记录写入新的日志。
+	 * 改名时不刷盘，由 forceRotated 在锁外完成。
+	 * 上一次检查点没有完成时 .journal.old 还在，这时把当前日志追加到它的末尾
+	 */
+	synchronized void rotate() throws IOException
+	{
+		flush();
+
+		if (!rotatedFile.exists())
+		{
+			raf.close();
+			if (!activeFile.renameTo(rotatedFile))
+			{
+				open();
+				throw new IOException("Fail to rename " + activeFile + " to " + rotatedFile);
+			}
+			open();
+			return;
+		}
+
+		RandomAccessFile rotated = new RandomAccessFile(rotatedFile, "rw");
+		try
+		{
+			FileChannel target = rotated.getChannel();
+			long position = target.size();
+			long copied = 0;
+			while (copied < fileSize)
+			{
+				copied += fc.transferTo(copied, fileSize - copied, target.position(position + copied));
+			}
+			target.force(false);
+		}
+		finally
+		{
+			rotated.close();
+		}
+		fc.force(false);
+		fc.truncate(0);
+		fileSize = 0;
+	}
+
+	/**
+	 * 把 .journal.old 刷到磁盘
+	 */
+	void forceRotated() throws IOException
+	{
+		RandomAccessFile rotated = new RandomAccessFile(rotatedFile, "rw");
+		try
+		{
+			rotated.getChannel().force(false);
+		}
+		finally
+		{
+			rotated.close();
+		}
+	}
+
+	/**
+	 * 检查点写成功后删除改名的日志
+	 */
+	synchronized void dropRotated()
+	{
+		if (rotatedFile.exists() && !rotatedFile.delete())
+		{
+			log.warn("Fail to delete rotated key journal " + rotatedFile);
+		}
+	}
+
+	/**
+	 * 清空日志，data 文件被清空时调用
+	 */
+	synchronized void reset() throws IOException
+	{
+		pending.reset();
+		fc.truncate(0);
+		fileSize = 0;
+		dropRotated();
+	}
+
+	synchronized void close() throws IOException
+	{
+		flush();
+		fc.force(false);
+		raf.close();
+	}
+
+	/**
+	 * 关闭并删除日志文件，关闭日志功能后 keyHash 已经整体写入 .key 文件时调用
+	 */
+	synchronized void delete() throws IOException
+	{
+		pending.reset();
+		raf.close();
+		dropRotated();
+		if (!activeFile.delete())
+		{
+			log.warn("Fail to delete key journal " + activeFile);
+		}
+	}
+
+	/**
+	 * 依次重放 .journal.old 和当前日志，返回 false 表示日志不可用，keyHash 与 data 文件可能不一致。
+	 * 被 put 替换和被 remove 删除的描述符加入 freed，其中的位置可能又被之后的记录使用，由调用者过滤。
+	 * 当前日志末尾不完整的记录被截掉；.journal.old 中间出现不完整的记录时，之后的记录无法确认，同样返回 false
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized <K> boolean replay(Map<K, IndexedDiskElementDescriptor> keys, Collection<IndexedDiskElementDescriptor> freed)
+			throws IOException
+	{
+		flush();
+
+		if (rotatedFile.exists())
+		{
+			long valid = replayFile(rotatedFile, (Map<Object, IndexedDiskElementDescriptor>) keys, freed);
+			if (valid != rotatedFile.length())
+			{
+				log.warn("Incomplete record in rotated key journal " + rotatedFile + " at " + valid);
+				return false;
+			}
+		}
+
+		long valid = replayFile(activeFile, (Map<Object, IndexedDiskElementDescriptor>) keys, freed);
+		if (valid < 0)
+		{
+			return false;
+		}
+		if (valid != fileSize)
+		{
+			log.warn("Truncate incomplete record at the tail of key journal " + activeFile + ", position " + valid
+					+ ", length " + fileSize);
+			fc.truncate(valid);
+			fileSize = valid;
+		}
+		return true;
+	}
+
+	/**
+	 * 返回最后一条完整记录的结束位置，遇到 OPTIMIZE 标记时返回 -1
+	 */
+	private long replayFile(File file, Map<Object, IndexedDiskElementDescriptor> keys,
+			Collection<IndexedDiskElementDescriptor> freed) throws IOException
+	{
+		long fileLength = file.length();
+		long valid = 0;
+		int puts = 0;
+		int removes = 0;
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try
+		{
+			while (true)
+			{
+				int length;
+				int checksum;
+				byte[] payload;
+				try
+				{
+					length = in.readInt();
+					checksum = in.readInt();
+					//损坏或写了一半的长度与 CRC 不符一样按日志末尾处理，不按它分配内存
+					if (length <= 0 || length > fileLength - valid - RECORD_HEADER_BYTES)
+					{
+						break;
+					}
+					payload = new byte[length];
+					in.readFully(payload);
+				}
+				catch (EOFException e)
+				{
+					break;
+				}
+
+				crc.reset();
+				crc.update(payload, 0, length);
+				if ((int) crc.getValue() != checksum)
+				{
+					break;
+				}
+
+				ByteBuffer record = ByteBuffer.wrap(payload);
+				byte type = record.get();
+				if (type == PUT)
+				{
+					long pos = record.getLong();
+					int len = record.getInt();
+					IndexedDiskElementDescriptor old = keys.put(deSerializeKey(payload, record.position()),
+							new IndexedDiskElementDescriptor(pos, len));
+					if (old != null)
+					{
+						freed.add(old);
+					}
+					puts++;
+				}
+				else if (type == REMOVE)
+				{
+					IndexedDiskElementDescriptor old = keys.remove(deSerializeKey(payload, record.position()));
+					if (old != null)
+					{
+						freed.add(old);
+					}
+					removes++;
+				}
+				else if (type == OPTIMIZE)
+				{
+					log.warn("Key journal " + file + " ends inside an optimization, positions can not be trusted.");
+					return -1;
+				}
+				else
+				{
+					break;
+				}
+
+				valid += RECORD_HEADER_BYTES + length;
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+
+		if (log.isInfoEnabled())
+		{
+			log.info("Replay key journal " + file + ", puts: " + puts + ", removes: " + removes);
+		}
+		return valid;
+	}
+
+	private Object deSerializeKey(byte[] payload, int offset) throws IOException
+	{
+		try
+		{
+			return elementSerializer.deSerialize(payload, offset, payload.length - offset, null);
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new IOException("Fail to deserialize key from journal", e);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "IndexedKeyJournal [file=" + activeFile + ", size=" + size() + "]";
+	}
+}
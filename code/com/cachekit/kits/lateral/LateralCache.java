@@ -3,6 +3,7 @@ package com.cachekit.kits.lateral;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -19,6 +20,9 @@ import com.cachekit.core.stats.IStats;
 import com.cachekit.core.stats.Stats;
 import com.cachekit.kits.AbstractKitCacheEvent;
 import com.cachekit.kits.KitCacheAttributes;
+import com.cachekit.kits.lateral.tcp.LateralTCPService;
+import com.cachekit.utils.timing.Deadline;
+import com.cachekit.utils.timing.DeadlineExceededException;
 //同步线性组件发送端：当本地系统的内存组件和磁盘组件都不存在数据时，就会与请求另外一个系统的线性组件监听器通信，获取相关数据
 public class LateralCache<K, V> extends AbstractKitCacheEvent<K, V>
 {
@@ -70,6 +74,32 @@ public class LateralCache<K, V> extends AbstractKitCacheEvent<K, V>
 		}
 	}
 
+	/**
+	 * 通过 TCP 服务时整批作为一帧发送，出错后的 DaemonCacheServiceRemote 逐个记录
+	 */
+	@Override
+	public void updateAll(List<ICacheElement<K, V>> elements) throws IOException
+	{
+		if (!(lateralCacheService instanceof LateralTCPService))
+		{
+			super.updateAll(elements);
+			return;
+		}
+
+		try
+		{
+			if (log.isDebugEnabled())
+			{
+				log.debug("Update all: lateral = [" + lateralCacheService + "], size = " + elements.size());
+			}
+			((LateralTCPService<K, V>) lateralCacheService).updateAll(elements, CacheInfo.listenerId);
+		}
+		catch (IOException ex)
+		{
+			handleException(ex, "Fail to put " + elements.size() + " elements to " + cacheName + "@" + lateralCacheAttributes);
+		}
+	}
+
 	@Override
 	protected ICacheElement<K, V> processGet(K key) throws IOException
 	{
@@ -83,6 +113,14 @@ public class LateralCache<K, V> extends AbstractKitCacheEvent<K, V>
 		{
 			obj = lateralCacheService.get(cacheName, key);
 		}
+		catch (DeadlineExceededException e)
+		{
+			//只是调用者的截止时间到了，服务器没有故障
+			if (log.isDebugEnabled())
+			{
+				log.debug("Get [" + key + "] abandoned: " + e.getMessage());
+			}
+		}
 		catch (Exception e)
 		{
 			log.error(e);
@@ -120,6 +158,10 @@ public class LateralCache<K, V> extends AbstractKitCacheEvent<K, V>
 		{
 			for (K key : keys)
 			{
+				if (Deadline.expired())
+				{
+					break;
+				}
 				ICacheElement<K, V> element = get(key);
 
 				if (element != null)
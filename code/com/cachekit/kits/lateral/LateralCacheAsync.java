@@ -5,6 +5,7 @@ import java.rmi.UnmarshalException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -82,6 +83,21 @@ public class LateralCacheAsync<K, V> extends AbstractKitCache<K, V>
 		}
 	}
 
+	@Override
+	public void updateAll(List<ICacheElement<K, V>> elements) throws IOException
+	{
+		putCount += elements.size();
+		try
+		{
+			eventQueue.addPutAllEvent(elements);
+		}
+		catch (IOException ex)
+		{
+			log.error(ex);
+			eventQueue.destroy();
+		}
+	}
+
 	@Override
 	public ICacheElement<K, V> get(K key)
 	{
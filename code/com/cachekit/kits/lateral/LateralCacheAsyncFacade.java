@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -20,6 +21,7 @@ import com.cachekit.kits.AbstractKitCache;
 import com.cachekit.kits.KitCache;
 import com.cachekit.kits.KitCacheAttributes;
 import com.cachekit.kits.lateral.tcp.TCPLateralCacheAttributes;
+import com.cachekit.utils.timing.Deadline;
 //一个cache所拥有的LateralCacheAsync集合，每一个LateralCacheAsync连接远程线性监听组件服务的一个端口
 public class LateralCacheAsyncFacade<K, V> extends AbstractKitCache<K, V>
 {
@@ -218,6 +220,26 @@ public class LateralCacheAsyncFacade<K, V> extends AbstractKitCache<K, V>
 		}
 	}
 
+	@Override
+	public void updateAll(List<ICacheElement<K, V>> elements) throws IOException
+	{
+		if (log.isDebugEnabled())
+		{
+			log.debug("Updating all through lateral cache facade, asyncs length = " + asyncs.length);
+		}
+		try
+		{
+			for (int i = 0; i < asyncs.length; i++)
+			{
+				asyncs[i].updateAll(elements);
+			}
+		}
+		catch (Exception ex)
+		{
+			log.error(ex);
+		}
+	}
+
 	/**
 	 * 只要有一个 LateralCacheAsync有返回值就可以
 	 */
@@ -226,6 +248,11 @@ public class LateralCacheAsyncFacade<K, V> extends AbstractKitCache<K, V>
 	{
 		for (int i = 0; i < asyncs.length; i++)
 		{
+			//超过截止时间后不再询问剩余的服务器
+			if (Deadline.expired())
+			{
+				break;
+			}
 			try
 			{
 				ICacheElement<K, V> obj = asyncs[i].get(key);
@@ -252,6 +279,10 @@ public class LateralCacheAsyncFacade<K, V> extends AbstractKitCache<K, V>
 		{
 			for (K key : keys)
 			{
+				if (Deadline.expired())
+				{
+					break;
+				}
 				ICacheElement<K, V> element = get(key);
 
 				if (element != null)
@@ -4,6 +4,8 @@ public enum LateralCommand
 {
 	UPDATE,
 
+	UPDATE_ALL,
+
 	REMOVE,
 
 	REMOVEALL,
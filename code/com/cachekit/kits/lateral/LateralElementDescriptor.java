@@ -1,6 +1,7 @@
 package com.cachekit.kits.lateral;
 
 import java.io.Serializable;
+import java.util.List;
 
 import com.cachekit.core.model.ICacheElement;
 
@@ -10,6 +11,9 @@ public class LateralElementDescriptor<K, V> implements Serializable
 
 	public ICacheElement<K, V> ce;
 
+	//UPDATE_ALL 命令携带的元素，ce 只提供缓存名称
+	public List<ICacheElement<K, V>> ces;
+
 	public long requesterId;
 
 	public LateralCommand command = LateralCommand.UPDATE;
@@ -11,6 +11,7 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -164,6 +165,24 @@ public class LateralTCPReceiver<K, V> implements ILateralCacheListener<K, V>, IS
 		getCache(element.getCacheName()).localUpdate(element);
 	}
 
+	@Override
+	public void handlePutAll(List<ICacheElement<K, V>> elements) throws IOException
+	{
+		putCnt += elements.size();
+
+		if (elements.isEmpty())
+		{
+			return;
+		}
+
+		if (log.isDebugEnabled())
+		{
+			log.debug("handlePutAll cacheName=" + elements.get(0).getCacheName() + ", size=" + elements.size());
+		}
+
+		getCache(elements.get(0).getCacheName()).localUpdateAll(elements);
+	}
+
 	@Override
 	public void handleRemove(String cacheName, K key) throws IOException
 	{
@@ -484,6 +503,7 @@ public class LateralTCPReceiver<K, V> implements ILateralCacheListener<K, V>, IS
 			String cacheName = led.ce.getCacheName();
 			K key = led.ce.getKey();
 			Serializable obj = null;
+			boolean reply = false;
 
 			switch (led.command)
 			{
@@ -491,6 +511,10 @@ public class LateralTCPReceiver<K, V> implements ILateralCacheListener<K, V>, IS
 					handlePut(led.ce);
 					break;
 
+				case UPDATE_ALL:
+					handlePutAll(led.ces);
+					break;
+
 				case REMOVE:
 					if (led.valHashCode != -1)
 					{
@@ -520,21 +544,25 @@ public class LateralTCPReceiver<K, V> implements ILateralCacheListener<K, V>, IS
 
 				case GET:
 					obj = handleGet(cacheName, key);
+					reply = true;
 					break;
 
 				case GET_MATCHING:
 					obj = (Serializable) handleGetMatching(cacheName, (String) key);
+					reply = true;
 					break;
 
 				case GET_KEYSET:
 					obj = (Serializable) handleGetKeySet(cacheName);
+					reply = true;
 					break;
 
 				default:
 					break;
 			}
 
-			if (obj != null)
+			//查询总是响应，未命中时响应 null，发送端不必等到读取超时，每个请求也正好对应一个响应
+			if (reply)
 			{
 				ObjectOutputStream oos = new ObjectOutputStream(socket.getOutputStream());
 				oos.writeObject(obj);
@@ -1,16 +1,23 @@
 package com.cachekit.kits.lateral.tcp;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.cachekit.io.IOClassLoaderWarpper;
 import com.cachekit.kits.lateral.LateralElementDescriptor;
+import com.cachekit.utils.timing.Deadline;
+import com.cachekit.utils.timing.DeadlineExceededException;
 
 //TCP客户端
 public class LateralTCPSender
@@ -20,13 +27,22 @@ public class LateralTCPSender
 	private int socketOpenTimeOut;
 	private int socketSoTimeOut;
 
+	private String host;
+	private int port;
+
 	private ObjectOutputStream oos;
 
 	private Socket socket;
 
 	private int sendCnt = 0;
 
-	private final Object getLock = new int[0];
+	private final ReentrantLock getLock = new ReentrantLock();
+
+	//因截止时间放弃等待的请求数，服务端仍会发回它们的响应
+	private int abandonedResponses = 0;
+
+	//最近一次放弃等待的时间
+	private long lastAbandonedNanos;
 
 	public LateralTCPSender(ITCPLateralCacheAttributes lca) throws IOException
 	{
@@ -59,6 +75,8 @@ public class LateralTCPSender
 
 	protected void init(String host, int port) throws IOException
 	{
+		this.host = host;
+		this.port = port;
 		try
 		{
 			if (log.isInfoEnabled())
@@ -125,16 +143,22 @@ public class LateralTCPSender
 			throw new IOException("No remote connection is available for LateralTCPSender.");
 		}
 
-		synchronized (this.getLock)
+		getLock.lock();
+		try
 		{
 			//不是很懂这个方法
 			oos.writeUnshared(led);
 			oos.flush();
 		}
+		finally
+		{
+			getLock.unlock();
+		}
 	}
 
 	/**
-	 * 向服务端发送数据，然后接受响应
+	 * 向服务端发送数据，然后接受响应。当前线程有截止时间时，等待连接和响应都不超过剩余的时间，
+	 * 超过时抛出 DeadlineExceededException，这个请求的响应在下一次请求之前读掉
 	 */
 	public <K, V> Object sendAndReceive(LateralElementDescriptor<K, V> led) throws IOException
 	{
@@ -148,10 +172,17 @@ public class LateralTCPSender
 			throw new IOException("No remote connection is available for LateralTCPSender.");
 		}
 
-		Object response = null;
+		Deadline deadline = Deadline.current();
+		if (!Deadline.tryLock(getLock))
+		{
+			throw new DeadlineExceededException("Deadline exceeded waiting for connection " + socket);
+		}
 
-		synchronized (this.getLock)
+		try
 		{
+			//先读掉被放弃的请求的响应，保证读到的是本次请求的响应
+			drainAbandoned(deadline);
+
 			try
 			{
 				//先清理输入流中的剩余数据
@@ -168,36 +199,127 @@ public class LateralTCPSender
 
 			oos.writeUnshared(led);
 			oos.flush();
-			ObjectInputStream ois = null;
 
 			try
 			{
-				//接受服务端的响应信息
-				socket.setSoTimeout(socketSoTimeOut);
-				ois = new IOClassLoaderWarpper(socket.getInputStream(), null);
-				response = ois.readObject();
+				return readResponse(deadline);
 			}
-			catch (IOException ioe)
+			catch (DeadlineExceededException e)
 			{
-				String message = "Could not open ObjectInputStream to " + socket + " SoTimeout ["
-						+ socket.getSoTimeout() + "] Connected [" + socket.isConnected() + "]";
-				log.error(message, ioe);
-				throw ioe;
+				abandonedResponses++;
+				lastAbandonedNanos = System.nanoTime();
+				throw e;
+			}
+		}
+		finally
+		{
+			getLock.unlock();
+		}
+	}
+
+	/**
+	 * 读掉被放弃的请求的响应。旧版本的服务端未命中时不发回响应，被放弃的响应可能永远不会到达：
+	 * 最近一次放弃之后超过一个 SocketTimeOut 仍然没有数据，或者读取时等满了 SocketTimeOut，
+	 * 就无法确认输入流中的位置，这时关闭连接并重新连接。SocketTimeOut 为 0 时不设上限
+	 */
+	private void drainAbandoned(Deadline deadline) throws IOException
+	{
+		while (abandonedResponses > 0)
+		{
+			if (socketSoTimeOut > 0 && socket.getInputStream().available() == 0
+					&& System.nanoTime() - lastAbandonedNanos >= TimeUnit.MILLISECONDS.toNanos(socketSoTimeOut))
+			{
+				reconnect();
+				return;
 			}
-			catch (Exception e)
+
+			try
 			{
-				log.error(e);
+				readResponse(deadline);
 			}
-			finally
+			catch (SocketTimeoutException e)
 			{
-				if (ois != null)
-				{
-					ois.close();
-				}
+				reconnect();
+				return;
+			}
+			abandonedResponses--;
+		}
+	}
+
+	/**
+	 * 关闭当前连接并重新连接同一个服务端，之前被放弃的响应不再读取
+	 */
+	private void reconnect() throws IOException
+	{
+		log.warn("No response for " + abandonedResponses + " abandoned requests within SoTimeout [" + socketSoTimeOut
+				+ "], reconnect " + socket);
+		abandonedResponses = 0;
+		try
+		{
+			socket.close();
+		}
+		catch (IOException e)
+		{
+			log.debug("Close socket " + socket + " error. exception is " + e);
+		}
+		init(host, port);
+	}
+
+	/**
+	 * 读取一个响应，有截止时间时读取超时取 SocketTimeOut 和剩余时间中较小的一个。
+	 * 因截止时间超时并且还没有读到响应的任何字节时抛出 DeadlineExceededException，连接仍然可用；
+	 * 已经读了一部分时连接无法继续使用，按读取失败处理
+	 */
+	private Object readResponse(Deadline deadline) throws IOException
+	{
+		int timeout = socketSoTimeOut;
+		boolean bounded = false;
+		if (deadline != null)
+		{
+			long remaining = deadline.remainingMillis();
+			if (remaining <= 0)
+			{
+				deadline.markExceeded();
+				throw new DeadlineExceededException("Deadline exceeded before reading response from " + socket);
+			}
+			if (socketSoTimeOut <= 0 || remaining < socketSoTimeOut)
+			{
+				timeout = (int) remaining;
+				bounded = true;
 			}
 		}
 
-		return response;
+		//不能关闭 ObjectInputStream，关闭会同时关闭 socket
+		CountingInputStream in = new CountingInputStream(socket.getInputStream());
+		try
+		{
+			//接受服务端的响应信息
+			socket.setSoTimeout(timeout);
+			ObjectInputStream ois = new IOClassLoaderWarpper(in, null);
+			return ois.readObject();
+		}
+		catch (SocketTimeoutException ste)
+		{
+			if (bounded && in.count == 0)
+			{
+				deadline.markExceeded();
+				throw new DeadlineExceededException("Deadline exceeded waiting for response from " + socket);
+			}
+			log.error("Read response from " + socket + " timed out, SoTimeout [" + timeout + "] read [" + in.count + "] bytes", ste);
+			throw ste;
+		}
+		catch (IOException ioe)
+		{
+			String message = "Could not open ObjectInputStream to " + socket + " SoTimeout ["
+					+ socket.getSoTimeout() + "] Connected [" + socket.isConnected() + "]";
+			log.error(message, ioe);
+			throw ioe;
+		}
+		catch (ClassNotFoundException e)
+		{
+			log.error(e);
+			return null;
+		}
 	}
 
 	public void dispose() throws IOException
@@ -209,4 +331,39 @@ public class LateralTCPSender
 		oos.close();
 		socket.close();
 	}
+
+	/**
+	 * 记录读取的字节数，用来判断超时时是否已经读了响应的一部分
+	 */
+	private static class CountingInputStream extends FilterInputStream
+	{
+		private long count = 0;
+
+		CountingInputStream(InputStream in)
+		{
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int b = super.read();
+			if (b >= 0)
+			{
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			int n = super.read(b, off, len);
+			if (n > 0)
+			{
+				count += n;
+			}
+			return n;
+		}
+	}
 }
@@ -3,8 +3,10 @@ package com.cachekit.kits.lateral.tcp;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -91,6 +93,34 @@ public class LateralTCPService<K, V> implements ICacheServiceRemote<K, V>
 		}
 	}
 
+	/**
+	 * 一批元素作为一个 UPDATE_ALL 帧发送，allowRemoveOnPut 时逐个发送删除
+	 */
+	public void updateAll(List<ICacheElement<K, V>> items, long requesterId) throws IOException
+	{
+		if (items.isEmpty() || (!this.allowPut && !this.allowRemoveOnPut))
+		{
+			return;
+		}
+
+		if (this.allowRemoveOnPut)
+		{
+			for (ICacheElement<K, V> item : items)
+			{
+				update(item, requesterId);
+			}
+			return;
+		}
+
+		ICacheElement<K, V> first = items.get(0);
+		CacheElement<K, V> ce = new CacheElement<K, V>(first.getCacheName(), first.getKey(), null);
+		LateralElementDescriptor<K, V> led = new LateralElementDescriptor<K, V>(ce);
+		led.ces = new ArrayList<ICacheElement<K, V>>(items);
+		led.requesterId = requesterId;
+		led.command = LateralCommand.UPDATE_ALL;
+		sender.send(led);
+	}
+
 	@Override
 	public void remove(String cacheName, K key) throws IOException
 	{
@@ -0,0 +1,70 @@
+package com.cachekit.kits.writer;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.cachekit.core.model.ICacheWriter;
+
+/**
+ * 用于测试的内存数据源：保存写入的数据并记录调用次数，可以设置每次调用的延迟模拟数据库
+ */
+public class InMemoryCacheWriter<K, V> implements ICacheWriter<K, V>
+{
+	private final Map<K, V> store = new ConcurrentHashMap<K, V>();
+
+	private final AtomicInteger writeAllCount = new AtomicInteger(0);
+
+	private final AtomicInteger deleteAllCount = new AtomicInteger(0);
+
+	private volatile long latencyMillis;
+
+	@Override
+	public void writeAll(Map<K, V> entries) throws Exception
+	{
+		writeAllCount.incrementAndGet();
+		delay();
+		store.putAll(entries);
+	}
+
+	@Override
+	public void deleteAll(Collection<K> keys) throws Exception
+	{
+		deleteAllCount.incrementAndGet();
+		delay();
+		for (K key : keys)
+		{
+			store.remove(key);
+		}
+	}
+
+	private void delay() throws InterruptedException
+	{
+		if (latencyMillis > 0)
+		{
+			Thread.sleep(latencyMillis);
+		}
+	}
+
+	public Map<K, V> getStore()
+	{
+		return Collections.unmodifiableMap(store);
+	}
+
+	public int getWriteAllCount()
+	{
+		return writeAllCount.get();
+	}
+
+	public int getDeleteAllCount()
+	{
+		return deleteAllCount.get();
+	}
+
+	public void setLatencyMillis(long latencyMillis)
+	{
+		this.latencyMillis = latencyMillis;
+	}
+}
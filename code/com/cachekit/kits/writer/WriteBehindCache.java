@@ -0,0 +1,601 @@
+package com.cachekit.kits.writer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.cachekit.core.CacheConstants;
+import com.cachekit.core.CacheStatus;
+import com.cachekit.core.control.group.GroupAttrName;
+import com.cachekit.core.model.ICacheElement;
+import com.cachekit.core.model.ICacheWriter;
+import com.cachekit.core.stats.IStatElement;
+import com.cachekit.core.stats.IStats;
+import com.cachekit.core.stats.StatElement;
+import com.cachekit.core.stats.Stats;
+import com.cachekit.kits.AbstractKitCache;
+import com.cachekit.kits.KitCacheAttributes;
+
+/**
+ * write-behind 组件：区域的更新和删除先进入待写入队列，同一个键的多次修改合并为最后一次，
+ * 由单独的线程按 BatchSize 或 FlushIntervalMillis 批量调用 ICacheWriter 的 writeAll 和 deleteAll。
+ * 队列达到 MaxPending 时更新操作阻塞，超过 MaxBlockMillis 后抛出 IOException。
+ * 这个组件只写不读，get 总是返回 null；区域的 removeAll 只清空缓存，不删除数据源中的数据
+ */
+public class WriteBehindCache<K, V> extends AbstractKitCache<K, V>
+{
+	private static final Log log = LogFactory.getLog(WriteBehindCache.class);
+
+	//dispose 时等待队列写完的最长时间
+	private static final long DISPOSE_WAIT_MILLIS = 30000;
+
+	private final WriteBehindCacheAttributes attr;
+
+	private final ICacheWriter<K, V> writer;
+
+	//按入队顺序保存待写入的键
+	private final LinkedHashMap<K, PendingWrite<K, V>> pending = new LinkedHashMap<K, PendingWrite<K, V>>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notFull = lock.newCondition();
+
+	private final Condition flushDue = lock.newCondition();
+
+	private final Thread flusher;
+
+	private volatile boolean alive = true;
+
+	//flush() 请求立即写入，队列清空后复位
+	private boolean flushRequested = false;
+
+	private final AtomicLong enqueueCount = new AtomicLong(0);
+
+	private final AtomicLong coalesceCount = new AtomicLong(0);
+
+	private final AtomicLong blockCount = new AtomicLong(0);
+
+	private final AtomicLong batchCount = new AtomicLong(0);
+
+	private final AtomicLong failedBatchCount = new AtomicLong(0);
+
+	private final AtomicLong writeCount = new AtomicLong(0);
+
+	private final AtomicLong deleteCount = new AtomicLong(0);
+
+	private final AtomicLong dropCount = new AtomicLong(0);
+
+	private final AtomicLong flushNanos = new AtomicLong(0);
+
+	private volatile long maxFlushNanos;
+
+	//从入队到写入数据源的最大延迟
+	private volatile long maxLagMillis;
+
+	public WriteBehindCache(WriteBehindCacheAttributes attr, ICacheWriter<K, V> writer)
+	{
+		this.attr = attr;
+		this.writer = writer;
+
+		this.flusher = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				flushLoop();
+			}
+		}, "CacheKit-WriteBehind-" + attr.getCacheName());
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+
+		log.info("Create write-behind cache for " + attr.getCacheName() + " with writer " + writer.getClass().getName());
+	}
+
+	@Override
+	public void update(ICacheElement<K, V> element) throws IOException
+	{
+		enqueue(element.getKey(), element.getVal(), false);
+	}
+
+	/**
+	 * 队列已满时等待，同一个键已经在队列中时直接合并，不占用新的位置
+	 */
+	@Override
+	public void updateAll(List<ICacheElement<K, V>> elements) throws IOException
+	{
+		for (ICacheElement<K, V> element : elements)
+		{
+			enqueue(element.getKey(), element.getVal(), false);
+		}
+	}
+
+	/**
+	 * 前缀删除和分组删除无法确定数据源中的键，不写入
+	 */
+	@Override
+	public boolean remove(K key) throws IOException
+	{
+		if ((key instanceof String && ((String) key).endsWith(CacheConstants.NAME_COMPONENT_DELIMITER))
+				|| (key instanceof GroupAttrName && ((GroupAttrName<?>) key).attrName == null))
+		{
+			if (log.isDebugEnabled())
+			{
+				log.debug(getCacheName() + " - skip multi-key remove [" + key + "]");
+			}
+			return false;
+		}
+		enqueue(key, null, true);
+		return false;
+	}
+
+	@Override
+	public void removeAll() throws IOException
+	{
+		if (log.isDebugEnabled())
+		{
+			log.debug(getCacheName() + " - removeAll does not delete from the backing store");
+		}
+	}
+
+	private void enqueue(K key, V val, boolean delete) throws IOException
+	{
+		lock.lock();
+		try
+		{
+			long nanos = TimeUnit.MILLISECONDS.toNanos(attr.getMaxBlockMillis());
+			boolean blocked = false;
+			while (true)
+			{
+				if (!alive)
+				{
+					throw new IOException("Write-behind cache [" + getCacheName() + "] is disposed.");
+				}
+
+				PendingWrite<K, V> p = pending.get(key);
+				if (p != null)
+				{
+					p.val = val;
+					p.delete = delete;
+					p.attempts = 0;
+					coalesceCount.incrementAndGet();
+					return;
+				}
+
+				if (pending.size() < attr.getMaxPending())
+				{
+					break;
+				}
+
+				if (!blocked)
+				{
+					blocked = true;
+					blockCount.incrementAndGet();
+					flushDue.signal();
+				}
+				if (nanos <= 0)
+				{
+					throw new IOException("Write-behind queue of [" + getCacheName() + "] is full, pending: " + pending.size());
+				}
+				try
+				{
+					nanos = notFull.awaitNanos(nanos);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for write-behind queue of [" + getCacheName() + "]");
+				}
+			}
+
+			pending.put(key, new PendingWrite<K, V>(key, val, delete, System.currentTimeMillis()));
+			enqueueCount.incrementAndGet();
+			if (pending.size() >= attr.getBatchSize())
+			{
+				flushDue.signal();
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 立即写入队列中的所有键，不等待 FlushIntervalMillis
+	 */
+	public void flush()
+	{
+		lock.lock();
+		try
+		{
+			flushRequested = true;
+			flushDue.signal();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void flushLoop()
+	{
+		while (true)
+		{
+			List<PendingWrite<K, V>> batch;
+			try
+			{
+				batch = takeBatch();
+			}
+			catch (InterruptedException e)
+			{
+				log.warn(getCacheName() + " - write-behind thread interrupted, pending: " + getSize());
+				return;
+			}
+			if (batch == null)
+			{
+				return;
+			}
+			writeBatch(batch);
+		}
+	}
+
+	/**
+	 * 等待到队列够一批、最早的键到期、请求了 flush 或者组件关闭，再取出一批。关闭并且队列为空时返回 null
+	 */
+	private List<PendingWrite<K, V>> takeBatch() throws InterruptedException
+	{
+		lock.lock();
+		try
+		{
+			while (true)
+			{
+				if (pending.isEmpty())
+				{
+					flushRequested = false;
+					if (!alive)
+					{
+						return null;
+					}
+					flushDue.await();
+					continue;
+				}
+
+				long wait = pending.values().iterator().next().enqueueTime + attr.getFlushIntervalMillis()
+						- System.currentTimeMillis();
+				if (pending.size() >= attr.getBatchSize() || wait <= 0 || flushRequested || !alive)
+				{
+					break;
+				}
+				flushDue.await(wait, TimeUnit.MILLISECONDS);
+			}
+
+			List<PendingWrite<K, V>> batch = new ArrayList<PendingWrite<K, V>>(Math.min(pending.size(), attr.getBatchSize()));
+			Iterator<PendingWrite<K, V>> it = pending.values().iterator();
+			while (it.hasNext() && batch.size() < attr.getBatchSize())
+			{
+				batch.add(it.next());
+				it.remove();
+			}
+			notFull.signalAll();
+			return batch;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void writeBatch(List<PendingWrite<K, V>> batch)
+	{
+		Map<K, V> writes = new LinkedHashMap<K, V>();
+		List<PendingWrite<K, V>> writeOps = new ArrayList<PendingWrite<K, V>>();
+		List<K> deletes = new ArrayList<K>();
+		List<PendingWrite<K, V>> deleteOps = new ArrayList<PendingWrite<K, V>>();
+		for (PendingWrite<K, V> p : batch)
+		{
+			if (p.delete)
+			{
+				deletes.add(p.key);
+				deleteOps.add(p);
+			}
+			else
+			{
+				writes.put(p.key, p.val);
+				writeOps.add(p);
+			}
+		}
+
+		long start = System.nanoTime();
+		if (!writes.isEmpty())
+		{
+			try
+			{
+				writer.writeAll(writes);
+				writeCount.addAndGet(writes.size());
+				recordLag(writeOps);
+			}
+			catch (Exception e)
+			{
+				log.error(getCacheName() + " - write " + writes.size() + " entries to backing store error.", e);
+				failedBatchCount.incrementAndGet();
+				requeue(writeOps);
+			}
+		}
+		if (!deletes.isEmpty())
+		{
+			try
+			{
+				writer.deleteAll(deletes);
+				deleteCount.addAndGet(deletes.size());
+				recordLag(deleteOps);
+			}
+			catch (Exception e)
+			{
+				log.error(getCacheName() + " - delete " + deletes.size() + " keys from backing store error.", e);
+				failedBatchCount.incrementAndGet();
+				requeue(deleteOps);
+			}
+		}
+
+		long elapsed = System.nanoTime() - start;
+		batchCount.incrementAndGet();
+		flushNanos.addAndGet(elapsed);
+		if (elapsed > maxFlushNanos)
+		{
+			maxFlushNanos = elapsed;
+		}
+
+		if (log.isDebugEnabled())
+		{
+			log.debug(getCacheName() + " - flushed " + writes.size() + " writes and " + deletes.size() + " deletes in "
+					+ TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
+		}
+	}
+
+	private void recordLag(List<PendingWrite<K, V>> ops)
+	{
+		long now = System.currentTimeMillis();
+		for (PendingWrite<K, V> p : ops)
+		{
+			long lag = now - p.enqueueTime;
+			if (lag > maxLagMillis)
+			{
+				maxLagMillis = lag;
+			}
+		}
+	}
+
+	/**
+	 * 写入失败的键重新入队，等待 FlushIntervalMillis 后重试；期间已经有更新的修改时丢弃旧的修改
+	 */
+	private void requeue(List<PendingWrite<K, V>> ops)
+	{
+		lock.lock();
+		try
+		{
+			long now = System.currentTimeMillis();
+			for (PendingWrite<K, V> p : ops)
+			{
+				if (pending.containsKey(p.key))
+				{
+					continue;
+				}
+				if (++p.attempts > attr.getMaxRetries())
+				{
+					dropCount.incrementAndGet();
+					log.error(getCacheName() + " - drop " + (p.delete ? "delete" : "write") + " of key [" + p.key
+							+ "] after " + attr.getMaxRetries() + " retries.");
+					continue;
+				}
+				p.enqueueTime = now;
+				pending.put(p.key, p);
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public ICacheElement<K, V> get(K key) throws IOException
+	{
+		return null;
+	}
+
+	@Override
+	public Map<K, ICacheElement<K, V>> getMultiple(Set<K> keys) throws IOException
+	{
+		return new HashMap<K, ICacheElement<K, V>>();
+	}
+
+	@Override
+	public Map<K, ICacheElement<K, V>> getMatching(String pattern) throws IOException
+	{
+		return new HashMap<K, ICacheElement<K, V>>();
+	}
+
+	@Override
+	public Set<K> getKeySet() throws IOException
+	{
+		return Collections.emptySet();
+	}
+
+	/**
+	 * 停止接收修改，等待队列中剩余的键写完
+	 */
+	@Override
+	public void dispose() throws IOException
+	{
+		lock.lock();
+		try
+		{
+			alive = false;
+			flushDue.signalAll();
+			notFull.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		try
+		{
+			flusher.join(DISPOSE_WAIT_MILLIS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		int remaining = getSize();
+		if (remaining > 0)
+		{
+			log.warn(getCacheName() + " - write-behind cache disposed with " + remaining + " pending writes.");
+		}
+		log.info("Write-behind cache " + getCacheName() + " disposed.");
+	}
+
+	/**
+	 * 待写入的键数
+	 */
+	@Override
+	public int getSize()
+	{
+		lock.lock();
+		try
+		{
+			return pending.size();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 最早的待写入键已经等待的时间
+	 */
+	public long getOldestPendingMillis()
+	{
+		lock.lock();
+		try
+		{
+			return pending.isEmpty() ? 0 : System.currentTimeMillis() - pending.values().iterator().next().enqueueTime;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public CacheStatus getStatus()
+	{
+		return alive ? CacheStatus.ALIVE : CacheStatus.DISPOSED;
+	}
+
+	@Override
+	public CacheType getCacheType()
+	{
+		return CacheType.WRITER_CACHE;
+	}
+
+	@Override
+	public String getCacheName()
+	{
+		return attr.getCacheName();
+	}
+
+	@Override
+	public KitCacheAttributes getKitCacheAttributes()
+	{
+		return attr;
+	}
+
+	public ICacheWriter<K, V> getWriter()
+	{
+		return writer;
+	}
+
+	@Override
+	public String getEventLoggerExtraInfo()
+	{
+		return writer.getClass().getName();
+	}
+
+	@Override
+	public String getStats()
+	{
+		return getStatistics().toString();
+	}
+
+	@Override
+	public IStats getStatistics()
+	{
+		IStats stats = new Stats();
+		stats.setTypeName("Write Behind Cache");
+
+		ArrayList<IStatElement<?>> elems = new ArrayList<IStatElement<?>>();
+
+		long batches = batchCount.get();
+		elems.add(new StatElement<Boolean>("Is Alive", Boolean.valueOf(alive)));
+		elems.add(new StatElement<Integer>("Pending Writes", Integer.valueOf(getSize())));
+		elems.add(new StatElement<Integer>("Max Pending", Integer.valueOf(attr.getMaxPending())));
+		elems.add(new StatElement<Long>("Oldest Pending Millis", Long.valueOf(getOldestPendingMillis())));
+		elems.add(new StatElement<Long>("Enqueue Count", Long.valueOf(enqueueCount.get())));
+		elems.add(new StatElement<Long>("Coalesce Count", Long.valueOf(coalesceCount.get())));
+		elems.add(new StatElement<Long>("Block Count", Long.valueOf(blockCount.get())));
+		elems.add(new StatElement<Long>("Batch Count", Long.valueOf(batches)));
+		elems.add(new StatElement<Long>("Failed Batch Count", Long.valueOf(failedBatchCount.get())));
+		elems.add(new StatElement<Long>("Write Count", Long.valueOf(writeCount.get())));
+		elems.add(new StatElement<Long>("Delete Count", Long.valueOf(deleteCount.get())));
+		elems.add(new StatElement<Long>("Drop Count", Long.valueOf(dropCount.get())));
+		elems.add(new StatElement<Long>("Average Flush Millis",
+				Long.valueOf(batches == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(flushNanos.get() / batches))));
+		elems.add(new StatElement<Long>("Max Flush Millis", Long.valueOf(TimeUnit.NANOSECONDS.toMillis(maxFlushNanos))));
+		elems.add(new StatElement<Long>("Max Lag Millis", Long.valueOf(maxLagMillis)));
+
+		stats.setStatElements(elems);
+
+		return stats;
+	}
+
+	/**
+	 * 一个待写入的修改，val 为 null 并且 delete 为 true 时表示删除
+	 */
+	private static class PendingWrite<K, V>
+	{
+		private final K key;
+
+		private V val;
+
+		private boolean delete;
+
+		private long enqueueTime;
+
+		private int attempts;
+
+		PendingWrite(K key, V val, boolean delete, long enqueueTime)
+		{
+			this.key = key;
+			this.val = val;
+			this.delete = delete;
+			this.enqueueTime = enqueueTime;
+		}
+	}
+}
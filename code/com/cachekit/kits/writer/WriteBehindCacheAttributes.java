@@ -0,0 +1,110 @@
+package com.cachekit.kits.writer;
+
+import com.cachekit.kits.AbstractKitCacheAttributes;
+
+public class WriteBehindCacheAttributes extends AbstractKitCacheAttributes
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final int DEFAULT_BATCH_SIZE = 100;
+
+	private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+	private static final int DEFAULT_MAX_PENDING = 10000;
+
+	private static final long DEFAULT_MAX_BLOCK_MILLIS = 5000;
+
+	private static final int DEFAULT_MAX_RETRIES = 3;
+
+	//ICacheWriter 的实现类
+	private String cacheWriterName;
+
+	//一批最多写入的键数
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	//最早的待写入键等待超过这个时间后，不足一批也写入
+	private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+
+	//待写入键数的上限，达到上限时更新操作阻塞
+	private int maxPending = DEFAULT_MAX_PENDING;
+
+	//阻塞超过这个时间后更新操作失败
+	private long maxBlockMillis = DEFAULT_MAX_BLOCK_MILLIS;
+
+	//写入失败后重试的次数，超过后丢弃并记录错误
+	private int maxRetries = DEFAULT_MAX_RETRIES;
+
+	public String getCacheWriterName()
+	{
+		return cacheWriterName;
+	}
+
+	public void setCacheWriterName(String cacheWriterName)
+	{
+		this.cacheWriterName = cacheWriterName;
+	}
+
+	public int getBatchSize()
+	{
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize)
+	{
+		this.batchSize = batchSize;
+	}
+
+	public long getFlushIntervalMillis()
+	{
+		return flushIntervalMillis;
+	}
+
+	public void setFlushIntervalMillis(long flushIntervalMillis)
+	{
+		this.flushIntervalMillis = flushIntervalMillis;
+	}
+
+	public int getMaxPending()
+	{
+		return maxPending;
+	}
+
+	public void setMaxPending(int maxPending)
+	{
+		this.maxPending = maxPending;
+	}
+
+	public long getMaxBlockMillis()
+	{
+		return maxBlockMillis;
+	}
+
+	public void setMaxBlockMillis(long maxBlockMillis)
+	{
+		this.maxBlockMillis = maxBlockMillis;
+	}
+
+	public int getMaxRetries()
+	{
+		return maxRetries;
+	}
+
+	public void setMaxRetries(int maxRetries)
+	{
+		this.maxRetries = maxRetries;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("WriteBehindCacheAttributes ");
+		sb.append("\n cacheWriterName = " + cacheWriterName);
+		sb.append("\n batchSize = " + batchSize);
+		sb.append("\n flushIntervalMillis = " + flushIntervalMillis);
+		sb.append("\n maxPending = " + maxPending);
+		sb.append("\n maxBlockMillis = " + maxBlockMillis);
+		sb.append("\n maxRetries = " + maxRetries);
+		return sb.toString();
+	}
+}
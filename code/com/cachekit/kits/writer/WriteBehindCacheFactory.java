@@ -0,0 +1,41 @@
+package com.cachekit.kits.writer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.cachekit.core.logger.ICacheEventWrapper;
+import com.cachekit.core.model.ICacheWriter;
+import com.cachekit.core.model.IContextCacheManager;
+import com.cachekit.core.model.IElementSerializer;
+import com.cachekit.kits.AbstractKitCacheFactory;
+import com.cachekit.kits.KitCacheAttributes;
+import com.cachekit.utils.config.OptionConverter;
+
+public class WriteBehindCacheFactory extends AbstractKitCacheFactory
+{
+	private static final Log log = LogFactory.getLog(WriteBehindCacheFactory.class);
+
+	@Override
+	public <K, V> WriteBehindCache<K, V> createCache(KitCacheAttributes cattr, IContextCacheManager cacheMgr,
+			ICacheEventWrapper cacheEventWrapper, IElementSerializer elementSerializer)
+	{
+		WriteBehindCacheAttributes wbattr = (WriteBehindCacheAttributes) cattr;
+
+		if (log.isDebugEnabled())
+		{
+			log.debug("Create WriteBehindCache for attributes = " + wbattr);
+		}
+
+		ICacheWriter<K, V> writer = OptionConverter.instantiateByClassName(wbattr.getCacheWriterName(), null);
+		if (writer == null)
+		{
+			throw new IllegalArgumentException("Cache writer [" + wbattr.getCacheWriterName() + "] can not be created.");
+		}
+
+		WriteBehindCache<K, V> cache = new WriteBehindCache<K, V>(wbattr, writer);
+
+		cache.setCacheEventLogger(cacheEventWrapper);
+
+		return cache;
+	}
+}
@@ -1,5 +1,8 @@
 package com.cachekit.utils.access;
 
+/**
+ * 等待状态由 CacheKitWorker 中的 future 维护，finished 标记只为兼容旧的调用者保留
+ */
 public abstract class AbstractCacheKitWorkerHelper<V> implements CacheKitWorkerHelper<V>
 {
 	private boolean finished = false;
@@ -9,12 +12,14 @@ public abstract class AbstractCacheKitWorkerHelper<V> implements CacheKitWorkerH
 		super();
 	}
 
+	@Deprecated
 	@Override
 	public synchronized boolean isFinished()
 	{
 		return finished;
 	}
 
+	@Deprecated
 	@Override
 	public synchronized void setFinished(boolean isFinished)
 	{
@@ -0,0 +1,28 @@
+package com.cachekit.utils.access;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.cachekit.core.model.ICacheLoader;
+
+/**
+ * 只实现 load 的加载器，loadAll 逐个调用 load；数据源支持批量查询时应覆盖 loadAll
+ */
+public abstract class AbstractCacheLoader<K, V> implements ICacheLoader<K, V>
+{
+	@Override
+	public Map<K, V> loadAll(Set<K> keys) throws Exception
+	{
+		Map<K, V> result = new HashMap<K, V>();
+		for (K key : keys)
+		{
+			V val = load(key);
+			if (val != null)
+			{
+				result.put(key, val);
+			}
+		}
+		return result;
+	}
+}
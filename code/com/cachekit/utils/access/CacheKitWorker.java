@@ -1,7 +1,12 @@
 package com.cachekit.utils.access;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -10,7 +15,13 @@ import com.cachekit.CacheKit;
 import com.cachekit.access.CacheKitAccess;
 import com.cachekit.access.GroupCacheKitAccess;
 import com.cachekit.access.exception.CacheException;
+import com.cachekit.core.control.group.GroupAttrName;
+import com.cachekit.core.control.group.GroupId;
 
+/**
+ * 缓存未命中时只让一个线程调用 CacheKitWorkerHelper 计算值并写入缓存，同一个键的其他调用者等待这次计算的 future，
+ * 直接拿到计算结果或异常，等待可以被中断，也可以设置超时
+ */
 public class CacheKitWorker<K, V>
 {
 	private static final Log logger = LogFactory.getLog(CacheKitWorker.class);
@@ -19,7 +30,8 @@ public class CacheKitWorker<K, V>
 
 	private GroupCacheKitAccess<K, V> groupCache;
 
-	private volatile ConcurrentMap<String, CacheKitWorkerHelper<V>> map = new ConcurrentHashMap<String, CacheKitWorkerHelper<V>>();
+	//正在计算的键：普通键直接使用 key，分组中的键使用 GroupAttrName
+	private final ConcurrentMap<Object, CompletableFuture<V>> inFlight = new ConcurrentHashMap<Object, CompletableFuture<V>>();
 
 	private final String cacheName;
 
@@ -44,39 +56,52 @@ public class CacheKitWorker<K, V>
 
 	public V getResult(K key, CacheKitWorkerHelper<V> worker) throws Exception
 	{
-		return run(key, null, worker);
+		return run(key, null, worker, 0, TimeUnit.MILLISECONDS);
 	}
 
 	public V getResult(K key, String group, CacheKitWorkerHelper<V> worker) throws Exception
 	{
-		return run(key, group, worker);
+		return run(key, group, worker, 0, TimeUnit.MILLISECONDS);
 	}
 
-	private V run(K key, String group, CacheKitWorkerHelper<V> helper) throws Exception
+	/**
+	 * 等待其他线程的计算超过 timeout 时抛出 TimeoutException，本线程负责计算时不受 timeout 限制
+	 */
+	public V getResult(K key, CacheKitWorkerHelper<V> worker, long timeout, TimeUnit unit) throws Exception
 	{
-		V result = null;
+		return run(key, null, worker, timeout, unit);
+	}
 
-		CacheKitWorkerHelper<V> myHelper = map.putIfAbsent(getCacheName() + key, helper);
+	public V getResult(K key, String group, CacheKitWorkerHelper<V> worker, long timeout, TimeUnit unit) throws Exception
+	{
+		return run(key, group, worker, timeout, unit);
+	}
 
-		if (myHelper != null)
+	@SuppressWarnings("deprecation")
+	private V run(K key, String group, CacheKitWorkerHelper<V> helper, long timeout, TimeUnit unit) throws Exception
+	{
+		V result = lookup(key, group);
+		if (result != null)
 		{
-			synchronized (myHelper)
-			{
-
-				while (!myHelper.isFinished())
-				{
-					try
-					{
-						myHelper.wait();
-					}
-					catch (InterruptedException e)
-					{
-
-					}
-				}
+			return result;
+		}
 
+		Object flightKey = (group == null) ? key : new GroupAttrName<K>(new GroupId(cacheName, group), key);
+		final CompletableFuture<V> mine = new CompletableFuture<V>();
+		CompletableFuture<V> flight = inFlight.computeIfAbsent(flightKey, new Function<Object, CompletableFuture<V>>()
+		{
+			@Override
+			public CompletableFuture<V> apply(Object k)
+			{
+				return mine;
 			}
+		});
+
+		if (flight != mine)
+		{
+			return await(flight, timeout, unit);
 		}
+
 		try
 		{
 			if (logger.isDebugEnabled())
@@ -84,35 +109,39 @@ public class CacheKitWorker<K, V>
 				logger.debug(getCacheName() + " is doing the work.");
 			}
 
-			if (group != null)
-			{
-				result = groupCache.getFromGroup(key, group);
-			}
-			else
-			{
-				result = cache.get(key);
-			}
+			//等待进入 inFlight 期间上一次计算可能已经写入缓存
+			result = lookup(key, group);
 			if (result == null)
 			{
 				result = helper.doWork();
-
-				if (group != null)
+				if (result != null)
 				{
-					groupCache.putInGroup(key, group, result);
-				}
-				else
-				{
-					cache.put(key, result);
+					if (group != null)
+					{
+						groupCache.putInGroup(key, group, result);
+					}
+					else
+					{
+						cache.put(key, result);
+					}
 				}
 			}
+			mine.complete(result);
 			return result;
 		}
+		catch (Exception e)
+		{
+			mine.completeExceptionally(e);
+			throw e;
+		}
 		finally
 		{
-			if (myHelper == null)
+			if (!mine.isDone())
 			{
-				map.remove(getCacheName() + key);
+				mine.completeExceptionally(new CacheException("Work for key [" + key + "] aborted."));
 			}
+			inFlight.remove(flightKey, mine);
+			//兼容仍在 helper 上轮询或等待 isFinished 的旧调用者
 			synchronized (helper)
 			{
 				helper.setFinished(true);
@@ -120,4 +149,37 @@ public class CacheKitWorker<K, V>
 			}
 		}
 	}
+
+	private V lookup(K key, String group)
+	{
+		return (group != null) ? groupCache.getFromGroup(key, group) : cache.get(key);
+	}
+
+	/**
+	 * 计算抛出的异常原样抛给等待者
+	 */
+	private V await(CompletableFuture<V> flight, long timeout, TimeUnit unit) throws Exception
+	{
+		try
+		{
+			return (timeout > 0) ? flight.get(timeout, unit) : flight.get();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+			{
+				throw (Exception) cause;
+			}
+			throw new CacheException("Work error.", cause);
+		}
+		catch (TimeoutException e)
+		{
+			if (logger.isDebugEnabled())
+			{
+				logger.debug(getCacheName() + " timed out waiting for the work.");
+			}
+			throw e;
+		}
+	}
 }
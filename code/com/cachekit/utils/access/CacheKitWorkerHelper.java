@@ -2,9 +2,23 @@ package com.cachekit.utils.access;
 
 public interface CacheKitWorkerHelper<V>
 {
-	boolean isFinished();
+	/**
+	 * @deprecated 等待由 CacheKitWorker 内部的 future 完成，不再需要轮询这个标记
+	 */
+	@Deprecated
+	default boolean isFinished()
+	{
+		return false;
+	}
 
-	void setFinished(boolean isFinished);
+	/**
+	 * @deprecated CacheKitWorker 在计算结束后仍会调用，只为兼容旧的实现保留
+	 */
+	@Deprecated
+	default void setFinished(boolean isFinished)
+	{
+	}
 
+	//缓存未命中时计算值，同一个键同时只有一个线程调用
 	V doWork() throws Exception;
 }
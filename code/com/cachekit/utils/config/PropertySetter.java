@@ -156,6 +156,10 @@ public class PropertySetter
 		{
 			return Long.valueOf(val);
 		}
+		else if (Double.TYPE.isAssignableFrom(type))
+		{
+			return Double.valueOf(val);
+		}
 		else if (Boolean.TYPE.isAssignableFrom(type))
 		{
 			if ("true".equalsIgnoreCase(val))
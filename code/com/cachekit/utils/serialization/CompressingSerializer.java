@@ -6,6 +6,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 
 import com.cachekit.core.model.IElementSerializer;
 import com.cachekit.io.IOClassLoaderWarpper;
@@ -44,10 +45,31 @@ public class CompressingSerializer implements IElementSerializer
 		{
 			return null;
 		}
-		byte[] decompressedByteArray = CompressionUtil.decompressByteArray(data);
+		return deSerialize(data, 0, data.length, loader);
+	}
+
+	@Override
+	public <T> T deSerialize(byte[] data, int offset, int length, ClassLoader loader) throws IOException, ClassNotFoundException
+	{
+		if (data == null)
+		{
+			return null;
+		}
+		byte[] decompressedByteArray = CompressionUtil.decompressByteArray(data, offset, length, 1024);
 		return deserializeObject(decompressedByteArray);
 	}
 
+	/**
+	 * Inflater 在 Java 8 中只能读取字节数组，压缩数据先复制出来再解压
+	 */
+	@Override
+	public <T> T deSerialize(ByteBuffer buffer, ClassLoader loader) throws IOException, ClassNotFoundException
+	{
+		byte[] data = new byte[buffer.remaining()];
+		buffer.get(data);
+		return deSerialize(data, 0, data.length, loader);
+	}
+
 	protected <T> T deserializeObject(byte[] decompressedByteArray) throws IOException, ClassNotFoundException
 	{
 		ByteArrayInputStream bais = new ByteArrayInputStream(decompressedByteArray);
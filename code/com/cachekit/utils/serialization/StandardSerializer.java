@@ -1,13 +1,15 @@
 package com.cachekit.utils.serialization;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 
 import com.cachekit.core.model.IElementSerializer;
+import com.cachekit.io.ByteBufferInputStream;
 import com.cachekit.io.IOClassLoaderWarpper;
 
 public class StandardSerializer implements IElementSerializer
@@ -31,9 +33,30 @@ public class StandardSerializer implements IElementSerializer
 	@Override
 	public <T> T deSerialize(byte[] data, ClassLoader loader) throws IOException, ClassNotFoundException
 	{
-		ByteArrayInputStream bais = new ByteArrayInputStream(data);
-		BufferedInputStream bis = new BufferedInputStream(bais);
-		ObjectInputStream ois = new IOClassLoaderWarpper(bis, loader);
+		return deSerialize(data, 0, data.length, loader);
+	}
+
+	/**
+	 * 直接读取字节数组，不再包一层 BufferedInputStream，避免每次复制数据并分配缓冲区
+	 */
+	@Override
+	public <T> T deSerialize(byte[] data, int offset, int length, ClassLoader loader) throws IOException, ClassNotFoundException
+	{
+		return readObject(new ByteArrayInputStream(data, offset, length), loader);
+	}
+
+	/**
+	 * 直接从 buffer 中读取，不复制到字节数组
+	 */
+	@Override
+	public <T> T deSerialize(ByteBuffer buffer, ClassLoader loader) throws IOException, ClassNotFoundException
+	{
+		return readObject(new ByteBufferInputStream(buffer), loader);
+	}
+
+	private <T> T readObject(InputStream in, ClassLoader loader) throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream ois = new IOClassLoaderWarpper(in, loader);
 		try
 		{
 			@SuppressWarnings("unchecked")
@@ -125,15 +125,14 @@ public class DoubleLinkedList<T extends DoubleLinkedListNode> {
     }
 
     /**
-     * 只需删除一个引用即可，不形成互相引用
+     * 清空链表，同时断开每个节点的 prev、next 引用
      */
     public synchronized void removeAll() {
-        //只删除了pre引用，next引用没有删除？
+        //prev、next 都要清空，否则仍被其他地方引用的节点会被当作还在链表中
         for (T me = first; me != null; ) {
-            if (me.prev != null) {
-                me.prev = null;
-            }
             T next = (T) me.next;
+            me.prev = null;
+            me.next = null;
             me = next;
         }
         first = last = null;
@@ -0,0 +1,118 @@
+package com.cachekit.utils.struct;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按键的哈希值把锁分成固定数量的条带，不同的键大多落在不同的条带上，互不阻塞。
+ * 需要排斥所有键时（如 removeAll）按顺序获取全部条带，避免死锁。
+ * 每个条带还有一个修改次数，写入者持有条带锁时调用 modified，
+ * 不持有锁的读取者先记下 version，之后在锁内比较，即可知道期间有没有同一条带上的写入。
+ */
+public class StripedLock
+{
+	private final ReentrantLock[] locks;
+
+	private final int mask;
+
+	private final AtomicLongArray versions;
+
+	public StripedLock(int stripes)
+	{
+		int count = 1;
+		while (count < stripes)
+		{
+			count <<= 1;
+		}
+		locks = new ReentrantLock[count];
+		for (int i = 0; i < count; i++)
+		{
+			locks[i] = new ReentrantLock();
+		}
+		mask = count - 1;
+		versions = new AtomicLongArray(count);
+	}
+
+	public Lock getLock(Object key)
+	{
+		return locks[indexOf(key)];
+	}
+
+	private int indexOf(Object key)
+	{
+		int h = key.hashCode() * 0x9e3779b9;
+		h ^= (h >>> 16);
+		return h & mask;
+	}
+
+	/**
+	 * 键所在条带的修改次数
+	 */
+	public long version(Object key)
+	{
+		return versions.get(indexOf(key));
+	}
+
+	/**
+	 * 键所在条带发生了写入，调用者必须持有该条带的锁
+	 */
+	public void modified(Object key)
+	{
+		versions.incrementAndGet(indexOf(key));
+	}
+
+	/**
+	 * 所有条带都发生了写入，调用者必须持有全部条带的锁
+	 */
+	public void modifiedAll()
+	{
+		for (int i = 0; i < versions.length(); i++)
+		{
+			versions.incrementAndGet(i);
+		}
+	}
+
+	/**
+	 * 一组键涉及的条带，按下标排序并去重，调用者按返回的顺序加锁、逆序解锁
+	 */
+	public List<Lock> getLocks(Collection<?> keys)
+	{
+		boolean[] used = new boolean[locks.length];
+		for (Object key : keys)
+		{
+			used[indexOf(key)] = true;
+		}
+		List<Lock> result = new ArrayList<Lock>();
+		for (int i = 0; i < locks.length; i++)
+		{
+			if (used[i])
+			{
+				result.add(locks[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 按下标顺序获取所有条带
+	 */
+	public void lockAll()
+	{
+		for (ReentrantLock lock : locks)
+		{
+			lock.lock();
+		}
+	}
+
+	public void unlockAll()
+	{
+		for (int i = locks.length - 1; i >= 0; i--)
+		{
+			locks[i].unlock();
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package com.cachekit.utils.timing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 一次读取的截止时间，保存在当前线程中。ContextCache 在组件之间检查截止时间，
+ * 磁盘和横向组件等待锁和网络响应时只等待剩余的时间；同时记录本次读取查找过和跳过的组件
+ */
+public final class Deadline
+{
+	private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>();
+
+	private final long deadlineNanos;
+
+	private final Deadline previous;
+
+	private final List<String> consulted = new ArrayList<String>();
+
+	private final List<String> skipped = new ArrayList<String>();
+
+	private boolean exceeded = false;
+
+	private Deadline(long deadlineNanos, Deadline previous)
+	{
+		this.deadlineNanos = deadlineNanos;
+		this.previous = previous;
+	}
+
+	/**
+	 * 在当前线程上开始一个截止时间，外层的截止时间更早时沿用外层的，必须在 finally 中调用 end
+	 */
+	public static Deadline begin(long budget, TimeUnit unit)
+	{
+		Deadline previous = CURRENT.get();
+		long deadlineNanos = System.nanoTime() + unit.toNanos(Math.max(0, budget));
+		if (previous != null && previous.deadlineNanos - deadlineNanos < 0)
+		{
+			deadlineNanos = previous.deadlineNanos;
+		}
+
+		Deadline deadline = new Deadline(deadlineNanos, previous);
+		CURRENT.set(deadline);
+		return deadline;
+	}
+
+	/**
+	 * 恢复外层的截止时间
+	 */
+	public void end()
+	{
+		if (previous == null)
+		{
+			CURRENT.remove();
+		}
+		else
+		{
+			CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * 当前线程的截止时间，没有时返回 null
+	 */
+	public static Deadline current()
+	{
+		return CURRENT.get();
+	}
+
+	/**
+	 * 当前线程有截止时间并且已经超过
+	 */
+	public static boolean expired()
+	{
+		Deadline deadline = CURRENT.get();
+		return deadline != null && deadline.isExpired();
+	}
+
+	/**
+	 * 当前线程没有截止时间时一直等待锁，否则最多等待剩余的时间，没有拿到锁时返回 false
+	 */
+	public static boolean tryLock(Lock lock)
+	{
+		Deadline deadline = CURRENT.get();
+		if (deadline == null)
+		{
+			lock.lock();
+			return true;
+		}
+
+		try
+		{
+			if (lock.tryLock(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS))
+			{
+				return true;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		deadline.exceeded = true;
+		return false;
+	}
+
+	public long remainingNanos()
+	{
+		return deadlineNanos - System.nanoTime();
+	}
+
+	/**
+	 * 剩余的毫秒数，向上取整，已经超过时返回 0
+	 */
+	public long remainingMillis()
+	{
+		long nanos = remainingNanos();
+		return (nanos <= 0) ? 0 : (nanos + 999999) / 1000000;
+	}
+
+	public boolean isExpired()
+	{
+		if (!exceeded && remainingNanos() <= 0)
+		{
+			exceeded = true;
+		}
+		return exceeded;
+	}
+
+	/**
+	 * 组件内部的等待因截止时间中止时调用
+	 */
+	public void markExceeded()
+	{
+		exceeded = true;
+	}
+
+	/**
+	 * 读取过程中是否因截止时间中止过查找或等待
+	 */
+	public boolean isExceeded()
+	{
+		return exceeded;
+	}
+
+	public void consulted(String tier)
+	{
+		consulted.add(tier);
+	}
+
+	public void skipped(String tier)
+	{
+		skipped.add(tier);
+	}
+
+	public List<String> getConsulted()
+	{
+		return Collections.unmodifiableList(consulted);
+	}
+
+	public List<String> getSkipped()
+	{
+		return Collections.unmodifiableList(skipped);
+	}
+}
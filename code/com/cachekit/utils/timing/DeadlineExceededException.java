@@ -0,0 +1,16 @@
+package com.cachekit.utils.timing;
+
+import java.io.InterruptedIOException;
+
+/**
+ * 组件内部的等待超过了当前线程的截止时间，不表示组件故障
+ */
+public class DeadlineExceededException extends InterruptedIOException
+{
+	private static final long serialVersionUID = 1L;
+
+	public DeadlineExceededException(String message)
+	{
+		super(message);
+	}
+}
@@ -26,6 +26,18 @@ public final class CompressionUtil
 	}
 
 	public static byte[] decompressByteArray(final byte[] input, final int bufferLength)
+	{
+		if (null == input)
+		{
+			throw new IllegalArgumentException("Input was null");
+		}
+		return decompressByteArray(input, 0, input.length, bufferLength);
+	}
+
+	/**
+	 * 只解压 input 中从 offset 开始的 length 个字节
+	 */
+	public static byte[] decompressByteArray(final byte[] input, final int offset, final int length, final int bufferLength)
 	{
 		if (null == input)
 		{
@@ -34,9 +46,9 @@ public final class CompressionUtil
 
 		final Inflater decompressor = new Inflater();
 
-		decompressor.setInput(input);
+		decompressor.setInput(input, offset, length);
 
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream(input.length);
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream(length);
 
 		final byte[] buf = new byte[bufferLength];
 
@@ -0,0 +1,197 @@
+package com.cachekit.kits.disk.indexed;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import com.cachekit.core.CacheElement;
+import com.cachekit.core.model.ICacheElement;
+import com.cachekit.kits.disk.IDiskCacheAttributes.DurabilityPolicy;
+
+/**
+ * 模拟崩溃后重放 key 日志：DurabilityPolicy 为 PERIODIC 时日志记录在 doSync 才写入，
+ * 在两次 doSync 之间复制磁盘文件相当于此时崩溃，再用复制出的文件启动一个新的组件
+ */
+public class Test3
+{
+	private static final String ROOT = "target/test3";
+
+	private static int failures = 0;
+
+	public static void main(String[] args) throws IOException
+	{
+		inPlaceOverwrite();
+		recycledSlot();
+		tornJournalLength();
+		recycleReplaced();
+
+		System.out.println(failures == 0 ? "所有检查通过" : failures + " 项检查失败");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	/**
+	 * 在旧位置覆盖为更短的值，日志仍指向旧的长度
+	 */
+	private static void inPlaceOverwrite() throws IOException
+	{
+		IndexedDiskCache<String, String> cache = open("inplace");
+		cache.processUpdate(element("x", repeat('a', 200)));
+		cache.processUpdate(element("z", "z"));
+		cache.doSync();
+		cache.processUpdate(element("x", "short"));
+
+		IndexedDiskCache<String, String> replayed = crash(cache, "inplace");
+		check("in-place: stale key dropped", replayed.processGet("x") == null);
+		check("in-place: store not reset", "z".equals(value(replayed.processGet("z"))));
+	}
+
+	/**
+	 * 删除后位置被另一个键重用，日志中的删除记录没有落盘
+	 */
+	private static void recycledSlot() throws IOException
+	{
+		IndexedDiskCache<String, String> cache = open("recycled");
+		cache.processUpdate(element("x", repeat('a', 200)));
+		cache.processUpdate(element("w", repeat('b', 100)));
+		cache.processUpdate(element("z", "z"));
+		cache.doSync();
+		cache.processRemove("x");
+		cache.processRemove("w");
+		//长度不同的重用和长度相同的重用
+		cache.processUpdate(element("y", repeat('c', 150)));
+		cache.processUpdate(element("v", repeat('d', 100)));
+
+		IndexedDiskCache<String, String> replayed = crash(cache, "recycled");
+		check("recycled: x does not return y's value", replayed.processGet("x") == null);
+		check("recycled: w does not return v's value", replayed.processGet("w") == null);
+		check("recycled: store not reset", "z".equals(value(replayed.processGet("z"))));
+	}
+
+	/**
+	 * 日志末尾的长度字段损坏，重放停在这里，不按它分配内存
+	 */
+	private static void tornJournalLength() throws IOException
+	{
+		IndexedDiskCache<String, String> cache = open("torn");
+		cache.processUpdate(element("z", "z"));
+		cache.doSync();
+
+		File dir = copy(cache, "torn");
+		RandomAccessFile journal = new RandomAccessFile(new File(dir, "torn.journal"), "rw");
+		try
+		{
+			journal.seek(journal.length());
+			journal.writeInt(Integer.MAX_VALUE);
+			journal.writeInt(0);
+		}
+		finally
+		{
+			journal.close();
+		}
+
+		IndexedDiskCache<String, String> replayed = open(dir, "torn");
+		check("torn length: records before the tail replayed", "z".equals(value(replayed.processGet("z"))));
+	}
+
+	/**
+	 * 重放时被替换的位置加入垃圾列表，仍被其他键使用的位置不加入
+	 */
+	private static void recycleReplaced() throws IOException
+	{
+		IndexedDiskCache<String, String> cache = open("replaced");
+		cache.processUpdate(element("x", "small"));
+		cache.processUpdate(element("x", repeat('a', 200)));
+		cache.processUpdate(element("y", repeat('b', 100)));
+		cache.processRemove("y");
+		cache.processUpdate(element("v", repeat('c', 100)));
+		cache.doSync();
+
+		IndexedDiskCache<String, String> replayed = crash(cache, "replaced");
+		check("replaced: old slot recycled, reused slot not", replayed.getRecyleBinSize() == 1);
+		check("replaced: values intact", repeat('c', 100).equals(value(replayed.processGet("v"))));
+	}
+
+	private static IndexedDiskCache<String, String> open(String name) throws IOException
+	{
+		File dir = new File(ROOT, name);
+		delete(dir);
+		return open(dir, name);
+	}
+
+	private static IndexedDiskCache<String, String> open(File dir, String name)
+	{
+		IndexedDiskCacheAttributes attr = new IndexedDiskCacheAttributes();
+		attr.setCacheName(name);
+		attr.setDiskPath(dir.getPath());
+		attr.setKeyJournal(true);
+		attr.setDurabilityPolicy(DurabilityPolicy.PERIODIC);
+		attr.setSyncIntervalMillis(3600000);
+		attr.setMaxKeySize(1000);
+		return new IndexedDiskCache<String, String>(attr);
+	}
+
+	private static IndexedDiskCache<String, String> crash(IndexedDiskCache<String, String> cache, String name)
+			throws IOException
+	{
+		return open(copy(cache, name), name);
+	}
+
+	/**
+	 * 不关闭组件，直接复制当前的文件
+	 */
+	private static File copy(IndexedDiskCache<String, String> cache, String name) throws IOException
+	{
+		File from = new File(ROOT, name);
+		File to = new File(ROOT, name + "-crashed");
+		delete(to);
+		to.mkdirs();
+		for (File f : from.listFiles())
+		{
+			Files.copy(f.toPath(), new File(to, f.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		return to;
+	}
+
+	private static void delete(File dir)
+	{
+		File[] files = dir.listFiles();
+		if (files != null)
+		{
+			for (File f : files)
+			{
+				f.delete();
+			}
+		}
+	}
+
+	private static ICacheElement<String, String> element(String key, String val)
+	{
+		return new CacheElement<String, String>("test3", key, val);
+	}
+
+	private static String value(ICacheElement<String, String> ce)
+	{
+		return ce == null ? null : ce.getVal();
+	}
+
+	private static String repeat(char c, int n)
+	{
+		StringBuilder sb = new StringBuilder(n);
+		for (int i = 0; i < n; i++)
+		{
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	private static void check(String name, boolean ok)
+	{
+		if (!ok)
+		{
+			failures++;
+		}
+		System.out.println((ok ? "PASS " : "FAIL ") + name);
+	}
+}